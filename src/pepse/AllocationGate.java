@@ -0,0 +1,264 @@
+package pepse;
+
+import danogl.gui.UserInputListener;
+import pepse.world.Avatar;
+
+import java.awt.event.KeyEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * Checks that the game loop allocates nothing in a steady state, with the avatar idle and then
+ * walking back and forth inside one chunk.
+ *
+ * <p>The gate runs in three phases of the same number of frames: a warmup, which is not measured
+ * and lets chunks finish loading and the JIT compile the loop, then an idle phase and a walking
+ * phase. The avatar is walked by a scripted input listener (see
+ * {@link #createInputListener(UserInputListener)}) that holds the arrow keys, so the gate runs the
+ * same way whether or not the game window has the focus.</p>
+ *
+ * <p>Bytes are measured on the game thread with {@link com.sun.management.ThreadMXBean} and charged
+ * to the {@link Site} that is running: the game manager switches sites between the steps of a
+ * frame, and game objects updated by the engine switch to their own site and back with
+ * {@link #enter(Site)}. Leaves, fruits and clouds are updated on the game thread while the gate
+ * runs, so that their allocations are seen too. When the walking phase ends, bytes per frame are
+ * printed per site and the game exits with a non-zero status if a gated site allocated.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class AllocationGate {
+    private static final String IS_KEY_PRESSED = "isKeyPressed";
+    private static final int CALIBRATION_READS = 16;
+    private static final float WALK_RANGE = ChunkManager.CHUNK_WIDTH / 4f;
+
+    private static AllocationGate active;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final long gameThreadId;
+    private final int framesPerPhase;
+    private final long[][] bytesPerSite = new long[Phase.values().length][Site.values().length];
+    private Phase phase = Phase.WARMUP;
+    private int phaseFrame;
+    private long readCost;
+    private Site currentSite;
+    private long lastReading;
+    private int heldKey;
+    private float walkMiddle;
+
+    /**
+     * The parts of a frame that allocations are charged to.
+     */
+    public enum Site {
+        /** The game manager's own bookkeeping between the other sites. */
+        GAME_MANAGER("game manager", true),
+        /** Leaves, fruits and clouds, updated per chunk. */
+        INDEPENDENT_OBJECTS("leaves, fruits and clouds", true),
+        /** The engine's update of every other object, and collision resolution. */
+        GAME_OBJECTS("engine and other objects", false),
+        /** {@link Avatar#update(float)}. */
+        AVATAR("avatar", true),
+        /** {@link pepse.world.EnergyDisplay#update(float)}. */
+        ENERGY_DISPLAY("energy display", true),
+        /** Loading and unloading chunks around the avatar. */
+        STREAMING("chunk streaming", true),
+        /** Culling the chunks outside the camera's view. */
+        CULLING("chunk culling", true),
+        /** Applying the edits and eaten fruits of a shared world. */
+        SHARED_WORLD("shared world", true),
+        /** Shedding and evicting chunks over the memory budget. */
+        MEMORY_BUDGET("memory budget", true),
+        /** Swapping in baked terrain images and compacted journals. */
+        BAKES("bakes and compactions", true),
+        /** Recomputing light maps. */
+        LIGHTING("lighting", true),
+        /** Stepping the water of wet chunks. */
+        WATER("water", true),
+        /** Drawing the avatar between its simulated positions. */
+        INTERPOLATION("avatar interpolation", true);
+
+        private final String description;
+        private final boolean gated;
+
+        Site(String description, boolean gated) {
+            this.description = description;
+            this.gated = gated;
+        }
+    }
+
+    private enum Phase {
+        WARMUP,
+        IDLE,
+        WALKING
+    }
+
+    /**
+     * Creates the gate and activates it for the calling thread, which must be the game thread.
+     *
+     * @param framesPerPhase Number of frames of each phase.
+     * @throws IllegalStateException if the JVM cannot measure the bytes allocated per thread.
+     */
+    public AllocationGate(int framesPerPhase) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new IllegalStateException("This JVM cannot measure allocated bytes per thread");
+        }
+        this.threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot measure allocated bytes per thread");
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        this.gameThreadId = Thread.currentThread().getId();
+        this.framesPerPhase = framesPerPhase;
+        active = this;
+    }
+
+    /**
+     * Creates an input listener that answers key queries with the arrow key the gate holds to walk
+     * the avatar, and forwards every other query (mouse, etc.) to the live listener. Live key presses
+     * are ignored, so they cannot disturb the measurement.
+     *
+     * @param liveInputListener The real input listener of the game.
+     * @return An input listener driven by the gate.
+     */
+    public UserInputListener createInputListener(UserInputListener liveInputListener) {
+        return (UserInputListener) Proxy.newProxyInstance(
+                UserInputListener.class.getClassLoader(),
+                new Class<?>[]{UserInputListener.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(IS_KEY_PRESSED)) {
+                        return heldKey != 0 && (Integer) args[0] == heldKey;
+                    }
+                    try {
+                        return method.invoke(liveInputListener, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Charges the bytes allocated since the last switch to the running site, and switches to the
+     * given site. Does nothing unless a gate is active and called from the game thread.
+     *
+     * @param site The site that runs from now on, or {@code null} to do nothing.
+     * @return The site that was running, to switch back to afterwards.
+     */
+    public static Site enter(Site site) {
+        AllocationGate gate = active;
+        if (gate == null || site == null || Thread.currentThread().getId() != gate.gameThreadId) {
+            return null;
+        }
+        return gate.switchTo(site);
+    }
+
+    /**
+     * Starts a frame: walks the avatar if needed and starts charging allocations to the
+     * {@link Site#GAME_MANAGER}.
+     *
+     * @param avatarX The x-coordinate of the avatar's simulated position.
+     */
+    public void beginFrame(float avatarX) {
+        if (phase == Phase.WALKING) {
+            walk(avatarX);
+        }
+        currentSite = Site.GAME_MANAGER;
+        lastReading = readAllocatedBytes();
+    }
+
+    /**
+     * Ends a frame and moves on to the next phase when the current one is over. After the walking
+     * phase, prints the report and exits the game.
+     */
+    public void endFrame() {
+        switchTo(Site.GAME_MANAGER);
+        currentSite = null;
+        phaseFrame++;
+        if (phaseFrame < framesPerPhase) {
+            return;
+        }
+        phaseFrame = 0;
+        if (phase == Phase.WARMUP) {
+            calibrate();
+            phase = Phase.IDLE;
+        } else if (phase == Phase.IDLE) {
+            phase = Phase.WALKING;
+        } else {
+            heldKey = 0;
+            System.exit(report() ? 0 : 1);
+        }
+    }
+
+    private Site switchTo(Site site) {
+        Site previousSite = currentSite;
+        if (previousSite != null) {
+            long reading = readAllocatedBytes();
+            bytesPerSite[phase.ordinal()][previousSite.ordinal()] += Math.max(0,
+                    reading - lastReading - readCost);
+            lastReading = reading;
+        }
+        currentSite = site;
+        return previousSite;
+    }
+
+    private long readAllocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(gameThreadId);
+    }
+
+    /**
+     * Measures what a single reading allocates itself, once the JIT has compiled it.
+     */
+    private void calibrate() {
+        long cost = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_READS; i++) {
+            long first = readAllocatedBytes();
+            cost = Math.min(cost, readAllocatedBytes() - first);
+        }
+        readCost = cost;
+    }
+
+    /**
+     * Holds the arrow key that keeps the avatar near the middle of the chunk it started walking in.
+     */
+    private void walk(float avatarX) {
+        int key = heldKey;
+        if (key == 0) {
+            int chunkX = ChunkManager.worldToChunkIndex(avatarX);
+            walkMiddle = chunkX * ChunkManager.CHUNK_WIDTH + (ChunkManager.CHUNK_WIDTH - Avatar.SIZE.x()) / 2;
+            key = avatarX > walkMiddle ? KeyEvent.VK_LEFT : KeyEvent.VK_RIGHT;
+        } else if (avatarX > walkMiddle + WALK_RANGE) {
+            key = KeyEvent.VK_LEFT;
+        } else if (avatarX < walkMiddle - WALK_RANGE) {
+            key = KeyEvent.VK_RIGHT;
+        }
+        heldKey = key;
+    }
+
+    /**
+     * Prints the bytes per frame of every site in both measured phases.
+     *
+     * @return {@code true} if no gated site allocated, otherwise {@code false}.
+     */
+    private boolean report() {
+        System.out.printf("Allocation gate: %d frames per phase, bytes per frame on the game thread%n",
+                framesPerPhase);
+        System.out.printf("%-28s %12s %12s%n", "site", "idle", "walking");
+        StringBuilder failedSites = new StringBuilder();
+        for (Site site : Site.values()) {
+            double idle = (double) bytesPerSite[Phase.IDLE.ordinal()][site.ordinal()] / framesPerPhase;
+            double walking = (double) bytesPerSite[Phase.WALKING.ordinal()][site.ordinal()] / framesPerPhase;
+            System.out.printf("%-28s %12.1f %12.1f%s%n", site.description, idle, walking,
+                    site.gated ? "" : "  (not gated)");
+            if (site.gated && (idle > 0 || walking > 0)) {
+                failedSites.append(failedSites.length() == 0 ? "" : ", ").append(site.description);
+            }
+        }
+        if (failedSites.length() > 0) {
+            System.out.println("FAILED: allocations in " + failedSites);
+            return false;
+        }
+        System.out.println("PASSED: no allocations in gated sites");
+        return true;
+    }
+}
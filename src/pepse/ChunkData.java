@@ -0,0 +1,350 @@
+package pepse;
+
+import pepse.world.Block;
+import pepse.world.Terrain;
+import pepse.world.trees.Flora;
+
+import java.util.Arrays;
+
+/**
+ * The generated content of a single chunk, as plain data: no game objects are created.
+ *
+ * <p>A chunk covers the half-open rectangle [minX, minX + {@link ChunkManager#CHUNK_WIDTH}) by
+ * [minY, minY + {@link ChunkManager#CHUNK_HEIGHT}), so every block column and every tree belongs to
+ * exactly one chunk. The data holds, in primitive arrays:</p>
+ * <ul>
+ *     <li>the surface height of every column,</li>
+ *     <li>the color index of every terrain block, or {@link #NO_BLOCK} for empty cells,</li>
+ *     <li>a descriptor for every tree whose base lies in the chunk: its column, base, stem height,
+ *     canopy size and stem color index,</li>
+ *     <li>and the leaf and fruit masks of every tree's canopy.</li>
+ * </ul>
+ *
+ * <p>Since it is immutable and depends only on the seed, chunk data can be generated on any thread,
+ * cached, compared and hashed. {@link ChunkMaterializer} turns it into game objects.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class ChunkData {
+
+    /** Number of block columns in a chunk. */
+    public static final int COLUMNS = ChunkManager.CHUNK_WIDTH / Block.SIZE;
+
+    /** Number of block rows in a chunk. */
+    public static final int ROWS = ChunkManager.CHUNK_HEIGHT / Block.SIZE;
+
+    /** The color index of a cell without a terrain block. */
+    public static final int NO_BLOCK = -1;
+
+    /** The number of canopy cells a tree's masks can hold, enough for a canopy of 11 by 11. */
+    public static final int MAX_CANOPY_CELLS = 2 * Long.SIZE;
+
+    private static final int MASK_WORDS = MAX_CANOPY_CELLS / Long.SIZE;
+
+    private final long chunkKey;
+    private final int[] surfaceHeights;
+    private final byte[] colorIndices;
+    private final int[] treeColumns;
+    private final int[] treeBases;
+    private final byte[] stemHeights;
+    private final byte[] canopySizes;
+    private final byte[] stemColorIndices;
+    private final long[] leafMasks;
+    private final long[] fruitMasks;
+
+    private ChunkData(Builder builder) {
+        int treeCount = builder.treeCount;
+        this.chunkKey = builder.chunkKey;
+        this.surfaceHeights = builder.surfaceHeights;
+        this.colorIndices = builder.colorIndices;
+        this.treeColumns = Arrays.copyOf(builder.treeColumns, treeCount);
+        this.treeBases = Arrays.copyOf(builder.treeBases, treeCount);
+        this.stemHeights = Arrays.copyOf(builder.stemHeights, treeCount);
+        this.canopySizes = Arrays.copyOf(builder.canopySizes, treeCount);
+        this.stemColorIndices = Arrays.copyOf(builder.stemColorIndices, treeCount);
+        this.leafMasks = Arrays.copyOf(builder.leafMasks, treeCount * MASK_WORDS);
+        this.fruitMasks = Arrays.copyOf(builder.fruitMasks, treeCount * MASK_WORDS);
+    }
+
+    /**
+     * Generates the data of a chunk: its terrain, then its trees.
+     *
+     * @param chunkKey Key of the chunk.
+     * @param terrain  Terrain generator.
+     * @param flora    Flora generator.
+     * @return The chunk's data.
+     */
+    public static ChunkData generate(long chunkKey, Terrain terrain, Flora flora) {
+        Builder builder = new Builder(chunkKey);
+        terrain.generateInto(builder);
+        flora.generateInto(builder);
+        return builder.build();
+    }
+
+    /**
+     * Returns the key of the chunk.
+     */
+    public long getChunkKey() {
+        return chunkKey;
+    }
+
+    /**
+     * Returns the left edge of the chunk, in world coordinates.
+     */
+    public int getMinX() {
+        return ChunkKey.chunkX(chunkKey) * ChunkManager.CHUNK_WIDTH;
+    }
+
+    /**
+     * Returns the top edge of the chunk, in world coordinates.
+     */
+    public int getMinY() {
+        return ChunkKey.chunkY(chunkKey) * ChunkManager.CHUNK_HEIGHT;
+    }
+
+    /**
+     * Returns the top of the highest block of a column, in world coordinates. The surface may lie
+     * outside the chunk.
+     *
+     * @param column Column index within the chunk.
+     */
+    public int getSurfaceHeight(int column) {
+        return surfaceHeights[column];
+    }
+
+    /**
+     * Returns the color index of the terrain block in a cell.
+     *
+     * @param column Column index within the chunk.
+     * @param row    Row index within the chunk.
+     * @return The color index, or {@link #NO_BLOCK} if the cell is empty.
+     */
+    public int getColorIndex(int column, int row) {
+        return colorIndices[column * ROWS + row];
+    }
+
+    /**
+     * Returns the number of trees whose base lies in the chunk.
+     */
+    public int getTreeCount() {
+        return treeColumns.length;
+    }
+
+    /**
+     * Returns the left edge of a tree's stem, in world coordinates.
+     */
+    public int getTreeX(int tree) {
+        return treeColumns[tree];
+    }
+
+    /**
+     * Returns the bottom of a tree's stem, which is the surface of its column, in world coordinates.
+     */
+    public int getTreeBaseY(int tree) {
+        return treeBases[tree];
+    }
+
+    /**
+     * Returns the height of a tree's stem, in blocks.
+     */
+    public int getStemHeight(int tree) {
+        return stemHeights[tree];
+    }
+
+    /**
+     * Returns the number of canopy cells along each side of a tree's canopy.
+     */
+    public int getCanopySize(int tree) {
+        return canopySizes[tree];
+    }
+
+    /**
+     * Returns the color index of a tree's stem.
+     */
+    public int getStemColorIndex(int tree) {
+        return stemColorIndices[tree];
+    }
+
+    /**
+     * Checks whether a canopy cell of a tree holds a leaf.
+     *
+     * @param tree Index of the tree.
+     * @param cell Index of the cell, row by row from the canopy's top-left corner.
+     */
+    public boolean isLeaf(int tree, int cell) {
+        return isSet(leafMasks, tree, cell);
+    }
+
+    /**
+     * Checks whether a canopy cell of a tree holds a fruit.
+     *
+     * @param tree Index of the tree.
+     * @param cell Index of the cell, row by row from the canopy's top-left corner.
+     */
+    public boolean isFruit(int tree, int cell) {
+        return isSet(fruitMasks, tree, cell);
+    }
+
+    private static boolean isSet(long[] masks, int tree, int cell) {
+        return (masks[tree * MASK_WORDS + cell / Long.SIZE] & (1L << (cell % Long.SIZE))) != 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ChunkData)) {
+            return false;
+        }
+        ChunkData data = (ChunkData) other;
+        return chunkKey == data.chunkKey && Arrays.equals(surfaceHeights, data.surfaceHeights)
+                && Arrays.equals(colorIndices, data.colorIndices)
+                && Arrays.equals(treeColumns, data.treeColumns) && Arrays.equals(treeBases, data.treeBases)
+                && Arrays.equals(stemHeights, data.stemHeights)
+                && Arrays.equals(canopySizes, data.canopySizes)
+                && Arrays.equals(stemColorIndices, data.stemColorIndices)
+                && Arrays.equals(leafMasks, data.leafMasks) && Arrays.equals(fruitMasks, data.fruitMasks);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(chunkKey);
+        hash = 31 * hash + Arrays.hashCode(surfaceHeights);
+        hash = 31 * hash + Arrays.hashCode(colorIndices);
+        hash = 31 * hash + Arrays.hashCode(treeColumns);
+        hash = 31 * hash + Arrays.hashCode(treeBases);
+        hash = 31 * hash + Arrays.hashCode(stemHeights);
+        hash = 31 * hash + Arrays.hashCode(canopySizes);
+        hash = 31 * hash + Arrays.hashCode(stemColorIndices);
+        hash = 31 * hash + Arrays.hashCode(leafMasks);
+        return 31 * hash + Arrays.hashCode(fruitMasks);
+    }
+
+    /**
+     * Collects the data of a chunk while it is generated. Generators fill in the cells and trees of
+     * the half-open rectangle returned by {@link #getMinX()}, {@link #getMaxX()}, {@link #getMinY()}
+     * and {@link #getMaxY()}.
+     */
+    public static final class Builder {
+        private static final int INITIAL_TREE_CAPACITY = 4;
+
+        private final long chunkKey;
+        private final int[] surfaceHeights = new int[COLUMNS];
+        private final byte[] colorIndices = new byte[COLUMNS * ROWS];
+        private int treeCount;
+        private int[] treeColumns = new int[INITIAL_TREE_CAPACITY];
+        private int[] treeBases = new int[INITIAL_TREE_CAPACITY];
+        private byte[] stemHeights = new byte[INITIAL_TREE_CAPACITY];
+        private byte[] canopySizes = new byte[INITIAL_TREE_CAPACITY];
+        private byte[] stemColorIndices = new byte[INITIAL_TREE_CAPACITY];
+        private long[] leafMasks = new long[INITIAL_TREE_CAPACITY * MASK_WORDS];
+        private long[] fruitMasks = new long[INITIAL_TREE_CAPACITY * MASK_WORDS];
+
+        /**
+         * Creates an empty builder for the given chunk.
+         *
+         * @param chunkKey Key of the chunk.
+         */
+        public Builder(long chunkKey) {
+            this.chunkKey = chunkKey;
+            Arrays.fill(colorIndices, (byte) NO_BLOCK);
+        }
+
+        /** Returns the left edge of the chunk, inclusive. */
+        public int getMinX() {
+            return ChunkKey.chunkX(chunkKey) * ChunkManager.CHUNK_WIDTH;
+        }
+
+        /** Returns the right edge of the chunk, exclusive. */
+        public int getMaxX() {
+            return getMinX() + ChunkManager.CHUNK_WIDTH;
+        }
+
+        /** Returns the top edge of the chunk, inclusive. */
+        public int getMinY() {
+            return ChunkKey.chunkY(chunkKey) * ChunkManager.CHUNK_HEIGHT;
+        }
+
+        /** Returns the bottom edge of the chunk, exclusive. */
+        public int getMaxY() {
+            return getMinY() + ChunkManager.CHUNK_HEIGHT;
+        }
+
+        /**
+         * Sets the surface height of a column.
+         *
+         * @param column   Column index within the chunk.
+         * @param surfaceY The top of the column's highest block, in world coordinates.
+         */
+        public void setSurfaceHeight(int column, int surfaceY) {
+            surfaceHeights[column] = surfaceY;
+        }
+
+        /**
+         * Puts a terrain block in a cell.
+         *
+         * @param column     Column index within the chunk.
+         * @param row        Row index within the chunk.
+         * @param colorIndex Index of the block's color in the terrain's palette.
+         */
+        public void setBlock(int column, int row, int colorIndex) {
+            colorIndices[column * ROWS + row] = (byte) colorIndex;
+        }
+
+        /**
+         * Adds a tree with an empty canopy.
+         *
+         * @param x              Left edge of the stem, in world coordinates.
+         * @param baseY          Bottom of the stem, in world coordinates.
+         * @param stemHeight     Height of the stem, in blocks.
+         * @param canopySize     Number of canopy cells along each side.
+         * @param stemColorIndex Index of the stem's color.
+         * @return The index of the tree, for {@link #addLeaf(int, int)} and {@link #addFruit(int, int)}.
+         */
+        public int addTree(int x, int baseY, int stemHeight, int canopySize, int stemColorIndex) {
+            if (canopySize * canopySize > MAX_CANOPY_CELLS) {
+                throw new IllegalArgumentException(
+                        "Canopy of " + canopySize + " cells per side is too large");
+            }
+            if (treeCount == treeColumns.length) {
+                int capacity = treeCount * 2;
+                treeColumns = Arrays.copyOf(treeColumns, capacity);
+                treeBases = Arrays.copyOf(treeBases, capacity);
+                stemHeights = Arrays.copyOf(stemHeights, capacity);
+                canopySizes = Arrays.copyOf(canopySizes, capacity);
+                stemColorIndices = Arrays.copyOf(stemColorIndices, capacity);
+                leafMasks = Arrays.copyOf(leafMasks, capacity * MASK_WORDS);
+                fruitMasks = Arrays.copyOf(fruitMasks, capacity * MASK_WORDS);
+            }
+            treeColumns[treeCount] = x;
+            treeBases[treeCount] = baseY;
+            stemHeights[treeCount] = (byte) stemHeight;
+            canopySizes[treeCount] = (byte) canopySize;
+            stemColorIndices[treeCount] = (byte) stemColorIndex;
+            return treeCount++;
+        }
+
+        /**
+         * Puts a leaf in a canopy cell of a tree.
+         */
+        public void addLeaf(int tree, int cell) {
+            leafMasks[tree * MASK_WORDS + cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+        }
+
+        /**
+         * Puts a fruit in a canopy cell of a tree.
+         */
+        public void addFruit(int tree, int cell) {
+            fruitMasks[tree * MASK_WORDS + cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+        }
+
+        /**
+         * Creates the chunk data. The builder must not be used afterwards.
+         */
+        public ChunkData build() {
+            return new ChunkData(this);
+        }
+    }
+}
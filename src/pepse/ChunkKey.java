@@ -0,0 +1,48 @@
+package pepse;
+
+/**
+ * Packs the two-dimensional index of a chunk into a single {@code long}.
+ *
+ * <p>The column index is stored in the upper 32 bits and the row index in the lower 32 bits, so
+ * keys are unique for every pair of {@code int} indices and cheap to hash.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class ChunkKey {
+
+    private ChunkKey() {
+    }
+
+    /**
+     * Packs a chunk's column and row into a key.
+     *
+     * @param chunkX The chunk's column index.
+     * @param chunkY The chunk's row index.
+     * @return The chunk's key.
+     */
+    public static long of(int chunkX, int chunkY) {
+        return ((long) chunkX << Integer.SIZE) | (chunkY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the column index from a chunk key.
+     */
+    public static int chunkX(long key) {
+        return (int) (key >> Integer.SIZE);
+    }
+
+    /**
+     * Extracts the row index from a chunk key.
+     */
+    public static int chunkY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the distance between two chunks, in chunks, as the larger of the column and row distances.
+     */
+    public static int distance(long key, long otherKey) {
+        return Math.max(Math.abs(chunkX(key) - chunkX(otherKey)), Math.abs(chunkY(key) - chunkY(otherKey)));
+    }
+}
@@ -2,18 +2,73 @@ package pepse;
 
 import danogl.GameObject;
 import danogl.collisions.Layer;
+import danogl.util.Vector2;
+import pepse.interfaces.ChunkListener;
+import pepse.interfaces.FruitObserver;
+import pepse.interfaces.SolidityProvider;
 import pepse.world.Block;
+import pepse.world.GameObjectGroup;
+import pepse.world.IndependentGameObject;
 import pepse.world.Terrain;
+import pepse.world.TerrainImage;
+import pepse.world.lighting.LightingManager;
+import pepse.world.trees.EatenFruits;
 import pepse.world.trees.Flora;
 import pepse.world.trees.Fruit;
 import pepse.world.trees.Leaf;
 import pepse.world.trees.Tree;
 
+import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Manages loading and unloading of chunks, dividing the game world into sections.
- * Each chunk contains terrain and flora objects for efficient memory and performance management.
+ * Manages loading and unloading of chunks, dividing the game world into a grid of sections,
+ * each identified by a {@link ChunkKey} of its column and row.
+ * Each chunk is generated as {@link ChunkData} over a half-open rectangle, so neighbouring chunks
+ * never share a column, and materialized into terrain and flora objects for efficient memory and
+ * performance management,
+ * along with the overlay of its light map, which the {@link LightingManager} caches with the chunk.
+ * A tree belongs to the chunk that contains its base.
+ *
+ * <p>The blocks of a chunk (terrain and stems) are baked off the game thread into a single
+ * {@link TerrainImage}. Once the image is ready, it replaces the blocks' individual renderables,
+ * while the blocks themselves remain in the game for collisions.</p>
+ *
+ * <p>Blocks dug out or placed by the player are recorded in a {@link TerrainJournal}, which is
+ * applied on top of the generated terrain whenever a chunk is created, so edits survive unloading.
+ * Likewise, fruits that were eaten stay eaten until they grow back, even if their chunk is reloaded.
+ * An edit re-bakes the image of the chunks it touches.</p>
+ *
+ * <p>Every chunk keeps a {@link ChunkMemory} account of its objects. When the estimated total
+ * exceeds the memory budget, the manager first sheds the leaves of the farthest chunks the player
+ * cannot see, then evicts the farthest chunks altogether, and only sheds the leaves of the chunks
+ * around the avatar as a last resort; evicted chunks come back once there is room again.</p>
+ *
+ * <p>The leaves and light overlay of a chunk are kept in one {@link GameObjectGroup}, so they
+ * enter and leave the game in a single operation. Blocks, stems and fruits collide, and the engine
+ * only checks objects of its own collection for collisions, so they are added one by one.</p>
+ *
+ * <p>Chunks are loaded around {@link Anchor}s, such as the avatar, each with its own radius. A chunk
+ * is counted once per anchor whose area holds it, so overlapping areas load it once, and it leaves
+ * the loaded area only when no anchor holds it anymore.</p>
+ *
+ * <p>Chunks that leave the loaded area are torn down over several frames: a queued chunk's
+ * blocks are detached at once, so they stop colliding and being drawn, and its other objects leave
+ * the game at once; the blocks are then removed within a time budget per frame, never in a frame
+ * that created a chunk. A queued chunk that comes back into range is restored as it was.</p>
+ *
+ * <p>Registered {@link ChunkListener}s are told when a chunk is loaded or unloaded, and when the
+ * avatar, tracked through {@link #updateAvatarChunk(Vector2)}, enters another chunk.</p>
+ *
+ * <p>Chunks outside the camera's view are culled: their objects outside the static-objects layer
+ * (the terrain image, the leaves and the light overlay) are taken out of the game, so they are
+ * neither drawn nor updated, and their leaves stop swaying. Those objects never collide, so the
+ * blocks, stems and fruits stay in the game and keep colliding, and fruits keep growing back.
+ * Loaded, culled and queued chunks are kept in {@link LongMap}s, so culling, which runs whenever
+ * the camera moves, neither boxes chunk keys nor creates iterators.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
@@ -21,112 +76,1151 @@ import java.util.*;
 public class ChunkManager {
 
     /** Width of each chunk in pixels. */
-    private static final int CHUNK_WIDTH = 300;
+    public static final int CHUNK_WIDTH = 300;
+
+    /** Height of each chunk in pixels. */
+    public static final int CHUNK_HEIGHT = 300;
+
+    /** Terrain images are drawn just behind static objects, so fruits stay in front of stems. */
+    private static final int TERRAIN_IMAGE_LAYER = Layer.STATIC_OBJECTS - 1;
+
+    /** Objects of this layer (leaves and light overlays) are added to their chunk's group. */
+    private static final int GROUPED_LAYER = Layer.FOREGROUND;
+
+    /** Maps chunk keys to their objects and layers. */
+    private final LongMap<Map<GameObject, Integer>> chunkObjectsMap = new LongMap<>();
+
+    /** Maps chunk keys to the groups holding their objects of the {@link #GROUPED_LAYER}. */
+    private final Map<Long, GameObjectGroup> chunkGroups = new HashMap<>();
+
+    /** Chunks closer than this to the avatar are never evicted to meet the memory budget. */
+    private static final int PROTECTED_CHUNK_DISTANCE = 1;
+
+    /** Trees belong to the chunk of their base, but their canopies reach this far sideways. */
+    private static final float CULLING_MARGIN_X = CHUNK_WIDTH / 2f;
+
+    /** Canopies reach this far above the chunk of their base. */
+    private static final float CULLING_MARGIN_Y = 2 * CHUNK_HEIGHT;
+
+    /** How much farther out of view a visible chunk must be before it is culled. */
+    private static final float CULLING_HYSTERESIS = CHUNK_WIDTH / 2f;
+
+    /** Evicted chunks are only reloaded while the total stays below this fraction of the budget. */
+    private static final float RELOAD_BUDGET_FRACTION = 0.8f;
+
+    /** Maps chunk keys to the memory accounts of their objects. */
+    private final Map<Long, ChunkMemory> chunkMemoryMap = new HashMap<>();
+    private final ChunkMemory totalMemory = new ChunkMemory();
+    private final Set<Long> evictedChunks = new HashSet<>();
+
+    /** Maps the keys of the chunks inside at least one anchor's area to the number of such anchors. */
+    private final Map<Long, Integer> chunkRefCounts = new HashMap<>();
+
+    /** Maps the keys of the chunks queued for teardown to their teardowns. */
+    private final LongMap<Teardown> teardowns = new LongMap<>();
 
-    /** Maps chunk indices to their objects and layers. */
-    private final Map<Integer, Map<GameObject, Integer>> chunkObjectsMap = new HashMap<>();
+    /**
+     * Teardowns in the order they were queued. A teardown that was cancelled or finished early is
+     * left in place, and skipped once it reaches the front.
+     */
+    private final ArrayDeque<Teardown> teardownQueue = new ArrayDeque<>();
+    private boolean chunkCreatedSinceDrain;
+
+    /** How many chunks were created, and how long that took altogether. */
+    private long generatedChunkCount;
+    private long generationNanos;
+
+    /** Teardowns check the time budget after removing this many blocks. */
+    private static final int TEARDOWN_CHECK_INTERVAL = 16;
+
+    /**
+     * Maps the keys of the chunks whose non-colliding objects are out of the game, because they are
+     * out of view, to {@code true}.
+     */
+    private final LongMap<Boolean> culledChunks = new LongMap<>();
+    private float lastViewX;
+    private float lastViewY;
+    private boolean visibilityChanged = true;
+
+    /** Maps the packed positions of loaded fruits to the fruits, so remote eating can find them. */
+    private final Map<Long, Fruit> fruitsByPosition = new HashMap<>();
+    private long memoryBudget = Long.MAX_VALUE;
+
+    /** Chunks whose terrain image is still being baked, with the blocks it will replace. */
+    private final Map<Long, PendingBake> pendingBakes = new HashMap<>();
+    private final Map<Long, TerrainImage> terrainImages = new HashMap<>();
+    private final ExecutorService bakeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chunk-baker");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final Terrain terrain;
+    private final TerrainJournal journal;
+    private final SolidityProvider solidityProvider;
     private final Flora flora;
+    private final ChunkMaterializer materializer;
+    private final EatenFruits eatenFruits;
+    private final LightingManager lightingManager;
+    private final ParallelUpdater parallelUpdater;
+    private FruitObserver fruitObserver;
+    private final List<ChunkListener> chunkListeners = new ArrayList<>();
+    private long avatarChunkKey;
+    private boolean avatarChunkKnown;
 
     /**
      * Initializes the chunk manager with terrain and flora generators.
      *
-     * @param terrain Terrain generator for ground blocks.
-     * @param flora   Flora generator for trees and related objects.
+     * @param terrain         Terrain generator for ground blocks.
+     * @param journal         Edits applied on top of the generated terrain.
+     * @param flora           Flora generator for trees and related objects.
+     * @param eatenFruits     Fruits that were eaten and have not grown back yet.
+     * @param lightingManager Lighting system that keeps a light map per chunk.
+     * @param parallelUpdater Updates the independent objects of each chunk (leaves and fruits).
      */
-    public ChunkManager(Terrain terrain, Flora flora) {
+    public ChunkManager(Terrain terrain, TerrainJournal journal, Flora flora, EatenFruits eatenFruits,
+                        LightingManager lightingManager, ParallelUpdater parallelUpdater) {
         this.terrain = terrain;
+        this.journal = journal;
+        this.solidityProvider = journal.overlay(terrain::isSolid);
         this.flora = flora;
+        this.materializer = new ChunkMaterializer(terrain);
+        this.eatenFruits = eatenFruits;
+        this.fruitObserver = eatenFruits;
+        this.lightingManager = lightingManager;
+        this.parallelUpdater = parallelUpdater;
+    }
+
+    /**
+     * Sets the observer notified when a fruit is eaten or grows back. By default, fruits notify the
+     * {@link EatenFruits} given to the constructor; a replacement observer should notify it as well.
+     * Applies to chunks created from now on.
+     *
+     * @param fruitObserver The observer of every fruit.
+     */
+    public void setFruitObserver(FruitObserver fruitObserver) {
+        this.fruitObserver = fruitObserver;
+    }
+
+    /**
+     * Registers a listener for chunks being loaded and unloaded and for the avatar changing chunks.
+     *
+     * @param chunkListener The listener.
+     */
+    public void addChunkListener(ChunkListener chunkListener) {
+        chunkListeners.add(chunkListener);
+    }
+
+    /**
+     * Tracks the avatar's chunk, and tells the listeners when it changes. The first call only
+     * records the chunk.
+     *
+     * @param avatarPosition The avatar's position.
+     * @return {@code true} if the avatar entered another chunk, otherwise {@code false}.
+     */
+    public boolean updateAvatarChunk(Vector2 avatarPosition) {
+        long key = ChunkKey.of(worldToChunkIndex(avatarPosition.x()), worldToChunkRow(avatarPosition.y()));
+        if (avatarChunkKnown && key == avatarChunkKey) {
+            return false;
+        }
+        long previousKey = avatarChunkKey;
+        boolean changed = avatarChunkKnown;
+        avatarChunkKey = key;
+        avatarChunkKnown = true;
+        if (changed) {
+            for (int i = 0; i < chunkListeners.size(); i++) {
+                chunkListeners.get(i).onAvatarChunkChanged(previousKey, key);
+            }
+        }
+        return changed;
     }
 
     /**
-     * Converts a world x-coordinate to its corresponding chunk index.
+     * Returns the key of the avatar's chunk, as of the last {@link #updateAvatarChunk(Vector2)}.
+     */
+    public long getAvatarChunkKey() {
+        return avatarChunkKey;
+    }
+
+    /**
+     * Converts a world x-coordinate to its corresponding chunk column.
      *
      * @param x X-coordinate in the game world.
-     * @return Chunk index.
+     * @return Chunk column.
      */
     public static int worldToChunkIndex(float x) {
         return (int) Math.floor(x / CHUNK_WIDTH);
     }
 
     /**
-     * Loads all chunks within the specified range, skipping already-loaded chunks.
+     * Converts a world y-coordinate to its corresponding chunk row.
+     *
+     * @param y Y-coordinate in the game world.
+     * @return Chunk row.
+     */
+    public static int worldToChunkRow(float y) {
+        return (int) Math.floor(y / CHUNK_HEIGHT);
+    }
+
+    /**
+     * An area of chunks kept loaded around a point of interest, such as the avatar or a detached
+     * camera. Anchors are created with {@link ChunkManager#addAnchor} and moved or resized with
+     * {@link ChunkManager#moveAnchor}.
+     */
+    public static final class Anchor {
+        private int minChunkX;
+        private int maxChunkX;
+        private int minChunkY;
+        private int maxChunkY;
+        private boolean placed;
+
+        private Anchor() {
+        }
+
+        /** Returns the first chunk column of the anchor's area. */
+        public int getMinChunkX() {
+            return minChunkX;
+        }
+
+        /** Returns the last chunk column of the anchor's area. */
+        public int getMaxChunkX() {
+            return maxChunkX;
+        }
+
+        /** Returns the first chunk row of the anchor's area. */
+        public int getMinChunkY() {
+            return minChunkY;
+        }
+
+        /** Returns the last chunk row of the anchor's area. */
+        public int getMaxChunkY() {
+            return maxChunkY;
+        }
+    }
+
+    /**
+     * Adds an anchor and loads the chunks around it that no other anchor already holds.
+     *
+     * @param centerChunkKey Key of the chunk at the center of the anchor's area.
+     * @param radius         Number of chunk columns kept on each side of the center.
+     * @param verticalRadius Number of chunk rows kept above and below the center.
+     * @param gameObjects    Game object collection for adding loaded objects.
+     * @return The new anchor.
+     */
+    public Anchor addAnchor(long centerChunkKey, int radius, int verticalRadius,
+                            danogl.collisions.GameObjectCollection gameObjects) {
+        Anchor anchor = new Anchor();
+        moveAnchor(anchor, centerChunkKey, radius, verticalRadius, gameObjects);
+        return anchor;
+    }
+
+    /**
+     * Moves or resizes an anchor. Chunks entering its area are loaded unless another anchor already
+     * holds them, and chunks leaving it are queued for teardown once no anchor holds them anymore,
+     * which {@link #drainTeardowns} spreads over the following steps.
+     *
+     * <p>Only the strips where the old and new areas differ are visited, so a step of one chunk
+     * costs a row or a column, whatever the number of anchors or the size of their areas.</p>
+     *
+     * @param anchor         The anchor to move.
+     * @param centerChunkKey Key of the chunk at the center of the anchor's new area.
+     * @param radius         Number of chunk columns kept on each side of the center.
+     * @param verticalRadius Number of chunk rows kept above and below the center.
+     * @param gameObjects    Game object collection of the game.
+     */
+    public void moveAnchor(Anchor anchor, long centerChunkKey, int radius, int verticalRadius,
+                           danogl.collisions.GameObjectCollection gameObjects) {
+        Anchor previous = new Anchor();
+        previous.minChunkX = anchor.minChunkX;
+        previous.maxChunkX = anchor.maxChunkX;
+        previous.minChunkY = anchor.minChunkY;
+        previous.maxChunkY = anchor.maxChunkY;
+        previous.placed = anchor.placed;
+
+        anchor.minChunkX = ChunkKey.chunkX(centerChunkKey) - radius;
+        anchor.maxChunkX = ChunkKey.chunkX(centerChunkKey) + radius;
+        anchor.minChunkY = ChunkKey.chunkY(centerChunkKey) - verticalRadius;
+        anchor.maxChunkY = ChunkKey.chunkY(centerChunkKey) + verticalRadius;
+        anchor.placed = true;
+
+        // Retain first, so a chunk in both areas never drops to no anchor on the way
+        updateOutside(anchor, previous, true, gameObjects);
+        updateOutside(previous, anchor, false, gameObjects);
+    }
+
+    /**
+     * Removes an anchor and queues for teardown the chunks no other anchor holds.
      *
-     * @param chunkStart  Start of the chunk range.
-     * @param chunkEnd    End of the chunk range.
-     * @param gameObjects Game object collection for adding loaded objects.
+     * @param anchor      The anchor to remove.
+     * @param gameObjects Game object collection of the game.
      */
-    public void loadChunks(int chunkStart, int chunkEnd, danogl.collisions.GameObjectCollection gameObjects) {
-        for (int chunkIndex = chunkStart; chunkIndex <= chunkEnd; chunkIndex++) {
-            if (!chunkObjectsMap.containsKey(chunkIndex)) {
-                createChunk(chunkIndex, gameObjects);
+    public void removeAnchor(Anchor anchor, danogl.collisions.GameObjectCollection gameObjects) {
+        Anchor empty = new Anchor();
+        updateOutside(anchor, empty, false, gameObjects);
+        anchor.placed = false;
+    }
+
+    /**
+     * Retains or releases every chunk of the first area that is not in the second one. The
+     * difference of two rectangles is at most four strips: the columns left and right of their
+     * overlap, and the rows above and below it within the overlap's columns.
+     */
+    private void updateOutside(Anchor area, Anchor other, boolean retain,
+                               danogl.collisions.GameObjectCollection gameObjects) {
+        if (!area.placed) {
+            return;
+        }
+        int overlapMinX = Math.max(area.minChunkX, other.minChunkX);
+        int overlapMaxX = Math.min(area.maxChunkX, other.maxChunkX);
+        int overlapMinY = Math.max(area.minChunkY, other.minChunkY);
+        int overlapMaxY = Math.min(area.maxChunkY, other.maxChunkY);
+        if (!other.placed || overlapMinX > overlapMaxX || overlapMinY > overlapMaxY) {
+            updateStrip(area.minChunkX, area.maxChunkX, area.minChunkY, area.maxChunkY, retain, gameObjects);
+            return;
+        }
+        updateStrip(area.minChunkX, overlapMinX - 1, area.minChunkY, area.maxChunkY, retain, gameObjects);
+        updateStrip(overlapMaxX + 1, area.maxChunkX, area.minChunkY, area.maxChunkY, retain, gameObjects);
+        updateStrip(overlapMinX, overlapMaxX, area.minChunkY, overlapMinY - 1, retain, gameObjects);
+        updateStrip(overlapMinX, overlapMaxX, overlapMaxY + 1, area.maxChunkY, retain, gameObjects);
+    }
+
+    /**
+     * Retains or releases every chunk of a rectangle, which may be empty.
+     */
+    private void updateStrip(int minChunkX, int maxChunkX, int minChunkY, int maxChunkY, boolean retain,
+                             danogl.collisions.GameObjectCollection gameObjects) {
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                if (retain) {
+                    retainChunk(ChunkKey.of(chunkX, chunkY), gameObjects);
+                } else {
+                    releaseChunk(ChunkKey.of(chunkX, chunkY), gameObjects);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts one more anchor holding a chunk, and loads the chunk if it is the first one. A chunk
+     * queued for teardown is restored instead, and an evicted chunk stays evicted until the memory
+     * budget allows it back.
+     */
+    private void retainChunk(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        int count = chunkRefCounts.merge(key, 1, Integer::sum);
+        if (count > 1) {
+            return;
+        }
+        if (teardowns.containsKey(key)) {
+            cancelTeardown(key, gameObjects);
+        } else if (!chunkObjectsMap.containsKey(key) && !evictedChunks.contains(key)) {
+            createChunk(key, gameObjects);
+        }
+    }
+
+    /**
+     * Counts one less anchor holding a chunk, and queues the chunk for teardown if none is left.
+     */
+    private void releaseChunk(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        Integer count = chunkRefCounts.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            chunkRefCounts.put(key, count - 1);
+            return;
+        }
+        chunkRefCounts.remove(key);
+        evictedChunks.remove(key);
+        if (chunkObjectsMap.containsKey(key)) {
+            queueTeardown(key, gameObjects);
+        }
+    }
+
+    /**
+     * Generates every loaded chunk again, such as after a generation parameter changed. Chunks
+     * queued for teardown are left to finish, and evicted chunks are generated once they return.
+     *
+     * @param gameObjects Game object collection of the game.
+     */
+    public void regenerateChunks(danogl.collisions.GameObjectCollection gameObjects) {
+        List<Long> keys = new ArrayList<>();
+        for (int slot = 0; slot < chunkObjectsMap.capacity(); slot++) {
+            long key = chunkObjectsMap.keyAt(slot);
+            if (chunkObjectsMap.valueAt(slot) != null && !teardowns.containsKey(key)) {
+                keys.add(key);
             }
         }
+        for (long key : keys) {
+            unloadChunk(key, gameObjects);
+            createChunk(key, gameObjects);
+        }
+    }
+
+    /**
+     * Returns the number of chunks created since the manager was, counting every reload.
+     */
+    public long getGeneratedChunkCount() {
+        return generatedChunkCount;
+    }
+
+    /**
+     * Returns the total time spent creating chunks, including adding their objects to the game.
+     */
+    public long getGenerationNanos() {
+        return generationNanos;
+    }
+
+    /**
+     * Returns the number of currently loaded chunks, not counting chunks queued for teardown.
+     */
+    public int getLoadedChunkCount() {
+        return chunkObjectsMap.size() - teardowns.size();
     }
 
     /**
-     * Identifies chunks outside the specified range.
+     * Culls the chunks that left the given view and restores the ones that entered it. A chunk is
+     * only culled once it is {@link #CULLING_HYSTERESIS} beyond the distance it is restored at, so
+     * walking back and forth near a chunk border does not cull and restore it every frame.
      *
-     * @param start Start of the range.
-     * @param end   End of the range.
-     * @return Chunk indices outside the range.
+     * @param viewTopLeft    Top-left corner of the camera's view, in world coordinates.
+     * @param viewDimensions Size of the camera's view.
+     * @param gameObjects    Game object collection of the game.
+     * @return {@code true} if any chunk was culled or restored, otherwise {@code false}.
+     */
+    public boolean updateVisibility(Vector2 viewTopLeft, Vector2 viewDimensions,
+                                    danogl.collisions.GameObjectCollection gameObjects) {
+        float viewX = viewTopLeft.x();
+        float viewY = viewTopLeft.y();
+        if (!visibilityChanged && viewX == lastViewX && viewY == lastViewY) {
+            return false;
+        }
+        lastViewX = viewX;
+        lastViewY = viewY;
+        visibilityChanged = false;
+
+        boolean changed = false;
+        for (int slot = 0; slot < chunkObjectsMap.capacity(); slot++) {
+            Map<GameObject, Integer> objects = chunkObjectsMap.valueAt(slot);
+            long key = chunkObjectsMap.keyAt(slot);
+            if (objects == null || teardowns.containsKey(key)) {
+                continue;
+            }
+            float chunkLeft = ChunkKey.chunkX(key) * CHUNK_WIDTH;
+            float chunkTop = ChunkKey.chunkY(key) * CHUNK_HEIGHT;
+            boolean culled = culledChunks.containsKey(key);
+            float hysteresis = culled ? 0 : CULLING_HYSTERESIS;
+            boolean inView = chunkLeft + CHUNK_WIDTH + CULLING_MARGIN_X + hysteresis > viewX
+                    && chunkLeft - CULLING_MARGIN_X - hysteresis < viewX + viewDimensions.x()
+                    && chunkTop + CHUNK_HEIGHT + hysteresis > viewY
+                    && chunkTop - CULLING_MARGIN_Y - hysteresis < viewY + viewDimensions.y();
+            if (inView == culled) {
+                setCulled(key, objects, !inView, gameObjects);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Takes the non-colliding objects of a chunk out of the game, or puts them back, and updates
+     * which of its independent objects are updated.
+     */
+    private void setCulled(long key, Map<GameObject, Integer> objects, boolean culled,
+                           danogl.collisions.GameObjectCollection gameObjects) {
+        List<IndependentGameObject> updatedObjects = new ArrayList<>();
+        for (Map.Entry<GameObject, Integer> entry : objects.entrySet()) {
+            GameObject object = entry.getKey();
+            int layer = entry.getValue();
+            if (layer != Layer.STATIC_OBJECTS && layer != GROUPED_LAYER) {
+                if (culled) {
+                    gameObjects.removeGameObject(object, layer);
+                } else {
+                    gameObjects.addGameObject(object, layer);
+                }
+            }
+            if (object instanceof IndependentGameObject && (!culled || layer == Layer.STATIC_OBJECTS)) {
+                updatedObjects.add((IndependentGameObject) object);
+            }
+        }
+        parallelUpdater.addChunk(key, updatedObjects);
+        if (culled) {
+            gameObjects.removeGameObject(chunkGroups.get(key), GROUPED_LAYER);
+            culledChunks.put(key, Boolean.TRUE);
+        } else {
+            gameObjects.addGameObject(chunkGroups.get(key), GROUPED_LAYER);
+            culledChunks.remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of culled chunks.
+     */
+    public int getCulledChunkCount() {
+        return culledChunks.size();
+    }
+
+    /**
+     * Counts the objects of culled chunks that are out of the game.
      */
-    public Set<Integer> findChunksOutsideRange(int start, int end) {
-        Set<Integer> toRemove = new HashSet<>();
-        for (Integer idx : chunkObjectsMap.keySet()) {
-            if (idx < start || idx > end) {
-                toRemove.add(idx);
+    public int getCulledObjectCount() {
+        int count = 0;
+        for (int slot = 0; slot < culledChunks.capacity(); slot++) {
+            if (culledChunks.valueAt(slot) == null) {
+                continue;
+            }
+            for (int layer : chunkObjectsMap.get(culledChunks.keyAt(slot)).values()) {
+                if (layer != Layer.STATIC_OBJECTS) {
+                    count++;
+                }
             }
         }
-        return toRemove;
+        return count;
     }
 
     /**
-     * Removes all objects in the specified chunk.
+     * Counts the objects of all loaded chunks.
+     */
+    public int getLoadedObjectCount() {
+        int count = 0;
+        for (int slot = 0; slot < chunkObjectsMap.capacity(); slot++) {
+            Map<GameObject, Integer> objects = chunkObjectsMap.valueAt(slot);
+            if (objects != null) {
+                count += objects.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forgets a chunk, without removing its objects from the game.
      *
-     * @param chunkIndex Chunk index to unload.
+     * @param key Key of the chunk to forget.
      * @return Map of objects and their layers in the chunk, or {@code null} if the chunk does not exist.
      */
-    public Map<GameObject, Integer> popChunk(int chunkIndex) {
-        return chunkObjectsMap.remove(chunkIndex);
+    private Map<GameObject, Integer> popChunk(long key) {
+        culledChunks.remove(key);
+        chunkGroups.remove(key);
+        GameObject cachedOverlay = lightingManager.chunkUnloaded(key);
+        parallelUpdater.removeChunk(key);
+        PendingBake pendingBake = pendingBakes.remove(key);
+        if (pendingBake != null) {
+            pendingBake.image.cancel(false);
+        }
+        terrainImages.remove(key);
+        ChunkMemory memory = chunkMemoryMap.remove(key);
+        if (memory != null) {
+            totalMemory.removeAll(memory);
+        }
+        Map<GameObject, Integer> objects = chunkObjectsMap.remove(key);
+        if (objects != null) {
+            for (GameObject object : objects.keySet()) {
+                if (object instanceof Fruit) {
+                    fruitsByPosition.remove(EatenFruits.pack(object.getTopLeftCorner()));
+                }
+            }
+            notifyChunkReleased(key, objects.keySet(), cachedOverlay);
+        }
+        return objects;
+    }
+
+    /**
+     * Sets the maximum estimated bytes loaded chunks may retain.
+     *
+     * @param memoryBudget The budget in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the memory account of a loaded chunk.
+     *
+     * @param key Key of the chunk.
+     * @return The chunk's account, or {@code null} if the chunk is not loaded.
+     */
+    public ChunkMemory getChunkMemory(long key) {
+        return chunkMemoryMap.get(key);
+    }
+
+    /**
+     * Returns the combined memory account of all loaded chunks.
+     */
+    public ChunkMemory getTotalMemory() {
+        return totalMemory;
+    }
+
+    /**
+     * Keeps the loaded chunks within the memory budget.
+     *
+     * <p>While over budget, leaves are shed from the farthest chunk that still has them and is
+     * either culled or outside the protected distance. Once no such chunk remains, the farthest
+     * chunk outside the protected distance is evicted, and once none remains either, leaves are
+     * shed from the farthest of the chunks around the avatar. Shed leaves only come back when their
+     * chunk is loaded again. While well under budget, the nearest evicted chunk that an anchor
+     * still holds is loaded again.</p>
+     *
+     * @param avatarChunkKey Key of the chunk the avatar is in.
+     * @param gameObjects    Game object collection of the game.
+     */
+    public void enforceMemoryBudget(long avatarChunkKey, danogl.collisions.GameObjectCollection gameObjects) {
+        int unprotectedDistance = PROTECTED_CHUNK_DISTANCE + 1;
+        while (totalMemory.getTotalBytes() > memoryBudget) {
+            Long hiddenLeafyChunk = findFarthestChunk(avatarChunkKey, unprotectedDistance, true, true);
+            if (hiddenLeafyChunk != null) {
+                shedLeaves(hiddenLeafyChunk, gameObjects);
+                continue;
+            }
+            Long farthestChunk = findFarthestChunk(avatarChunkKey, unprotectedDistance, false, false);
+            if (farthestChunk != null) {
+                unloadChunk(farthestChunk, gameObjects);
+                evictedChunks.add(farthestChunk);
+                continue;
+            }
+            Long nearLeafyChunk = findFarthestChunk(avatarChunkKey, 0, true, false);
+            if (nearLeafyChunk == null) {
+                return;
+            }
+            shedLeaves(nearLeafyChunk, gameObjects);
+        }
+
+        if (!evictedChunks.isEmpty()
+                && totalMemory.getTotalBytes() < memoryBudget * RELOAD_BUDGET_FRACTION) {
+            long nearest = Collections.min(evictedChunks,
+                    Comparator.comparingInt(key -> ChunkKey.distance(key, avatarChunkKey)));
+            evictedChunks.remove(nearest);
+            createChunk(nearest, gameObjects);
+        }
+    }
+
+    /**
+     * Adds the terrain images that finished baking since the last call, and removes the individual
+     * renderables of the blocks they replace. Must be called from the game thread.
+     *
+     * @param gameObjects Game object collection for adding the images.
+     */
+    public void applyFinishedBakes(danogl.collisions.GameObjectCollection gameObjects) {
+        if (pendingBakes.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<Long, PendingBake>> iterator = pendingBakes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, PendingBake> entry = iterator.next();
+            PendingBake pendingBake = entry.getValue();
+            if (!pendingBake.image.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            TerrainImage previousImage = terrainImages.remove(entry.getKey());
+            if (previousImage != null) {
+                removeObject(entry.getKey(), previousImage, gameObjects);
+            }
+            TerrainImage terrainImage = new TerrainImage(pendingBake.snapshot, pendingBake.image.join());
+            terrainImages.put(entry.getKey(), terrainImage);
+            addObject(entry.getKey(), terrainImage, TERRAIN_IMAGE_LAYER, gameObjects);
+            for (Block block : pendingBake.blocks) {
+                block.renderer().setRenderable(null);
+            }
+        }
+    }
+
+    /**
+     * Finds the loaded chunk farthest from the avatar.
+     *
+     * @param avatarChunkKey Key of the chunk the avatar is in.
+     * @param minDistance    Minimal distance from the avatar's chunk, in chunks.
+     * @param requireLeaves  Whether to only consider chunks that still have their leaves.
+     * @param includeCulled  Whether to consider culled chunks closer than the minimal distance too.
+     * @return The chunk key, or {@code null} if no chunk matches.
+     */
+    private Long findFarthestChunk(long avatarChunkKey, int minDistance, boolean requireLeaves,
+                                   boolean includeCulled) {
+        Long farthest = null;
+        int farthestDistance = -1;
+        for (Map.Entry<Long, ChunkMemory> entry : chunkMemoryMap.entrySet()) {
+            long key = entry.getKey();
+            if (teardowns.containsKey(key)) {
+                continue;
+            }
+            int distance = ChunkKey.distance(key, avatarChunkKey);
+            boolean eligible = distance >= minDistance || (includeCulled && culledChunks.containsKey(key));
+            boolean hasLeaves = entry.getValue().getCount(ChunkMemory.ObjectType.LEAF) > 0;
+            if (eligible && distance > farthestDistance && (!requireLeaves || hasLeaves)) {
+                farthest = key;
+                farthestDistance = distance;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Removes the leaves of a chunk, keeping the rest of it loaded. The group's children are
+     * filtered in one pass, rather than searched once per leaf.
+     */
+    private void shedLeaves(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        Map<GameObject, Integer> objects = chunkObjectsMap.get(key);
+        ChunkMemory memory = chunkMemoryMap.get(key);
+        chunkGroups.get(key).removeIf(child -> child instanceof Leaf);
+        List<IndependentGameObject> remainingIndependentObjects = new ArrayList<>();
+        Iterator<Map.Entry<GameObject, Integer>> iterator = objects.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<GameObject, Integer> entry = iterator.next();
+            GameObject object = entry.getKey();
+            if (object instanceof Leaf) {
+                memory.remove(object, ChunkMemory.ObjectType.LEAF);
+                totalMemory.remove(object, ChunkMemory.ObjectType.LEAF);
+                iterator.remove();
+            } else if (object instanceof IndependentGameObject) {
+                remainingIndependentObjects.add((IndependentGameObject) object);
+            }
+        }
+        parallelUpdater.addChunk(key, remainingIndependentObjects);
+    }
+
+    /**
+     * Queues a chunk that no anchor holds for teardown. Its blocks are detached and its other
+     * objects leave the game right away; the blocks are removed later by {@link #drainTeardowns}.
+     *
+     * @param key         Key of the chunk to unload.
+     * @param gameObjects Game object collection of the game.
+     */
+    private void queueTeardown(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        Map<GameObject, Integer> objects = chunkObjectsMap.get(key);
+        if (objects == null || teardowns.containsKey(key)) {
+            return;
+        }
+        parallelUpdater.removeChunk(key);
+        // A culled chunk's group and image are already out of the game
+        if (culledChunks.remove(key) == null) {
+            gameObjects.removeGameObject(chunkGroups.get(key), GROUPED_LAYER);
+            TerrainImage terrainImage = terrainImages.get(key);
+            if (terrainImage != null) {
+                gameObjects.removeGameObject(terrainImage, TERRAIN_IMAGE_LAYER);
+            }
+        }
+        List<Block> blocks = new ArrayList<>();
+        for (Map.Entry<GameObject, Integer> entry : objects.entrySet()) {
+            GameObject object = entry.getKey();
+            if (object instanceof Block) {
+                ((Block) object).setDetached(true);
+                blocks.add((Block) object);
+            } else if (object instanceof Fruit) {
+                // A chunk has few fruits, so they leave at once
+                gameObjects.removeGameObject(object, entry.getValue());
+            }
+        }
+        Teardown teardown = new Teardown(key, blocks);
+        teardowns.put(key, teardown);
+        teardownQueue.addLast(teardown);
+        for (ChunkListener chunkListener : chunkListeners) {
+            chunkListener.onChunkUnloaded(key);
+        }
+    }
+
+    /**
+     * Removes the blocks of queued chunks from the game until the time budget runs out, and forgets
+     * every chunk whose blocks are all gone. Does nothing right after a chunk was created, so
+     * creating and tearing down chunks never add up in the same frame.
+     *
+     * @param budgetNanos Time the teardowns may take, in nanoseconds.
+     * @param gameObjects Game object collection of the game.
+     */
+    public void drainTeardowns(long budgetNanos, danogl.collisions.GameObjectCollection gameObjects) {
+        boolean chunkCreated = chunkCreatedSinceDrain;
+        chunkCreatedSinceDrain = false;
+        if (chunkCreated || teardownQueue.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        while (!teardownQueue.isEmpty()) {
+            Teardown teardown = teardownQueue.peekFirst();
+            if (teardowns.get(teardown.key) != teardown) {
+                teardownQueue.pollFirst();
+                continue;
+            }
+            while (teardown.removed < teardown.blocks.size()) {
+                gameObjects.removeGameObject(teardown.blocks.get(teardown.removed++), Layer.STATIC_OBJECTS);
+                if (teardown.removed % TEARDOWN_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    return;
+                }
+            }
+            teardownQueue.pollFirst();
+            teardowns.remove(teardown.key);
+            popChunk(teardown.key);
+            if (System.nanoTime() > deadline) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of chunks queued for teardown.
+     */
+    public int getQueuedTeardownCount() {
+        return teardowns.size();
+    }
+
+    /**
+     * Restores a chunk queued for teardown: the blocks removed so far come back, every block is
+     * attached again, and the chunk's other objects return to the game.
+     */
+    private void cancelTeardown(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        Teardown teardown = teardowns.remove(key);
+        for (int i = 0; i < teardown.blocks.size(); i++) {
+            Block block = teardown.blocks.get(i);
+            block.setDetached(false);
+            if (i < teardown.removed) {
+                gameObjects.addGameObject(block, Layer.STATIC_OBJECTS);
+            }
+        }
+        List<IndependentGameObject> independentObjects = new ArrayList<>();
+        for (Map.Entry<GameObject, Integer> entry : chunkObjectsMap.get(key).entrySet()) {
+            GameObject object = entry.getKey();
+            if (object instanceof Fruit) {
+                gameObjects.addGameObject(object, entry.getValue());
+            }
+            if (object instanceof IndependentGameObject) {
+                independentObjects.add((IndependentGameObject) object);
+            }
+        }
+        gameObjects.addGameObject(chunkGroups.get(key), GROUPED_LAYER);
+        TerrainImage terrainImage = terrainImages.get(key);
+        if (terrainImage != null) {
+            gameObjects.addGameObject(terrainImage, TERRAIN_IMAGE_LAYER);
+        }
+        parallelUpdater.addChunk(key, independentObjects);
+        visibilityChanged = true;
+        notifyChunkLoaded(key);
+    }
+
+    private void notifyChunkLoaded(long key) {
+        for (ChunkListener chunkListener : chunkListeners) {
+            chunkListener.onChunkLoaded(key);
+        }
+    }
+
+    private void notifyChunkReleased(long key, Collection<GameObject> objects, GameObject cachedOverlay) {
+        if (chunkListeners.isEmpty()) {
+            return;
+        }
+        List<GameObject> releasedObjects = new ArrayList<>(objects);
+        releasedObjects.remove(cachedOverlay);
+        for (ChunkListener chunkListener : chunkListeners) {
+            chunkListener.onChunkReleased(key, releasedObjects);
+        }
+    }
+
+    /**
+     * Unloads a chunk and removes its objects from the game right away.
+     */
+    private void unloadChunk(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        queueTeardown(key, gameObjects);
+        Teardown teardown = teardowns.remove(key);
+        if (teardown == null) {
+            return;
+        }
+        for (int i = teardown.removed; i < teardown.blocks.size(); i++) {
+            gameObjects.removeGameObject(teardown.blocks.get(i), Layer.STATIC_OBJECTS);
+        }
+        popChunk(key);
     }
 
     /**
      * Creates a new chunk, adds objects to the game, and stores them in the chunk map.
      *
-     * @param chunkIndex  Chunk index to create.
+     * @param key         Key of the chunk to create.
      * @param gameObjects Game object collection for adding objects.
      */
-    private void createChunk(int chunkIndex, danogl.collisions.GameObjectCollection gameObjects) {
+    private void createChunk(long key, danogl.collisions.GameObjectCollection gameObjects) {
+        long startTime = System.nanoTime();
         Map<GameObject, Integer> objectsInThisChunk = new HashMap<>();
-        int minX = chunkIndex * CHUNK_WIDTH;
-        int maxX = minX + CHUNK_WIDTH;
+        ChunkData data = ChunkData.generate(key, terrain, flora);
 
-        // Generate terrain
-        List<Block> blocks = terrain.createInRange(minX, maxX);
+        // Materialize the terrain, then apply the player's edits on top of it: every edited cell
+        // loses its generated block, and the cells whose latest edit placed a block get one back
+        List<Block> blocks = materializer.createBlocks(data);
+        blocks.removeIf(block -> journal.stateAt((int) block.getTopLeftCorner().x(),
+                (int) block.getTopLeftCorner().y()) != TerrainJournal.UNCHANGED);
+        for (Vector2 placedBlock : journal.placedBlocksIn(key)) {
+            blocks.add(terrain.createBlock(placedBlock));
+        }
         for (Block block : blocks) {
             objectsInThisChunk.put(block, Layer.STATIC_OBJECTS);
             gameObjects.addGameObject(block, Layer.STATIC_OBJECTS);
         }
 
-        // Generate flora
-        List<Tree> trees = flora.createInRange(minX, maxX);
+        // Materialize flora; leaves go into the chunk's group
+        GameObjectGroup group = new GameObjectGroup(
+                new Vector2(ChunkKey.chunkX(key) * CHUNK_WIDTH, ChunkKey.chunkY(key) * CHUNK_HEIGHT),
+                new Vector2(CHUNK_WIDTH, CHUNK_HEIGHT));
+        List<Fruit> fruits = new ArrayList<>();
+        List<IndependentGameObject> independentObjects = new ArrayList<>();
+        List<Tree> trees = materializer.createTrees(data);
         for (Tree tree : trees) {
             for (Block stemBlock : tree.getStem().getStemBlocks()) {
                 objectsInThisChunk.put(stemBlock, Layer.STATIC_OBJECTS);
                 gameObjects.addGameObject(stemBlock, Layer.STATIC_OBJECTS);
             }
+            independentObjects.addAll(tree.getLeaves());
+            independentObjects.addAll(tree.getFruits());
             for (Leaf leaf : tree.getLeaves()) {
-                objectsInThisChunk.put(leaf, Layer.FOREGROUND);
-                gameObjects.addGameObject(leaf, Layer.FOREGROUND);
+                objectsInThisChunk.put(leaf, GROUPED_LAYER);
+                group.add(leaf);
             }
             for (Fruit fruit : tree.getFruits()) {
+                float regrowthDelay = eatenFruits.remainingDelay(fruit.getTopLeftCorner());
+                if (regrowthDelay > 0) {
+                    fruit.deactivateFor(regrowthDelay);
+                }
+                fruit.setFruitObserver(fruitObserver);
+                fruit.setLightObserver(lightingManager::onLightChanged);
+                fruits.add(fruit);
+                fruitsByPosition.put(EatenFruits.pack(fruit.getTopLeftCorner()), fruit);
                 objectsInThisChunk.put(fruit, Layer.STATIC_OBJECTS);
                 gameObjects.addGameObject(fruit, Layer.STATIC_OBJECTS);
             }
         }
 
-        chunkObjectsMap.put(chunkIndex, objectsInThisChunk);
+        // Attach the chunk's light map, drawn above the chunk's leaves
+        GameObject lightOverlay = lightingManager.chunkLoaded(key, fruits);
+        objectsInThisChunk.put(lightOverlay, GROUPED_LAYER);
+        group.add(lightOverlay);
+        chunkGroups.put(key, group);
+        gameObjects.addGameObject(group, GROUPED_LAYER);
+
+        parallelUpdater.addChunk(key, independentObjects);
+
+        // Account for the chunk's memory
+        ChunkMemory memory = new ChunkMemory();
+        for (GameObject object : objectsInThisChunk.keySet()) {
+            memory.add(object, object == lightOverlay ? ChunkMemory.ObjectType.LIGHT_MAP
+                    : ChunkMemory.typeOf(object));
+        }
+        chunkMemoryMap.put(key, memory);
+        totalMemory.addAll(memory);
+
+        chunkObjectsMap.put(key, objectsInThisChunk);
+        visibilityChanged = true;
+        chunkCreatedSinceDrain = true;
+        notifyChunkLoaded(key);
+
+        // Bake the blocks into a single image off the game thread
+        startBake(key);
+        generatedChunkCount++;
+        generationNanos += System.nanoTime() - startTime;
+    }
+
+    /**
+     * Starts baking the blocks of a loaded chunk into a new terrain image, replacing any bake in progress.
+     * The chunk's current image, if any, stays until the new one is ready.
+     */
+    private void startBake(long key) {
+        PendingBake previousBake = pendingBakes.remove(key);
+        if (previousBake != null) {
+            previousBake.image.cancel(false);
+        }
+        List<Block> bakedBlocks = new ArrayList<>();
+        for (GameObject object : chunkObjectsMap.get(key).keySet()) {
+            if (object instanceof Block) {
+                bakedBlocks.add((Block) object);
+            }
+        }
+        TerrainImage.BlockSnapshot snapshot = TerrainImage.snapshot(bakedBlocks);
+        if (snapshot != null) {
+            CompletableFuture<BufferedImage> image =
+                    CompletableFuture.supplyAsync(() -> TerrainImage.bake(snapshot), bakeExecutor);
+            pendingBakes.put(key, new PendingBake(snapshot, bakedBlocks, image));
+        }
+    }
+
+    /**
+     * Digs out the ground block at the given position, if there is one, and records the edit.
+     *
+     * @param position    Any point inside the block.
+     * @param gameObjects Game object collection of the game.
+     * @return {@code true} if a block was dug out, otherwise {@code false}.
+     */
+    public boolean dig(Vector2 position, danogl.collisions.GameObjectCollection gameObjects) {
+        if (!solidityProvider.isSolid(position.x(), position.y())) {
+            return false;
+        }
+        Vector2 blockPosition = snapToBlock(position);
+        journal.record((int) blockPosition.x(), (int) blockPosition.y(), false);
+
+        long key = ChunkKey.of(worldToChunkIndex(blockPosition.x()), worldToChunkRow(blockPosition.y()));
+        Block block = findBlockAt(key, blockPosition);
+        if (block != null) {
+            removeObject(key, block, gameObjects);
+            startBake(key);
+            lightingManager.markChunkDirty(key);
+        }
+        return true;
+    }
+
+    /**
+     * Places a ground block at the given position, if it is empty, and records the edit.
+     *
+     * @param position    Any point inside the block.
+     * @param gameObjects Game object collection of the game.
+     * @return {@code true} if a block was placed, otherwise {@code false}.
+     */
+    public boolean place(Vector2 position, danogl.collisions.GameObjectCollection gameObjects) {
+        Vector2 blockPosition = snapToBlock(position);
+        long key = ChunkKey.of(worldToChunkIndex(blockPosition.x()), worldToChunkRow(blockPosition.y()));
+        if (!chunkObjectsMap.containsKey(key) || solidityProvider.isSolid(position.x(), position.y())
+                || findBlockAt(key, blockPosition) != null) {
+            return false;
+        }
+        journal.record((int) blockPosition.x(), (int) blockPosition.y(), true);
+        addObject(key, terrain.createBlock(blockPosition), Layer.STATIC_OBJECTS, gameObjects);
+        startBake(key);
+        lightingManager.markChunkDirty(key);
+        return true;
+    }
+
+    /**
+     * Applies an edit made elsewhere, such as by another player of a shared world. If the block's
+     * chunk is not loaded, the edit is only recorded, and takes effect once the chunk is created.
+     *
+     * @param blockPosition Top-left corner of the block.
+     * @param placed        {@code true} if a block was placed, {@code false} if it was dug out.
+     * @param gameObjects   Game object collection of the game.
+     */
+    public void applyEdit(Vector2 blockPosition, boolean placed,
+                          danogl.collisions.GameObjectCollection gameObjects) {
+        int blockX = (int) blockPosition.x();
+        int blockY = (int) blockPosition.y();
+        if (journal.stateAt(blockX, blockY) == (placed ? TerrainJournal.PLACED : TerrainJournal.DUG)) {
+            return;
+        }
+        Vector2 center = blockPosition.add(Vector2.ONES.mult(Block.SIZE / 2f));
+        boolean applied = placed ? place(center, gameObjects) : dig(center, gameObjects);
+        if (!applied) {
+            journal.record(blockX, blockY, placed);
+        }
+    }
+
+    /**
+     * Marks a fruit as eaten elsewhere, such as by another player of a shared world. A loaded fruit
+     * disappears until it grows back; otherwise the fruit stays eaten once its chunk is created.
+     *
+     * @param position      Top-left corner of the fruit.
+     * @param regrowthDelay Time until the fruit grows back, in seconds.
+     */
+    public void eatFruitAt(Vector2 position, float regrowthDelay) {
+        if (eatenFruits.remainingDelay(position) > 0) {
+            return;
+        }
+        eatenFruits.onFruitEaten(position, regrowthDelay);
+        Fruit fruit = fruitsByPosition.get(EatenFruits.pack(position));
+        if (fruit != null && fruit.isLit()) {
+            fruit.deactivateFor(regrowthDelay);
+        }
+    }
+
+    /**
+     * Finds the block of a loaded chunk whose top-left corner is at the given position.
+     *
+     * @return The block, or {@code null} if the chunk is not loaded or has no block there.
+     */
+    private Block findBlockAt(long key, Vector2 blockPosition) {
+        Map<GameObject, Integer> objects = chunkObjectsMap.get(key);
+        if (objects == null) {
+            return null;
+        }
+        for (GameObject object : objects.keySet()) {
+            if (object instanceof Block && object.getTopLeftCorner().equals(blockPosition)) {
+                return (Block) object;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an object to a loaded chunk and to the game.
+     */
+    private void addObject(long key, GameObject object, int layer,
+                           danogl.collisions.GameObjectCollection gameObjects) {
+        ChunkMemory.ObjectType type = ChunkMemory.typeOf(object);
+        chunkMemoryMap.get(key).add(object, type);
+        totalMemory.add(object, type);
+        chunkObjectsMap.get(key).put(object, layer);
+        Teardown teardown = teardowns.get(key);
+        if (layer == GROUPED_LAYER) {
+            chunkGroups.get(key).add(object);
+        } else if (teardown != null && object instanceof Block) {
+            // Added to the game so the teardown can remove it like the chunk's other blocks
+            ((Block) object).setDetached(true);
+            teardown.blocks.add((Block) object);
+            gameObjects.addGameObject(object, layer);
+        } else if (layer == Layer.STATIC_OBJECTS || (teardown == null && !culledChunks.containsKey(key))) {
+            gameObjects.addGameObject(object, layer);
+        }
+    }
+
+    /**
+     * Removes an object from a loaded chunk and from the game.
+     */
+    private void removeObject(long key, GameObject object, danogl.collisions.GameObjectCollection gameObjects) {
+        ChunkMemory.ObjectType type = ChunkMemory.typeOf(object);
+        chunkMemoryMap.get(key).remove(object, type);
+        totalMemory.remove(object, type);
+        int layer = chunkObjectsMap.get(key).remove(object);
+        Teardown teardown = teardowns.get(key);
+        if (teardown != null && object instanceof Block) {
+            teardown.forget((Block) object);
+        }
+        if (layer == GROUPED_LAYER) {
+            chunkGroups.get(key).remove(object);
+        } else {
+            gameObjects.removeGameObject(object, layer);
+        }
+    }
+
+    private static Vector2 snapToBlock(Vector2 position) {
+        return new Vector2(Math.floorDiv((int) Math.floor(position.x()), Block.SIZE) * Block.SIZE,
+                Math.floorDiv((int) Math.floor(position.y()), Block.SIZE) * Block.SIZE);
+    }
+
+    /**
+     * The blocks of a chunk queued for teardown, and how many of them are out of the game.
+     */
+    private static class Teardown {
+        private final long key;
+        private final List<Block> blocks;
+        private int removed;
+
+        Teardown(long key, List<Block> blocks) {
+            this.key = key;
+            this.blocks = blocks;
+        }
+
+        /**
+         * Drops a block that left the chunk, so a cancelled teardown does not bring it back.
+         */
+        void forget(Block block) {
+            int index = blocks.indexOf(block);
+            if (index >= 0) {
+                blocks.remove(index);
+                if (index < removed) {
+                    removed--;
+                }
+            }
+        }
+    }
+
+    /**
+     * A terrain image being baked, along with the snapshot it is baked from and the blocks it replaces.
+     */
+    private static class PendingBake {
+        private final TerrainImage.BlockSnapshot snapshot;
+        private final List<Block> blocks;
+        private final CompletableFuture<BufferedImage> image;
+
+        PendingBake(TerrainImage.BlockSnapshot snapshot, List<Block> blocks,
+                    CompletableFuture<BufferedImage> image) {
+            this.snapshot = snapshot;
+            this.blocks = blocks;
+            this.image = image;
+        }
     }
 }
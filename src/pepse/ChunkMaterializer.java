@@ -0,0 +1,68 @@
+package pepse;
+
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.Terrain;
+import pepse.world.trees.Tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns {@link ChunkData} into the game objects of a chunk: terrain {@link Block}s and
+ * {@link Tree}s with their stems, leaves and fruits.
+ *
+ * <p>Materializing creates new objects every time, so it must run on the game thread; the data
+ * itself may come from anywhere.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class ChunkMaterializer {
+    private final Terrain terrain;
+
+    /**
+     * Creates a materializer that colors blocks with the given terrain's palette.
+     *
+     * @param terrain The terrain the chunk data was generated from.
+     */
+    public ChunkMaterializer(Terrain terrain) {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Creates the terrain blocks of a chunk.
+     *
+     * @param data The chunk's data.
+     * @return A block for every cell that holds one.
+     */
+    public List<Block> createBlocks(ChunkData data) {
+        List<Block> blocks = new ArrayList<>();
+        int minX = data.getMinX();
+        int minY = data.getMinY();
+        for (int column = 0; column < ChunkData.COLUMNS; column++) {
+            for (int row = 0; row < ChunkData.ROWS; row++) {
+                int colorIndex = data.getColorIndex(column, row);
+                if (colorIndex != ChunkData.NO_BLOCK) {
+                    Vector2 topLeftCorner = new Vector2(minX + column * Block.SIZE, minY + row * Block.SIZE);
+                    blocks.add(terrain.createBlock(topLeftCorner, colorIndex));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Creates the trees of a chunk.
+     *
+     * @param data The chunk's data.
+     * @return A tree for every tree whose base lies in the chunk.
+     */
+    public List<Tree> createTrees(ChunkData data) {
+        List<Tree> trees = new ArrayList<>(data.getTreeCount());
+        for (int tree = 0; tree < data.getTreeCount(); tree++) {
+            trees.add(new Tree(data, tree));
+        }
+        return trees;
+    }
+}
@@ -0,0 +1,174 @@
+package pepse;
+
+import danogl.GameObject;
+import pepse.world.Block;
+import pepse.world.TerrainImage;
+import pepse.world.trees.Fruit;
+import pepse.world.trees.Leaf;
+
+/**
+ * Counts the objects held by a chunk, by type, along with an estimate of the heap they retain.
+ *
+ * <p>Estimates are rough per-object sizes of each type, including the components it carries: a
+ * leaf, for example, holds two transitions and two scheduled tasks on top of its own state. Images
+ * are estimated from their pixel count. The numbers are meant for comparing chunks and enforcing
+ * a budget, not as exact measurements.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class ChunkMemory {
+
+    /**
+     * The kinds of objects a chunk holds, with the estimated bytes retained by a single object.
+     */
+    public enum ObjectType {
+        /** A terrain or stem block: a game object with its physics, transform and renderer. */
+        BLOCK(600),
+        /** A leaf: a block-sized object plus its sway transitions and scheduled tasks. */
+        LEAF(1400),
+        /** A fruit: a block-sized object plus its reactivation task and light observer. */
+        FRUIT(700),
+        /** A baked terrain image; the per-pixel size is added on top. */
+        TERRAIN_IMAGE(400),
+        /** A light map with its overlay; the per-cell size is added on top. */
+        LIGHT_MAP(600),
+        /** Any other object. */
+        OTHER(400);
+
+        private final int estimatedBytes;
+
+        ObjectType(int estimatedBytes) {
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int BYTES_PER_LIGHT_CELL = 25;
+
+    private final int[] counts = new int[ObjectType.values().length];
+    private final long[] bytes = new long[ObjectType.values().length];
+
+    /**
+     * Accounts for an object added to the chunk.
+     *
+     * @param object The added object.
+     * @param type   The type of the object.
+     */
+    public void add(GameObject object, ObjectType type) {
+        counts[type.ordinal()]++;
+        bytes[type.ordinal()] += estimateBytes(object, type);
+    }
+
+    /**
+     * Accounts for an object removed from the chunk.
+     *
+     * @param object The removed object.
+     * @param type   The type of the object.
+     */
+    public void remove(GameObject object, ObjectType type) {
+        counts[type.ordinal()]--;
+        bytes[type.ordinal()] -= estimateBytes(object, type);
+    }
+
+    /**
+     * Adds all counts and bytes of another account to this one.
+     *
+     * @param other The account to add.
+     */
+    public void addAll(ChunkMemory other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+            bytes[i] += other.bytes[i];
+        }
+    }
+
+    /**
+     * Subtracts all counts and bytes of another account from this one.
+     *
+     * @param other The account to subtract.
+     */
+    public void removeAll(ChunkMemory other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= other.counts[i];
+            bytes[i] -= other.bytes[i];
+        }
+    }
+
+    /**
+     * Returns the number of objects of the given type.
+     */
+    public int getCount(ObjectType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Returns the estimated bytes retained by objects of the given type.
+     */
+    public long getBytes(ObjectType type) {
+        return bytes[type.ordinal()];
+    }
+
+    /**
+     * Returns the estimated bytes retained by all objects.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (long typeBytes : bytes) {
+            total += typeBytes;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of objects of all types.
+     */
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Determines the type of a chunk object from its class.
+     * Light map overlays cannot be told apart by class, so they are accounted explicitly.
+     *
+     * @param object The object.
+     * @return The object's type.
+     */
+    public static ObjectType typeOf(GameObject object) {
+        if (object instanceof Leaf) {
+            return ObjectType.LEAF;
+        } else if (object instanceof Fruit) {
+            return ObjectType.FRUIT;
+        } else if (object instanceof Block) {
+            return ObjectType.BLOCK;
+        } else if (object instanceof TerrainImage) {
+            return ObjectType.TERRAIN_IMAGE;
+        }
+        return ObjectType.OTHER;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (ObjectType type : ObjectType.values()) {
+            builder.append(String.format("%s=%d (%d KB) ", type, getCount(type), getBytes(type) / 1024));
+        }
+        return builder.append(String.format("total=%d KB", getTotalBytes() / 1024)).toString();
+    }
+
+    private static long estimateBytes(GameObject object, ObjectType type) {
+        long cells = (long) (object.getDimensions().x() / Block.SIZE) * (long) (object.getDimensions().y() / Block.SIZE);
+        switch (type) {
+            case TERRAIN_IMAGE:
+                return type.estimatedBytes + cells * BYTES_PER_PIXEL;
+            case LIGHT_MAP:
+                return type.estimatedBytes + cells * BYTES_PER_LIGHT_CELL;
+            default:
+                return type.estimatedBytes;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package pepse;
+
+import danogl.GameObject;
+import pepse.interfaces.ChunkListener;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Finds objects of unloaded chunks that stay reachable after the chunk manager released them.
+ *
+ * <p>Every released object is tracked through a {@link WeakReference}. {@link #check()} forces a
+ * garbage collection and counts the objects that survived at least two collections since their
+ * release as leaked. For each type of newly leaked object, it searches the object graph from the
+ * game's root, breadth first, for the shortest path to one of them, and prints the types and
+ * fields along the way, which tells what retains it.</p>
+ *
+ * <p>The search follows the fields of the game's and the engine's classes, and the elements of
+ * arrays, collections and maps; other JDK objects, static fields and thread stacks are not
+ * searched. A leaked object that no searched path reaches is reported as such.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class LeakDetector implements ChunkListener {
+    /** The search gives up after visiting this many objects. */
+    private static final int MAX_VISITED_OBJECTS = 2_000_000;
+    private static final String[] JDK_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.sun."};
+
+    private final Object root;
+    private final ReferenceQueue<GameObject> collected = new ReferenceQueue<>();
+    private final Set<TrackedObject> tracked = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Class<?>> reportedTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Class<?>, Field[]> fieldsByClass = new IdentityHashMap<>();
+    private int checks;
+    private long releasedCount;
+    private long collectedCount;
+    private int leakedCount;
+
+    /**
+     * An object released by the chunk manager, tracked until it is collected.
+     */
+    private static final class TrackedObject extends WeakReference<GameObject> {
+        private final long chunkKey;
+        private final int releasedAtCheck;
+
+        TrackedObject(GameObject object, ReferenceQueue<GameObject> queue, long chunkKey,
+                      int releasedAtCheck) {
+            super(object, queue);
+            this.chunkKey = chunkKey;
+            this.releasedAtCheck = releasedAtCheck;
+        }
+    }
+
+    /**
+     * A step of a path through the object graph.
+     */
+    private static final class Step {
+        private final Object parent;
+        private final String label;
+
+        Step(Object parent, String label) {
+            this.parent = parent;
+            this.label = label;
+        }
+    }
+
+    /**
+     * Creates a detector that searches retaining paths from the given root.
+     *
+     * @param root The object the game is reached from, such as the game manager.
+     */
+    public LeakDetector(Object root) {
+        this.root = root;
+    }
+
+    /**
+     * Tracks the released objects of a chunk.
+     */
+    @Override
+    public void onChunkReleased(long chunkKey, Collection<GameObject> objects) {
+        for (GameObject object : objects) {
+            tracked.add(new TrackedObject(object, collected, chunkKey, checks));
+        }
+        releasedCount += objects.size();
+    }
+
+    /**
+     * Forces a garbage collection, forgets the tracked objects that were collected, and reports the
+     * ones that survived two collections since their release.
+     *
+     * @return The number of leaked objects.
+     */
+    public int check() {
+        System.gc();
+        checks++;
+        Reference<? extends GameObject> reference;
+        while ((reference = collected.poll()) != null) {
+            tracked.remove(reference);
+            collectedCount++;
+        }
+
+        Map<Class<?>, List<TrackedObject>> leakedByType = new LinkedHashMap<>();
+        leakedCount = 0;
+        for (TrackedObject trackedObject : tracked) {
+            GameObject object = trackedObject.get();
+            if (object != null && trackedObject.releasedAtCheck < checks - 1) {
+                leakedCount++;
+                leakedByType.computeIfAbsent(object.getClass(), type -> new ArrayList<>())
+                        .add(trackedObject);
+            }
+        }
+        System.out.printf("Leak check %d: %d objects released, %d collected, %d tracked, %d leaked%n",
+                checks, releasedCount, collectedCount, tracked.size(), leakedCount);
+
+        Map<Object, Class<?>> newTargets = new IdentityHashMap<>();
+        for (Map.Entry<Class<?>, List<TrackedObject>> entry : leakedByType.entrySet()) {
+            TrackedObject first = entry.getValue().get(0);
+            System.out.printf("  %d leaked %s, such as one of chunk (%d, %d)%n",
+                    entry.getValue().size(), entry.getKey().getName(),
+                    ChunkKey.chunkX(first.chunkKey), ChunkKey.chunkY(first.chunkKey));
+            GameObject object = first.get();
+            if (object != null && reportedTypes.add(entry.getKey())) {
+                newTargets.put(object, entry.getKey());
+            }
+        }
+        if (!newTargets.isEmpty()) {
+            printRetainingPaths(newTargets);
+        }
+        return leakedCount;
+    }
+
+    /**
+     * Returns the number of leaked objects found by the last check.
+     */
+    public int getLeakedCount() {
+        return leakedCount;
+    }
+
+    /**
+     * Searches the object graph from the root and prints the shortest path to each target.
+     */
+    private void printRetainingPaths(Map<Object, Class<?>> targets) {
+        Map<Object, Step> steps = new IdentityHashMap<>();
+        Queue<Object> queue = new ArrayDeque<>();
+        // The detector refers to every tracked object, so it is never searched
+        steps.put(this, new Step(null, null));
+        steps.put(root, new Step(null, root.getClass().getSimpleName()));
+        queue.add(root);
+        while (!queue.isEmpty() && !steps.keySet().containsAll(targets.keySet())
+                && steps.size() < MAX_VISITED_OBJECTS) {
+            visitReferences(queue.remove(), steps, queue);
+        }
+        for (Map.Entry<Object, Class<?>> target : targets.entrySet()) {
+            String typeName = typeName(target.getValue());
+            if (steps.containsKey(target.getKey())) {
+                System.out.println("  " + typeName + " retained by " + describePath(target.getKey(), steps));
+            } else {
+                System.out.println("  " + typeName
+                        + " retained outside the searched graph, such as by a static field or a thread");
+            }
+        }
+    }
+
+    /**
+     * Queues every object the given object refers to that was not visited yet.
+     */
+    private void visitReferences(Object object, Map<Object, Step> steps, Queue<Object> queue) {
+        try {
+            if (object instanceof Object[]) {
+                Object[] array = (Object[]) object;
+                for (int i = 0; i < array.length; i++) {
+                    visit(array[i], object, "[" + i + "]", steps, queue);
+                }
+            } else if (object instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    visit(entry.getKey(), object, "[key]", steps, queue);
+                    visit(entry.getValue(), object, "[value]", steps, queue);
+                }
+            } else if (object instanceof Collection) {
+                for (Object element : (Collection<?>) object) {
+                    visit(element, object, "[element]", steps, queue);
+                }
+            }
+        } catch (RuntimeException e) {
+            // A collection changed or refused to be iterated; its elements are not searched
+        }
+        if (object.getClass().isArray() || isJdkClass(object.getClass())) {
+            return;
+        }
+        for (Field field : fieldsOf(object.getClass())) {
+            try {
+                visit(field.get(object), object, "." + field.getName(), steps, queue);
+            } catch (IllegalAccessException e) {
+                // Inaccessible fields are not searched
+            }
+        }
+    }
+
+    private static void visit(Object child, Object parent, String label, Map<Object, Step> steps,
+                              Queue<Object> queue) {
+        if (child == null || child instanceof Reference || steps.containsKey(child)) {
+            return;
+        }
+        if (child.getClass().isArray() && child.getClass().getComponentType().isPrimitive()) {
+            return;
+        }
+        steps.put(child, new Step(parent, label));
+        queue.add(child);
+    }
+
+    /**
+     * Returns the instance fields of a class and its superclasses, outside the JDK, that may refer
+     * to objects.
+     */
+    private Field[] fieldsOf(Class<?> type) {
+        Field[] fields = fieldsByClass.get(type);
+        if (fields != null) {
+            return fields;
+        }
+        List<Field> fieldList = new ArrayList<>();
+        for (Class<?> current = type; current != null && !isJdkClass(current);
+             current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()
+                        && field.trySetAccessible()) {
+                    fieldList.add(field);
+                }
+            }
+        }
+        fields = fieldList.toArray(new Field[0]);
+        fieldsByClass.put(type, fields);
+        return fields;
+    }
+
+    private static boolean isJdkClass(Class<?> type) {
+        String name = type.getName();
+        for (String jdkPackage : JDK_PACKAGES) {
+            if (name.startsWith(jdkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Describes the path from the root to an object as the types and fields along the way.
+     */
+    private static String describePath(Object object, Map<Object, Step> steps) {
+        List<String> parts = new ArrayList<>();
+        Object current = object;
+        Step step = steps.get(current);
+        while (step.parent != null) {
+            parts.add(0, typeName(step.parent) + step.label);
+            current = step.parent;
+            step = steps.get(current);
+        }
+        return String.join(" -> ", parts);
+    }
+
+    private static String typeName(Object object) {
+        return typeName(object.getClass());
+    }
+
+    private static String typeName(Class<?> type) {
+        if (type.isArray()) {
+            return type.getComponentType().getSimpleName() + "[]";
+        }
+        String simpleName = type.getSimpleName();
+        // Lambdas and anonymous classes have no simple name worth reading
+        return simpleName.isEmpty() || simpleName.contains("$$Lambda") ? type.getName() : simpleName;
+    }
+}
@@ -0,0 +1,172 @@
+package pepse;
+
+/**
+ * A hash map from primitive {@code long} keys, such as {@link ChunkKey chunk keys}, to objects.
+ *
+ * <p>Unlike a {@code Map<Long, V>}, looking a key up never boxes it, so the map can be used in the
+ * steps of the game loop that must not allocate. Entries are kept in open-addressing arrays with
+ * linear probing; removal shifts the following entries back instead of leaving tombstones, so
+ * lookups stay short however often entries come and go. Only {@link #put} allocates, when the map
+ * grows.</p>
+ *
+ * <p>{@code null} values are not allowed, so {@link #get(long)} returning {@code null} always
+ * means the key is absent.</p>
+ *
+ * <p>The entries are iterated without an iterator, by slot:</p>
+ * <pre>{@code
+ * for (int slot = 0; slot < map.capacity(); slot++) {
+ *     V value = map.valueAt(slot);
+ *     if (value != null) {
+ *         long key = map.keyAt(slot);
+ *     }
+ * }
+ * }</pre>
+ * <p>The map must not be changed while it is iterated.</p>
+ *
+ * @param <V> The type of the values.
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class LongMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the value of a key, or {@code null} if the map does not contain it.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the map contains a key.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     *
+     * @param key   The key.
+     * @param value The value, not {@code null}.
+     * @return The previous value, or {@code null} if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongMap does not allow null values");
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        // Keep at most half of the slots full, so probes stay short
+        if (2 * size > keys.length) {
+            resize(2 * keys.length);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @return The key's value, or {@code null} if the map did not contain it.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        values[slot] = null;
+        size--;
+
+        // Shift back every following entry of the run that can no longer be reached past the hole
+        for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                values[next] = null;
+                slot = next;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots, which the map's entries are iterated by.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key in a slot, which is only meaningful if {@link #valueAt(int)} is not {@code null}.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the value in a slot, or {@code null} if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,141 @@
+package pepse;
+
+import pepse.world.IndependentGameObject;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates independent game objects in parallel, one partition per chunk.
+ *
+ * <p>Objects of different partitions never interact, so each partition is updated as a separate
+ * task on a fork-join pool. {@link #update(float)} returns only after every partition is done,
+ * acting as a barrier before the game loop resolves collisions.</p>
+ *
+ * <p>With few partitions the work is too small to split, and it runs on the calling thread.</p>
+ *
+ * <p>The list of partitions is only rebuilt when a partition is added or removed, so an update of
+ * an unchanged set of chunks allocates nothing beyond the pool's tasks.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class ParallelUpdater {
+    private static final int MIN_PARTITIONS_FOR_PARALLELISM = 4;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final Map<Long, List<? extends IndependentGameObject>> chunkPartitions = new HashMap<>();
+    private final List<List<? extends IndependentGameObject>> sharedPartitions = new ArrayList<>();
+    private final List<List<? extends IndependentGameObject>> partitionsBuffer = new ArrayList<>();
+    private boolean partitionsChanged;
+    private boolean serial;
+
+    /**
+     * Registers the independent objects of a loaded chunk.
+     *
+     * @param chunkKey The chunk's {@link ChunkKey}.
+     * @param objects  The chunk's independent objects.
+     */
+    public void addChunk(long chunkKey, List<? extends IndependentGameObject> objects) {
+        markIndependent(objects);
+        chunkPartitions.put(chunkKey, objects);
+        partitionsChanged = true;
+    }
+
+    /**
+     * Unregisters the independent objects of an unloaded chunk.
+     *
+     * @param chunkKey The chunk's {@link ChunkKey}.
+     */
+    public void removeChunk(long chunkKey) {
+        if (chunkPartitions.remove(chunkKey) != null) {
+            partitionsChanged = true;
+        }
+    }
+
+    /**
+     * Registers a group of independent objects that does not belong to any chunk, such as clouds.
+     *
+     * @param objects The independent objects, updated together as one partition.
+     */
+    public void addSharedPartition(List<? extends IndependentGameObject> objects) {
+        markIndependent(objects);
+        sharedPartitions.add(objects);
+        partitionsChanged = true;
+    }
+
+    /**
+     * Sets whether every partition runs on the calling thread, regardless of how many there are,
+     * such as when measuring the allocations of the updates on the game thread.
+     *
+     * @param serial {@code true} to never use the pool.
+     */
+    public void setSerial(boolean serial) {
+        this.serial = serial;
+    }
+
+    /**
+     * Updates every registered object and waits until all partitions are done.
+     *
+     * @param deltaTime Time passed since the previous update.
+     */
+    public void update(float deltaTime) {
+        if (partitionsChanged) {
+            partitionsBuffer.clear();
+            partitionsBuffer.addAll(chunkPartitions.values());
+            partitionsBuffer.addAll(sharedPartitions);
+            partitionsChanged = false;
+        }
+        if (serial || partitionsBuffer.size() < MIN_PARTITIONS_FOR_PARALLELISM) {
+            for (List<? extends IndependentGameObject> partition : partitionsBuffer) {
+                updatePartition(partition, deltaTime);
+            }
+        } else {
+            pool.invoke(new PartitionTask(partitionsBuffer, 0, partitionsBuffer.size(), deltaTime));
+        }
+    }
+
+    private static void markIndependent(List<? extends IndependentGameObject> objects) {
+        for (IndependentGameObject object : objects) {
+            object.setUpdatedIndependently(true);
+        }
+    }
+
+    private static void updatePartition(List<? extends IndependentGameObject> partition, float deltaTime) {
+        for (IndependentGameObject object : partition) {
+            object.updateIndependently(deltaTime);
+        }
+    }
+
+    /**
+     * Splits a range of partitions in half until a single partition remains, then updates it.
+     */
+    private static class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<? extends IndependentGameObject>> partitions;
+        private final int start;
+        private final int end;
+        private final float deltaTime;
+
+        PartitionTask(List<List<? extends IndependentGameObject>> partitions, int start, int end,
+                      float deltaTime) {
+            this.partitions = partitions;
+            this.start = start;
+            this.end = end;
+            this.deltaTime = deltaTime;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                updatePartition(partitions.get(start), deltaTime);
+                return;
+            }
+            int middle = (start + end) / 2;
+            invokeAll(new PartitionTask(partitions, start, middle, deltaTime),
+                    new PartitionTask(partitions, middle, end, deltaTime));
+        }
+    }
+}
@@ -15,28 +15,78 @@ import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
 import pepse.constants.Constants;
 import pepse.interfaces.*;
+import pepse.net.WorldClient;
+import pepse.replay.InputRecorder;
+import pepse.replay.InputReplayer;
+import pepse.save.SessionSnapshot;
+import pepse.save.SessionStore;
 import pepse.util.ColorSupplier;
 import pepse.world.*;
 import pepse.world.daynight.Night;
 import pepse.world.daynight.Sun;
 import pepse.world.daynight.SunHalo;
+import pepse.world.lighting.Lantern;
+import pepse.world.lighting.LightingManager;
+import pepse.world.trees.EatenFruits;
 import pepse.world.trees.Flora;
+import pepse.world.water.WaterManager;
 
 import java.awt.*;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import java.util.function.Consumer;
 
 /**
  * Manages the primary gameplay loop, objects, and systems for the "Pepse" world.
  *
  * <p>Initializes terrain, flora, sky, day/night cycle, avatar, camera, and cloud-based rain.
- * Loads/unloads chunks around the avatar for performance optimization. Uses {@link GameManager}
- * as the base class.</p>
+ * Rain that reaches the ground collects as water, which flows into the dips of the terrain.
+ * Loads/unloads chunks around the avatar, both sideways and in depth, for performance optimization.
+ * Chunks outside the camera's view are culled; the numbers of culled chunks and objects are
+ * published over JMX through {@link Tuning}.
+ * Uses {@link GameManager} as the base class.</p>
  *
- * <p>Chunk management logic is in {@link #update(float)}, ensuring relevant game objects are
- * added or removed as the avatar moves.</p>
+ * <p>Chunk management logic runs in every fixed simulation step of {@link #update(float)},
+ * ensuring relevant game objects are added or removed as the avatar moves.</p>
+ *
+ * <p>A session can be recorded with {@code --record <file>} and replayed with
+ * {@code --replay <file>}; a replay re-runs the same seed, knobs and inputs, verifies the world
+ * state of every frame and reports the total update time when it ends. The recording keeps the
+ * knobs that shape the world, which override the configuration file while replaying.</p>
+ *
+ * <p>With {@code --world <file>}, the session is kept in the given file: the seed, the avatar's
+ * position and energy, the eaten fruits and the terrain edits. An existing session is resumed from
+ * it, and the session is saved to it in the background every {@link #AUTOSAVE_INTERVAL} seconds and
+ * when the game exits. The game thread captures a snapshot every {@link #SNAPSHOT_INTERVAL}
+ * seconds, and the exit save writes the latest one, so it never reads the world while the game
+ * thread changes it. The file is ignored while replaying.</p>
+ *
+ * <p>With {@code --connect <port>}, the game joins a shared world hosted by a
+ * {@link pepse.net.WorldServer} on the same machine. The server owns the seed, the terrain edits and
+ * the eaten fruits: the game sends its edits and eaten fruits to the server, and applies the ones
+ * the server sends back for the chunks it has loaded. The world file is ignored while connected.
+ * If the connection is lost, the game goes on alone in the same world, and the connection is
+ * closed when the game exits.</p>
+ *
+ * <p>With {@code --alloc-gate <frames>}, the game runs an {@link AllocationGate}: it measures the
+ * bytes allocated per frame with the avatar idle and then walking, and exits with a non-zero
+ * status if a step of the loop that should not allocate did.</p>
+ *
+ * <p>With {@code --soak <chunks>}, the game runs a soak test: it moves the avatar back and forth
+ * across the given number of chunks without any input, while a {@link LeakDetector} reports the
+ * objects of unloaded chunks that stay reachable and what retains them, and exits with a non-zero
+ * status if any did.</p>
+ *
+ * <p>The performance knobs are kept in a {@link Tuning}, read from {@code --config <file>} if
+ * given, and registered over JMX, so they can be changed while the game runs. The game applies
+ * changes at the start of its next step and publishes chunk statistics at the end of every step.
+ * Generation parameters are locked while connected or replaying, since the world must then be
+ * generated exactly as everywhere else: the console shows them as locked and refuses changes.
+ * Values read from the configuration file are ignored while connected, and replaced by the
+ * recorded ones while replaying.</p>
  *
  * <p>Entry point in {@link #main(String[])}.</p>
  *
@@ -47,12 +97,146 @@ public class PepseGameManager extends GameManager {
 
     private static final Vector2 ENERGY_DISPLAY_LOCATION = Vector2.ONES.mult(20);
     private static final Vector2 ENERGY_DISPLAY_DIMENSIONS = Vector2.ONES.mult(40);
-    private static final float RAIN_DROP_FACTOR = 0.3f;
+    private static final int CLOUD_COUNT = 4;
+    private static final float LANTERN_RADIUS = 150;
+    /** Levels of water a raindrop leaves where it lands, out of a full cell's. */
+    private static final int RAINDROP_WATER = 1;
     private Avatar avatar;
     private ChunkManager chunkManager;
-    private static final int CHUNK_RENDER_DISTANCE = 3;
-    private int minChunkIndexLoaded;
-    private int maxChunkIndexLoaded;
+    private LightingManager lightingManager;
+    private WaterManager waterManager;
+    private final ParallelUpdater parallelUpdater = new ParallelUpdater();
+    private ChunkManager.Anchor avatarAnchor;
+    private static final int INITIAL_RENDER_DISTANCE = 1;
+    private static final float AUTOSAVE_INTERVAL = 30;
+    private static final float SNAPSHOT_INTERVAL = 1;
+    private static final float SOAK_SPEED = 2 * ChunkManager.CHUNK_WIDTH;
+    private static final int SOAK_LEG_CHUNKS = 12;
+    private static final float LEAK_CHECK_INTERVAL = 10;
+    private static final int FINAL_LEAK_CHECKS = 3;
+    private long avatarChunkKey;
+    private int streamedRadius;
+    private int seed;
+    private TerrainJournal terrainJournal;
+    private EatenFruits eatenFruits;
+    private SessionStore sessionStore;
+    private float timeSinceSave;
+    private float timeSinceSnapshot;
+    /** The latest session captured on the game thread, which the exit save writes. */
+    private volatile SessionSnapshot latestSnapshot;
+    private int rainfallCount;
+    private final String recordPath;
+    private final InputReplayer replayer;
+    private final String worldPath;
+    /** The connection to the shared world, or {@code null} when playing alone or disconnected. */
+    private WorldClient worldClient;
+    private final int allocationGateFrames;
+    private final Tuning tuning;
+    private final int soakChunks;
+    private LeakDetector leakDetector;
+    private float soakStartX;
+    private float soakDistance;
+    private float timeSinceLeakCheck;
+    private Terrain terrain;
+    private Flora flora;
+    private int appliedGenerationVersion;
+    private int appliedVerticalRenderDistance;
+    private AllocationGate allocationGate;
+    private SolidityProvider solidityProvider;
+    private WorldUpdateListener worldUpdateListener;
+    private InputRecorder recorder;
+    private UserInputListener inputListener;
+    private long replayUpdateNanos;
+    private final SimulationClock simulationClock = new SimulationClock();
+    private Vector2 simulatedAvatarPosition;
+    private Vector2 previousAvatarPosition;
+
+    /**
+     * Creates a game manager for a regular session, without recording or replaying input.
+     */
+    public PepseGameManager() {
+        this(new Options());
+    }
+
+    /**
+     * Creates a game manager for a session set up by the given options.
+     *
+     * @param options The options of the session.
+     */
+    public PepseGameManager(Options options) {
+        this.recordPath = options.recordPath;
+        this.replayer = options.replayer;
+        this.worldPath = options.worldPath;
+        this.worldClient = options.worldClient;
+        this.allocationGateFrames = options.allocationGateFrames;
+        this.tuning = options.tuning;
+        this.soakChunks = options.soakChunks;
+    }
+
+    /**
+     * The options of a session, as given on the command line. By default, the session is a regular
+     * one: a fresh world played alone with live input, the default {@link Tuning}, and no checks.
+     */
+    public static final class Options {
+        private String recordPath;
+        private InputReplayer replayer;
+        private String worldPath;
+        private WorldClient worldClient;
+        private int allocationGateFrames;
+        private Tuning tuning = new Tuning();
+        private int soakChunks;
+
+        /**
+         * Sets the path to record the session to, or {@code null} to skip recording.
+         */
+        public void setRecordPath(String recordPath) {
+            this.recordPath = recordPath;
+        }
+
+        /**
+         * Sets the recording to replay instead of live input, or {@code null} for live input.
+         */
+        public void setReplayer(InputReplayer replayer) {
+            this.replayer = replayer;
+        }
+
+        /**
+         * Sets the path of the world file to resume and save, or {@code null} for a fresh world.
+         */
+        public void setWorldPath(String worldPath) {
+            this.worldPath = worldPath;
+        }
+
+        /**
+         * Sets the connection to the server of a shared world, or {@code null} to play alone.
+         */
+        public void setWorldClient(WorldClient worldClient) {
+            this.worldClient = worldClient;
+        }
+
+        /**
+         * Sets the number of frames of each phase of an {@link AllocationGate}, or 0 to play
+         * without one.
+         */
+        public void setAllocationGateFrames(int allocationGateFrames) {
+            this.allocationGateFrames = allocationGateFrames;
+        }
+
+        /**
+         * Sets the performance knobs, which may change while the game runs.
+         */
+        public void setTuning(Tuning tuning) {
+            this.tuning = tuning;
+        }
+
+        /**
+         * Sets the number of chunks a soak test moves the avatar across while a
+         * {@link LeakDetector} watches unloaded chunks, or 0 to play without one.
+         */
+        public void setSoakChunks(int soakChunks) {
+            this.soakChunks = soakChunks;
+        }
+    }
 
     @Override
     public void initializeGame(ImageReader imageReader,
@@ -63,20 +247,57 @@ public class PepseGameManager extends GameManager {
 
         Vector2 windowDimensions = windowController.getWindowDimensions();
         Random random = new Random();
-        int seed = random.nextInt();
+        SessionSnapshot resumedSession = openSession();
+        if (worldClient != null) {
+            seed = worldClient.getSeed();
+            closeOnExit(worldClient);
+        } else if (replayer != null) {
+            seed = replayer.getSeed();
+            replayer.applyRecordedTuning(tuning);
+        } else if (resumedSession != null) {
+            seed = resumedSession.getSeed();
+        } else {
+            seed = random.nextInt();
+        }
+        terrainJournal = resumedSession != null ? new TerrainJournal(resumedSession.getJournal())
+                : new TerrainJournal();
+        eatenFruits = resumedSession != null ? new EatenFruits(resumedSession.getRemainingFruitDelays())
+                : new EatenFruits();
+        if (replayer != null) {
+            inputListener = replayer.createInputListener(inputListener);
+        }
+        startAllocationGate();
+        if (allocationGate != null) {
+            inputListener = allocationGate.createInputListener(inputListener);
+        }
+        this.inputListener = inputListener;
+        startRecording(seed);
 
         // 1) Create sky
         createSky(windowDimensions);
 
         // 2) Create terrain and flora
-        Terrain terrain = new Terrain(windowDimensions, seed);
-        Flora flora = new Flora(terrain::findNearestValidLocation, terrain::groundHeightAt, seed);
+        terrain = new Terrain(windowDimensions, seed);
+        flora = new Flora(terrain::findNearestValidLocation, terrain::groundHeightAt,
+                terrain::treeProbabilityAt, seed);
+        applyGenerationParameters();
 
-        // 3) Chunk manager
-        chunkManager = new ChunkManager(terrain, flora);
+        // 3) Lighting and chunk manager
+        solidityProvider = terrainJournal.overlay(terrain::isSolid);
+        lightingManager = new LightingManager(solidityProvider, ChunkManager.CHUNK_WIDTH,
+                ChunkManager.CHUNK_HEIGHT);
+        chunkManager = new ChunkManager(terrain, terrainJournal, flora, eatenFruits, lightingManager,
+                parallelUpdater);
+        chunkManager.setMemoryBudget(tuning.getMemoryBudgetBytes());
+        waterManager = new WaterManager(solidityProvider, gameObjects(), ChunkManager.CHUNK_WIDTH,
+                ChunkManager.CHUNK_HEIGHT);
+        chunkManager.addChunkListener(waterManager);
+        if (worldClient != null) {
+            chunkManager.setFruitObserver(createSharedFruitObserver());
+        }
 
         // 4) Night
-        createNight(windowDimensions);
+        createNight();
 
         // 5) Sun
         GameObject sun = createSun(windowDimensions);
@@ -85,47 +306,421 @@ public class PepseGameManager extends GameManager {
         createSunHalo(sun);
 
         // 7) Avatar
-        createAvatar(imageReader, inputListener, terrain);
+        createAvatar(imageReader, inputListener, terrain, resumedSession);
+        lightingManager.addDynamicSource(new Lantern(avatar, LANTERN_RADIUS));
+        avatar.setTerrainEditor(createTerrainEditor());
+        if (worldClient != null) {
+            worldUpdateListener = createWorldUpdateListener();
+        }
 
-        // 8) Camera
+        // 8) Camera and the far background, which scrolls with it
         setCamera(new Camera(
                 avatar,
                 new Vector2(0, -Avatar.SIZE.y()),
                 windowDimensions,
                 windowDimensions
         ));
+        createFarBackground(terrain, windowDimensions);
 
         // 9) Energy display
         createEnergyDisplay();
 
         // 10) Clouds and rain
-        createCloudAndRain(windowDimensions);
+        createWeather(windowDimensions);
 
         // Load initial chunks
         initializeFirstChunks();
+        startSoak();
+        if (sessionStore != null) {
+            latestSnapshot = captureSession();
+        }
+    }
+
+    /**
+     * Starts recording the session, if a recording path was given. The recording is closed on
+     * exit; the recorder finishes the frame the game thread is writing first.
+     */
+    private void startRecording(int seed) {
+        if (recordPath == null) {
+            return;
+        }
+        try {
+            recorder = new InputRecorder(recordPath, seed, tuning);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println("Failed to save recording: " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Starts measuring the allocations of every frame, if an allocation gate was requested.
+     * Independent objects are then updated on the game thread, where the gate measures, and the
+     * avatar reads its keys from the gate.
+     */
+    private void startAllocationGate() {
+        if (allocationGateFrames <= 0) {
+            return;
+        }
+        allocationGate = new AllocationGate(allocationGateFrames);
+        parallelUpdater.setSerial(true);
+    }
+
+    /**
+     * Starts a soak test, if one was requested: a {@link LeakDetector} tracks the objects of every
+     * chunk the chunk manager releases, while {@link #driveSoak(float)} moves the avatar.
+     */
+    private void startSoak() {
+        if (soakChunks <= 0) {
+            return;
+        }
+        leakDetector = new LeakDetector(this);
+        chunkManager.addChunkListener(leakDetector);
+        soakStartX = avatar.getTopLeftCorner().x();
+    }
+
+    /**
+     * Moves the avatar along the ground without any input, {@value #SOAK_LEG_CHUNKS} chunks forward
+     * and half as many back, so chunks are unloaded, some of them while still being torn down. The
+     * detector checks for leaks every {@value #LEAK_CHECK_INTERVAL} seconds; once the avatar has
+     * covered the requested distance, the game exits with a non-zero status if anything leaked.
+     */
+    private void driveSoak(float deltaTime) {
+        soakDistance += SOAK_SPEED * deltaTime;
+        if (soakDistance >= soakChunks * ChunkManager.CHUNK_WIDTH) {
+            finishSoak();
+            return;
+        }
+        float leg = SOAK_LEG_CHUNKS * ChunkManager.CHUNK_WIDTH;
+        float cycle = leg * 1.5f;
+        int cycles = (int) (soakDistance / cycle);
+        float phase = soakDistance - cycles * cycle;
+        float x = soakStartX + cycles * leg / 2 + (phase < leg ? phase : 2 * leg - phase);
+        float groundY = Math.min(terrain.groundHeightAt(x), terrain.groundHeightAt(x + Avatar.SIZE.x()));
+        avatar.setVelocity(Vector2.ZERO);
+        avatar.setTopLeftCorner(new Vector2(x, groundY - Avatar.SIZE.y()));
+
+        timeSinceLeakCheck += deltaTime;
+        if (timeSinceLeakCheck >= LEAK_CHECK_INTERVAL) {
+            timeSinceLeakCheck = 0;
+            leakDetector.check();
+        }
+    }
+
+    /**
+     * Checks for leaks until the last released objects went through enough collections, reports
+     * and exits.
+     */
+    private void finishSoak() {
+        for (int i = 0; i < FINAL_LEAK_CHECKS; i++) {
+            leakDetector.check();
+        }
+        int leakedCount = leakDetector.getLeakedCount();
+        System.out.printf("Soak test: %d chunks traversed, %d leaked objects%n", soakChunks, leakedCount);
+        System.exit(leakedCount > 0 ? 1 : 0);
+    }
+
+    /**
+     * Opens the session file given with {@code --world}, if any, and saves the latest captured
+     * snapshot to it on exit. Sessions are neither resumed nor saved while replaying or connected
+     * to a shared world.
+     *
+     * @return The saved session to resume, or {@code null} to start a new one.
+     */
+    private SessionSnapshot openSession() {
+        if (replayer != null || worldClient != null || worldPath == null) {
+            return null;
+        }
+        sessionStore = new SessionStore(Paths.get(worldPath));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                SessionSnapshot snapshot = latestSnapshot;
+                if (snapshot != null) {
+                    sessionStore.save(snapshot);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to save session: " + e.getMessage());
+            }
+        }));
+        try {
+            return sessionStore.hasSession() ? sessionStore.load() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Captures the current session. Must be called on the game thread, which changes the captured
+     * state; the snapshot is encoded and written elsewhere.
+     */
+    private SessionSnapshot captureSession() {
+        return new SessionSnapshot(seed, simulatedAvatarPosition, avatar.getEnergy(), eatenFruits.capture(),
+                eatenFruits.getTime(), terrainJournal.capture());
+    }
+
+    /**
+     * Creates the editor the avatar digs and places blocks with. Blocks are never placed where
+     * they would overlap the avatar.
+     *
+     * <p>In a shared world, edits are only sent to the server, and take effect once it sends them
+     * back, so every player applies the edits in the same order. Once disconnected, edits take
+     * effect right away.</p>
+     */
+    private TerrainEditor createTerrainEditor() {
+        return new TerrainEditor() {
+            @Override
+            public boolean dig(Vector2 position) {
+                if (worldClient != null) {
+                    return solidityProvider.isSolid(position.x(), position.y()) && sendEdit(position, false);
+                }
+                if (chunkManager.dig(position, gameObjects())) {
+                    waterManager.wake(position);
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public boolean place(Vector2 position) {
+                if (overlapsAvatar(position)) {
+                    return false;
+                }
+                if (worldClient != null) {
+                    return !solidityProvider.isSolid(position.x(), position.y()) && sendEdit(position, true);
+                }
+                if (chunkManager.place(position, gameObjects())) {
+                    waterManager.wake(position);
+                    return true;
+                }
+                return false;
+            }
+        };
     }
 
     /**
-     * Loads the initial set of chunks around the avatar.
+     * Sends an edit of the block containing the given point to the server of the shared world.
+     *
+     * @return {@code true} if the edit was sent, or {@code false} if the connection was lost.
+     */
+    private boolean sendEdit(Vector2 position, boolean placed) {
+        try {
+            worldClient.sendEdit(Math.floorDiv((int) Math.floor(position.x()), Block.SIZE) * Block.SIZE,
+                    Math.floorDiv((int) Math.floor(position.y()), Block.SIZE) * Block.SIZE, placed);
+            return true;
+        } catch (IOException e) {
+            disconnect(e);
+            return false;
+        }
+    }
+
+    /**
+     * Drops the connection to the shared world after it failed, and goes on alone in the same
+     * world: edits and eaten fruits from now on only take effect locally.
+     */
+    private void disconnect(IOException cause) {
+        System.err.println("Lost the connection to the shared world, playing alone: " + cause.getMessage());
+        closeQuietly(worldClient);
+        worldClient = null;
+        worldUpdateListener = null;
+    }
+
+    /**
+     * Closes the connection to the shared world when the game exits. Closing a socket channel is
+     * safe while the game thread uses it; the game thread then sees a failure and disconnects.
+     */
+    private static void closeOnExit(WorldClient client) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeQuietly(client)));
+    }
+
+    private static void closeQuietly(WorldClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the connection to the shared world: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the observer of fruits in a shared world, which remembers eaten fruits and tells the
+     * server about them while connected.
+     */
+    private FruitObserver createSharedFruitObserver() {
+        return new FruitObserver() {
+            @Override
+            public void onFruitEaten(Vector2 position, float regrowthDelay) {
+                eatenFruits.onFruitEaten(position, regrowthDelay);
+                if (worldClient == null) {
+                    return;
+                }
+                try {
+                    worldClient.sendFruitEaten(position, regrowthDelay);
+                } catch (IOException e) {
+                    disconnect(e);
+                }
+            }
+
+            @Override
+            public void onFruitRegrown(Vector2 position) {
+                eatenFruits.onFruitRegrown(position);
+            }
+        };
+    }
+
+    /**
+     * Creates the listener that applies the state of the shared world sent by the server.
+     */
+    private WorldUpdateListener createWorldUpdateListener() {
+        return new WorldUpdateListener() {
+            @Override
+            public void onChunk(long chunkKey, int[] entries, Vector2[] fruits, float[] regrowthDelays) {
+                for (int entry : entries) {
+                    onEdit(chunkKey, entry);
+                }
+                for (int i = 0; i < fruits.length; i++) {
+                    chunkManager.eatFruitAt(fruits[i], regrowthDelays[i]);
+                }
+            }
+
+            @Override
+            public void onEdit(long chunkKey, int entry) {
+                Vector2 position = TerrainJournal.blockPositionOf(chunkKey, entry);
+                chunkManager.applyEdit(position, TerrainJournal.isPlaced(entry), gameObjects());
+                waterManager.wake(position);
+            }
+
+            @Override
+            public void onFruitEaten(Vector2 position, float regrowthDelay) {
+                chunkManager.eatFruitAt(position, regrowthDelay);
+            }
+        };
+    }
+
+    /**
+     * Checks whether the block containing the given point would overlap the avatar.
+     */
+    private boolean overlapsAvatar(Vector2 position) {
+        float blockX = (float) Math.floor(position.x() / Block.SIZE) * Block.SIZE;
+        float blockY = (float) Math.floor(position.y() / Block.SIZE) * Block.SIZE;
+        Vector2 avatarTopLeft = avatar.getTopLeftCorner();
+        Vector2 avatarBottomRight = avatarTopLeft.add(avatar.getDimensions());
+        return blockX < avatarBottomRight.x() && blockX + Block.SIZE > avatarTopLeft.x()
+                && blockY < avatarBottomRight.y() && blockY + Block.SIZE > avatarTopLeft.y();
+    }
+
+    /**
+     * Loads the chunks right around the avatar. The rest of the render distance is streamed in
+     * over the following steps, one ring at a time, so the first frame is not delayed by it.
      */
     private void initializeFirstChunks() {
-        int avatarChunkIndex = ChunkManager.worldToChunkIndex(avatar.getTopLeftCorner().x());
-        minChunkIndexLoaded = avatarChunkIndex - CHUNK_RENDER_DISTANCE;
-        maxChunkIndexLoaded = avatarChunkIndex + CHUNK_RENDER_DISTANCE;
-        chunkManager.loadChunks(minChunkIndexLoaded, maxChunkIndexLoaded, gameObjects());
+        chunkManager.updateAvatarChunk(avatar.getTopLeftCorner());
+        avatarChunkKey = chunkManager.getAvatarChunkKey();
+        streamedRadius = INITIAL_RENDER_DISTANCE;
+        streamChunksAround(avatarChunkKey, streamedRadius);
+        chunkManager.addChunkListener(createStreamingListener());
+    }
+
+    /**
+     * Creates the listener that streams chunks in both directions once the avatar enters another
+     * chunk, widening the loaded area by one ring if it has not reached the render distance yet.
+     */
+    private ChunkListener createStreamingListener() {
+        return new ChunkListener() {
+            @Override
+            public void onAvatarChunkChanged(long previousChunkKey, long chunkKey) {
+                avatarChunkKey = chunkKey;
+                streamedRadius = Math.min(streamedRadius + 1, tuning.getRenderDistance());
+                streamChunksAround(avatarChunkKey, streamedRadius);
+            }
+        };
+    }
+
+    /**
+     * Applies the changes made to the knobs since the last step. A smaller render distance unloads
+     * the chunks beyond it right away, while a larger one is reached one ring per step as usual.
+     */
+    private void applyTuning() {
+        chunkManager.setMemoryBudget(tuning.getMemoryBudgetBytes());
+        if (streamedRadius > tuning.getRenderDistance()
+                || appliedVerticalRenderDistance != tuning.getVerticalRenderDistance()) {
+            streamedRadius = Math.min(streamedRadius, tuning.getRenderDistance());
+            streamChunksAround(avatarChunkKey, streamedRadius);
+        }
+        if (appliedGenerationVersion != tuning.getGenerationVersion() && applyGenerationParameters()) {
+            long startTime = System.nanoTime();
+            chunkManager.regenerateChunks(gameObjects());
+            tuning.publishRegeneration(chunkManager.getLoadedChunkCount(), System.nanoTime() - startTime);
+        }
     }
 
     /**
-     * Creates a cloud object and associates it with a {@link RainDropper} and
+     * Hands the generation parameters to the terrain and flora, unless they are locked. In a shared
+     * world they are locked before being applied, so the world is generated with the defaults like
+     * everywhere else. While replaying they are locked once the recorded ones are applied.
+     *
+     * @return {@code true} if the parameters were applied, otherwise {@code false}.
+     */
+    private boolean applyGenerationParameters() {
+        int generationVersion = tuning.getGenerationVersion();
+        if (worldClient != null) {
+            tuning.lockGeneration();
+        }
+        if (tuning.isGenerationLocked()) {
+            appliedGenerationVersion = generationVersion;
+            return false;
+        }
+        terrain.setDepth(tuning.getTerrainDepth());
+        flora.setCanopyThresholds(tuning.getLeafThreshold(), tuning.getFruitThreshold());
+        appliedGenerationVersion = generationVersion;
+        if (replayer != null) {
+            tuning.lockGeneration();
+        }
+        return true;
+    }
+
+    /**
+     * Moves the avatar's anchor to the given chunk, so every chunk within the given distance is
+     * loaded and the chunks no anchor holds anymore are queued for teardown. Vertically, the
+     * distance is capped at the vertical render distance.
+     *
+     * @param centerChunkKey Key of the chunk at the center of the loaded area.
+     * @param radius         Number of chunks loaded on each side of the center.
+     */
+    private void streamChunksAround(long centerChunkKey, int radius) {
+        appliedVerticalRenderDistance = tuning.getVerticalRenderDistance();
+        int verticalRadius = Math.min(radius, appliedVerticalRenderDistance);
+        if (avatarAnchor == null) {
+            avatarAnchor = chunkManager.addAnchor(centerChunkKey, radius, verticalRadius, gameObjects());
+        } else {
+            chunkManager.moveAnchor(avatarAnchor, centerChunkKey, radius, verticalRadius, gameObjects());
+        }
+        if (worldClient != null) {
+            try {
+                worldClient.updateSubscriptions(avatarAnchor.getMinChunkX(), avatarAnchor.getMaxChunkX(),
+                        avatarAnchor.getMinChunkY(), avatarAnchor.getMaxChunkY());
+            } catch (IOException e) {
+                disconnect(e);
+            }
+        }
+    }
+
+    /**
+     * Creates the clouds and associates each one with its own {@link RainDropper} and
      * {@link JumpObserver} for rain on jump.
      */
-    private void createCloudAndRain(Vector2 windowDimensions) {
-        Cloud cloud = new Cloud(windowDimensions);
-        RainDropper rainDropper = () -> createRain(cloud);
-        cloud.setRainDropper(rainDropper);
-        avatar.addJumpObserver(cloud);
-        addCloudBlocks(cloud);
-        createRain(cloud);
+    private void createWeather(Vector2 windowDimensions) {
+        Weather weather = new Weather(windowDimensions, CLOUD_COUNT, seed);
+        for (Cloud cloud : weather.getClouds()) {
+            RainDropper rainDropper = () -> createRain(cloud);
+            cloud.setRainDropper(rainDropper);
+            avatar.addJumpObserver(cloud);
+            gameObjects().addGameObject(cloud, Layer.FOREGROUND);
+        }
+        parallelUpdater.addSharedPartition(weather.getClouds());
     }
 
     /**
@@ -143,15 +738,25 @@ public class PepseGameManager extends GameManager {
     }
 
     /**
-     * Instantiates the avatar above the ground at a default x-position.
+     * Instantiates the avatar above the ground at a default x-position, or where it was in the
+     * resumed session.
      */
-    private void createAvatar(ImageReader imageReader, UserInputListener inputListener, Terrain terrain) {
+    private void createAvatar(ImageReader imageReader, UserInputListener inputListener, Terrain terrain,
+                              SessionSnapshot resumedSession) {
         float groundY = terrain.groundHeightAt(Constants.AVATAR_START_X_POSITION);
         Vector2 initialPosition = new Vector2(
                 Constants.AVATAR_START_X_POSITION,
                 groundY - Avatar.SIZE.y()
         );
+        if (resumedSession != null) {
+            initialPosition = resumedSession.getAvatarPosition();
+        }
         avatar = new Avatar(initialPosition, inputListener, imageReader);
+        if (resumedSession != null) {
+            avatar.setEnergy(resumedSession.getAvatarEnergy());
+        }
+        simulatedAvatarPosition = initialPosition;
+        previousAvatarPosition = initialPosition;
         gameObjects().addGameObject(avatar);
     }
 
@@ -173,10 +778,10 @@ public class PepseGameManager extends GameManager {
     }
 
     /**
-     * Creates a night overlay that transitions opacity to simulate day/night.
+     * Creates the night cycle, which drives the darkness of the chunks' light maps.
      */
-    private void createNight(Vector2 windowDimensions) {
-        GameObject night = Night.create(windowDimensions, Constants.CYCLE_LENGTH);
+    private void createNight() {
+        GameObject night = Night.create(Constants.CYCLE_LENGTH, lightingManager::setDarkness);
         gameObjects().addGameObject(night, Layer.FOREGROUND);
     }
 
@@ -189,60 +794,244 @@ public class PepseGameManager extends GameManager {
     }
 
     /**
-     * Updates chunk loading around the avatar and removes distant chunks.
+     * Creates the parallax silhouettes of the terrain beyond the loaded chunks. They are added after
+     * the sun, so it sets behind them.
+     */
+    private void createFarBackground(Terrain terrain, Vector2 windowDimensions) {
+        GameObject farBackground = new FarBackground(terrain::groundHeightAt, camera(), windowDimensions);
+        gameObjects().addGameObject(farBackground, Layer.BACKGROUND);
+    }
+
+    /**
+     * Advances the game by one frame, recording or replaying its input if requested.
+     *
+     * <p>The frame time is turned into fixed simulation steps by a {@link SimulationClock}, so the
+     * simulation does not depend on the frame rate; the avatar is then drawn between its last two
+     * simulated positions.</p>
      */
     @Override
     public void update(float deltaTime) {
-        super.update(deltaTime);
+        if (allocationGate == null) {
+            advanceFrame(deltaTime);
+            return;
+        }
+        allocationGate.beginFrame(simulatedAvatarPosition.x());
+        advanceFrame(deltaTime);
+        allocationGate.endFrame();
+    }
 
-        // Check for chunk loading/unloading
-        float avatarX = avatar.getTopLeftCorner().x();
-        int avatarChunkIndex = ChunkManager.worldToChunkIndex(avatarX);
+    /**
+     * Runs the simulation steps of a frame and draws the avatar, recording or replaying the
+     * frame's input if requested.
+     */
+    private void advanceFrame(float deltaTime) {
+        if (replayer != null) {
+            if (!replayer.hasNextFrame()) {
+                finishReplay();
+                return;
+            }
+            long startTime = System.nanoTime();
+            float recordedDeltaTime = replayer.nextFrame();
+            simulate(recordedDeltaTime);
+            replayer.verifyFrame(computeWorldStateHash());
+            replayUpdateNanos += System.nanoTime() - startTime;
+            interpolateAvatar();
+            return;
+        }
+
+        int keys = recorder != null ? recorder.captureKeys(inputListener) : 0;
+        simulate(deltaTime);
+        if (recorder != null) {
+            recorder.recordFrame(deltaTime, keys, computeWorldStateHash());
+        }
+        interpolateAvatar();
+    }
 
-        // Load new chunks if the avatar has moved beyond current boundaries
-        while (avatarChunkIndex - CHUNK_RENDER_DISTANCE < minChunkIndexLoaded) {
-            minChunkIndexLoaded--;
-            chunkManager.loadChunks(minChunkIndexLoaded, minChunkIndexLoaded, gameObjects());
+    /**
+     * Runs as many fixed simulation steps as the frame time allows.
+     */
+    private void simulate(float frameTime) {
+        int steps = simulationClock.advance(frameTime);
+        if (steps > 0) {
+            // Undo the interpolated position drawn last frame before simulating again.
+            avatar.setTopLeftCorner(simulatedAvatarPosition);
         }
-        while (avatarChunkIndex + CHUNK_RENDER_DISTANCE > maxChunkIndexLoaded) {
-            maxChunkIndexLoaded++;
-            chunkManager.loadChunks(maxChunkIndexLoaded, maxChunkIndexLoaded, gameObjects());
+        for (int i = 0; i < steps; i++) {
+            previousAvatarPosition = simulatedAvatarPosition;
+            updateWorld(SimulationClock.FIXED_TIME_STEP);
+            simulatedAvatarPosition = avatar.getTopLeftCorner();
         }
+    }
 
-        // Identify and unload chunks beyond the desired range
-        int desiredMin = avatarChunkIndex - CHUNK_RENDER_DISTANCE;
-        int desiredMax = avatarChunkIndex + CHUNK_RENDER_DISTANCE;
-        Set<Integer> chunksToRemove = chunkManager.findChunksOutsideRange(desiredMin, desiredMax);
+    /**
+     * Places the avatar between its last two simulated positions, according to how much of the
+     * next simulation step has already passed. Positions are immutable, so when the interpolated
+     * position is within a pixel of the drawn one or of either simulated one, that position is
+     * drawn instead of a new one.
+     */
+    private void interpolateAvatar() {
+        AllocationGate.enter(AllocationGate.Site.INTERPOLATION);
+        float alpha = simulationClock.getInterpolationAlpha();
+        float previousX = previousAvatarPosition.x();
+        float previousY = previousAvatarPosition.y();
+        float x = previousX + (simulatedAvatarPosition.x() - previousX) * alpha;
+        float y = previousY + (simulatedAvatarPosition.y() - previousY) * alpha;
+        if (isWithinPixel(avatar.getTopLeftCorner(), x, y)) {
+            AllocationGate.enter(AllocationGate.Site.GAME_MANAGER);
+            return;
+        }
+        if (isWithinPixel(simulatedAvatarPosition, x, y)) {
+            avatar.setTopLeftCorner(simulatedAvatarPosition);
+        } else if (isWithinPixel(previousAvatarPosition, x, y)) {
+            avatar.setTopLeftCorner(previousAvatarPosition);
+        } else {
+            avatar.setTopLeftCorner(new Vector2(x, y));
+        }
+        AllocationGate.enter(AllocationGate.Site.GAME_MANAGER);
+    }
 
-        // Remove them from the game
-        for (int chunkIndex : chunksToRemove) {
-            Map<GameObject, Integer> chunkObjects = chunkManager.popChunk(chunkIndex);
-            if (chunkObjects != null) {
-                for (Map.Entry<GameObject, Integer> entry : chunkObjects.entrySet()) {
-                    gameObjects().removeGameObject(entry.getKey(), entry.getValue());
-                }
+    private static boolean isWithinPixel(Vector2 position, float x, float y) {
+        return Math.abs(position.x() - x) < 1 && Math.abs(position.y() - y) < 1;
+    }
+
+    /**
+     * Updates all game objects, loads chunks around the avatar and removes distant chunks.
+     *
+     * <p>Leaves, fruits and clouds are updated per chunk in parallel by the {@link ParallelUpdater};
+     * everything else, including collision resolution, runs afterwards on the game thread.</p>
+     */
+    private void updateWorld(float deltaTime) {
+        if (leakDetector != null) {
+            driveSoak(deltaTime);
+        }
+
+        // Independent objects first; this returns only once all chunks are done, before collisions
+        AllocationGate.enter(AllocationGate.Site.INDEPENDENT_OBJECTS);
+        parallelUpdater.update(deltaTime);
+        AllocationGate.enter(AllocationGate.Site.GAME_OBJECTS);
+        super.update(deltaTime);
+
+        // Stream chunks once the avatar enters another chunk (see createStreamingListener), and
+        // otherwise widen the loaded area by one ring per step until it reaches the render distance
+        AllocationGate.enter(AllocationGate.Site.STREAMING);
+        applyTuning();
+        if (!chunkManager.updateAvatarChunk(avatar.getTopLeftCorner())
+                && streamedRadius < tuning.getRenderDistance()) {
+            streamedRadius++;
+            streamChunksAround(avatarChunkKey, streamedRadius);
+        }
+        chunkManager.drainTeardowns(tuning.getTeardownBudgetNanos(), gameObjects());
+
+        // Take the leaves and images of chunks out of view out of the game; their colliders stay
+        AllocationGate.enter(AllocationGate.Site.CULLING);
+        Camera camera = camera();
+        if (chunkManager.updateVisibility(camera.getTopLeftCorner(), camera.getDimensions(), gameObjects())) {
+            tuning.publishObjectCounts(chunkManager.getLoadedObjectCount(),
+                    chunkManager.getCulledObjectCount());
+        }
+
+        // Apply the edits and eaten fruits of the shared world that arrived since the last step
+        AllocationGate.enter(AllocationGate.Site.SHARED_WORLD);
+        if (worldClient != null) {
+            try {
+                worldClient.poll(worldUpdateListener);
+            } catch (IOException e) {
+                disconnect(e);
             }
         }
 
-        // Update chunk boundaries
-        minChunkIndexLoaded = desiredMin;
-        maxChunkIndexLoaded = desiredMax;
+        // Shed detail or evict far chunks if the loaded chunks exceed their memory budget
+        AllocationGate.enter(AllocationGate.Site.MEMORY_BUDGET);
+        chunkManager.enforceMemoryBudget(avatarChunkKey, gameObjects());
+
+        // Swap in terrain images baked and journals compacted since the last step
+        AllocationGate.enter(AllocationGate.Site.BAKES);
+        chunkManager.applyFinishedBakes(gameObjects());
+        terrainJournal.applyFinishedCompactions();
+
+        // Recompute light maps affected by this frame's changes
+        AllocationGate.enter(AllocationGate.Site.LIGHTING);
+        lightingManager.update();
+
+        // Let the water that moved in the last water step flow on
+        AllocationGate.enter(AllocationGate.Site.WATER);
+        waterManager.update(deltaTime);
+        AllocationGate.enter(AllocationGate.Site.GAME_MANAGER);
+        tuning.publishStats(chunkManager.getLoadedChunkCount(), chunkManager.getQueuedTeardownCount(),
+                chunkManager.getCulledChunkCount(), chunkManager.getTotalMemory().getTotalBytes(),
+                chunkManager.getGeneratedChunkCount(), chunkManager.getGenerationNanos());
+
+        eatenFruits.advance(deltaTime);
+        autosave(deltaTime);
+    }
+
+    /**
+     * Captures the session for the exit save every {@link #SNAPSHOT_INTERVAL} seconds, and saves
+     * it in the background every {@link #AUTOSAVE_INTERVAL} seconds, if a session file was given.
+     */
+    private void autosave(float deltaTime) {
+        if (sessionStore == null) {
+            return;
+        }
+        timeSinceSnapshot += deltaTime;
+        timeSinceSave += deltaTime;
+        boolean saving = timeSinceSave >= AUTOSAVE_INTERVAL && !sessionStore.isSaving();
+        if (timeSinceSnapshot >= SNAPSHOT_INTERVAL || saving) {
+            timeSinceSnapshot = 0;
+            latestSnapshot = captureSession();
+        }
+        if (saving) {
+            timeSinceSave = 0;
+            sessionStore.saveInBackground(latestSnapshot);
+        }
+    }
+
+    /**
+     * Computes a hash of the state a replay must reproduce: the avatar's simulated position and
+     * energy, the terrain edits and the eaten fruits. It leaves out what depends on the streaming
+     * knobs, such as the number of loaded chunks, and combines primitives so it never boxes.
+     */
+    private int computeWorldStateHash() {
+        int hash = Float.floatToIntBits(simulatedAvatarPosition.x());
+        hash = 31 * hash + Float.floatToIntBits(simulatedAvatarPosition.y());
+        hash = 31 * hash + Float.floatToIntBits(avatar.getEnergy());
+        hash = 31 * hash + terrainJournal.getEditHash();
+        return 31 * hash + eatenFruits.getStateHash();
     }
 
     /**
-     * Creates raindrops below cloud blocks. Raindrops disappear after a short transition.
+     * Reports the result of a finished replay and exits with a non-zero status on divergence.
+     */
+    private void finishReplay() {
+        int divergentFrame = replayer.getFirstDivergentFrame();
+        System.out.printf("Replayed %d frames in %.2f ms of update time%n",
+                replayer.getFrameCount(), replayUpdateNanos / 1e6);
+        if (divergentFrame >= 0) {
+            System.out.println("World state diverged from the recording at frame " + divergentFrame);
+        }
+        System.exit(divergentFrame >= 0 ? 1 : 0);
+    }
+
+    /**
+     * Creates raindrops below the cells of a cloud. Raindrops fade out while they fall, and leave
+     * water where they reach the ground.
+     * Which cells drop rain is drawn per rainfall and cell, so the same seed rains the same way.
      */
     private void createRain(Cloud cloud) {
-        Random random = new Random();
-        for (Block cloudBlock : cloud.getCloudBlocks()) {
-            int rainNum = random.nextInt(Constants.PROBABILITY_DENOMINATOR);
+        rainfallCount++;
+        Vector2 cloudTopLeftCorner = cloud.getTopLeftCorner();
+        List<Vector2> cellOffsets = cloud.getCellOffsets();
+        for (int cell = 0; cell < cellOffsets.size(); cell++) {
+            Vector2 cellOffset = cellOffsets.get(cell);
+            int rainNum = StatelessRandom.nextInt(seed, rainfallCount, cell, StatelessRandom.RAIN,
+                    Constants.PROBABILITY_DENOMINATOR);
             if (rainNum < 3) {
                 RectangleRenderable rainRenderable = new RectangleRenderable(
                         ColorSupplier.approximateColor(Color.BLUE)
                 );
-                Block rainBlock = new Block(cloudBlock.getTopLeftCorner(), rainRenderable);
+                Block rainBlock = new Block(cloudTopLeftCorner.add(cellOffset), rainRenderable);
                 rainBlock.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
-                rainBlock.setDimensions(rainBlock.getDimensions().mult(RAIN_DROP_FACTOR));
+                rainBlock.setDimensions(rainBlock.getDimensions().mult(tuning.getRainDropFactor()));
                 rainBlock.transform().setAccelerationY(Constants.GRAVITY);
                 addRainTransition(rainBlock);
                 gameObjects().addGameObject(rainBlock, Layer.BACKGROUND);
@@ -251,37 +1040,67 @@ public class PepseGameManager extends GameManager {
     }
 
     /**
-     * Adds a transition to fade out the raindrop before removing it from the game.
+     * Adds a transition to fade out the raindrop while it falls to the ground, which removes it
+     * from the game and deposits its water once it lands. A raindrop that starts below the ground
+     * fades out in a second and leaves no water.
      */
     private void addRainTransition(Block rainBlock) {
         Consumer<Float> lambdaRain = opacity -> rainBlock.renderer().setOpaqueness(opacity);
+        Vector2 cameraTopLeft = camera().getTopLeftCorner();
+        float fallDistance = terrain.groundHeightAt(cameraTopLeft.x() + rainBlock.getCenter().x())
+                - cameraTopLeft.y() - rainBlock.getTopLeftCorner().y() - rainBlock.getDimensions().y();
+        boolean landing = fallDistance > 0;
+        float fallTime = landing ? (float) Math.sqrt(2 * fallDistance / Constants.GRAVITY) : 1;
         new Transition<>(
                 rainBlock,
                 lambdaRain,
                 1f,
                 0f,
                 Transition.LINEAR_INTERPOLATOR_FLOAT,
-                1,
+                fallTime,
                 Transition.TransitionType.TRANSITION_ONCE,
-                () -> gameObjects().removeGameObject(rainBlock)
+                () -> {
+                    gameObjects().removeGameObject(rainBlock);
+                    if (landing) {
+                        float x = camera().getTopLeftCorner().x() + rainBlock.getCenter().x();
+                        waterManager.deposit(x, terrain.groundHeightAt(x), RAINDROP_WATER);
+                    }
+                }
         );
     }
 
-    /**
-     * Places cloud blocks on the foreground layer of the game.
-     */
-    private void addCloudBlocks(Cloud cloud) {
-        for (Block cloudBlock : cloud.getCloudBlocks()) {
-            gameObjects().addGameObject(cloudBlock, Layer.FOREGROUND);
-        }
-    }
-
     /**
      * Launches the Pepse game.
      *
-     * @param args Not used.
+     * @param args Optionally {@code --record <file>} to record the session, or
+     *             {@code --replay <file>} to replay a recorded one, and {@code --world <file>}
+     *             to resume and save a world, or {@code --connect <port>} to join a shared world,
+     *             and {@code --alloc-gate <frames>} to check that steady frames do not allocate,
+     *             and {@code --config <file>} to read the performance knobs from a properties file,
+     *             and {@code --soak <chunks>} to look for leaks while crossing that many chunks.
+     * @throws IOException if the replayed recording or the configuration cannot be read, or the
+     *                     world server cannot be reached.
      */
-    public static void main(String[] args) {
-        new PepseGameManager().run();
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--record")) {
+                options.setRecordPath(args[i + 1]);
+            } else if (args[i].equals("--replay")) {
+                options.setReplayer(new InputReplayer(args[i + 1]));
+            } else if (args[i].equals("--world")) {
+                options.setWorldPath(args[i + 1]);
+            } else if (args[i].equals("--connect")) {
+                options.setWorldClient(new WorldClient(Integer.parseInt(args[i + 1])));
+            } else if (args[i].equals("--alloc-gate")) {
+                options.setAllocationGateFrames(Integer.parseInt(args[i + 1]));
+            } else if (args[i].equals("--config")) {
+                options.setTuning(Tuning.load(Paths.get(args[i + 1])));
+            } else if (args[i].equals("--soak")) {
+                options.setSoakChunks(Integer.parseInt(args[i + 1]));
+            }
+        }
+        options.tuning.register();
+        new PepseGameManager(options).run();
     }
 }
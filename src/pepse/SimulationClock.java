@@ -0,0 +1,54 @@
+package pepse;
+
+/**
+ * Converts variable frame times into a whole number of fixed simulation steps.
+ *
+ * <p>Frame time is accumulated, and every full {@link #FIXED_TIME_STEP} in the accumulator becomes
+ * one simulation step, so the world behaves the same regardless of the frame rate. A single slow
+ * frame is clamped to {@link #MAX_FRAME_TIME} and at most {@link #MAX_STEPS_PER_FRAME} steps run per
+ * frame, so slow frames cannot compound into ever longer catch-up frames.</p>
+ *
+ * <p>The time left in the accumulator after the steps is exposed as an interpolation factor, used
+ * to render moving objects between their last two simulated positions.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class SimulationClock {
+    /** Duration of a single simulation step, in seconds. */
+    public static final float FIXED_TIME_STEP = 1f / 60;
+
+    private static final float MAX_FRAME_TIME = 0.25f;
+    private static final int MAX_STEPS_PER_FRAME = 5;
+
+    private float accumulator;
+
+    /**
+     * Adds a frame's time to the accumulator and consumes it in whole steps.
+     *
+     * @param frameTime The time that passed since the previous frame, in seconds.
+     * @return The number of simulation steps to run this frame.
+     */
+    public int advance(float frameTime) {
+        accumulator += Math.min(frameTime, MAX_FRAME_TIME);
+        int steps = 0;
+        while (accumulator >= FIXED_TIME_STEP && steps < MAX_STEPS_PER_FRAME) {
+            accumulator -= FIXED_TIME_STEP;
+            steps++;
+        }
+        if (steps == MAX_STEPS_PER_FRAME) {
+            // Drop the backlog instead of carrying it into the next frames.
+            accumulator = Math.min(accumulator, FIXED_TIME_STEP);
+        }
+        return steps;
+    }
+
+    /**
+     * Returns how far the current frame is between the last simulation step and the next one.
+     *
+     * @return A value between 0 and 1.
+     */
+    public float getInterpolationAlpha() {
+        return Math.min(1, accumulator / FIXED_TIME_STEP);
+    }
+}
@@ -0,0 +1,372 @@
+package pepse;
+
+import danogl.util.Vector2;
+import pepse.interfaces.SolidityProvider;
+import pepse.world.Block;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Records the blocks dug out of and placed into the terrain, so that regenerated chunks reflect them.
+ *
+ * <p>Terrain generation is deterministic, so the journal only stores edits, never chunk contents.
+ * Each chunk that has been edited owns a small array of entries, one {@code int} per edit, packing
+ * the block's column and row within the chunk and whether it was placed or dug. Later entries
+ * override earlier ones for the same block. Chunks without edits cost nothing.</p>
+ *
+ * <p>When a chunk's entries grow, a copy of them is compacted on a background thread, keeping only
+ * the latest entry of each block. The compacted array replaces the original on the game thread,
+ * in {@link #applyFinishedCompactions()}, together with any entries recorded in the meantime.</p>
+ *
+ * <p>The journal keeps a running hash of every edit recorded, in order, so a replay can check
+ * that it reproduced the same edits without walking them.</p>
+ *
+ * <p>{@link #capture()} takes a snapshot of all entries for saving without copying them: entries are
+ * only ever appended past the captured size, or replaced by new arrays, so the captured prefix of
+ * each array never changes.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class TerrainJournal {
+    /** The block is as generated. */
+    public static final int UNCHANGED = 0;
+
+    /** The block was dug out. */
+    public static final int DUG = 1;
+
+    /** A block was placed. */
+    public static final int PLACED = 2;
+
+    private static final int MIN_ENTRIES_TO_COMPACT = 16;
+    private static final int COLUMN_SHIFT = 16;
+    private static final int ROW_SHIFT = 1;
+    private static final int CELL_MASK = 0x7FFF;
+    private static final int PLACED_BIT = 1;
+
+    private final Map<Long, ChunkJournal> chunkJournals = new HashMap<>();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int editHash;
+
+    /**
+     * Creates an empty journal.
+     */
+    public TerrainJournal() {
+    }
+
+    /**
+     * Creates a journal holding the entries of a capture, such as one read from a saved session.
+     *
+     * @param capture The captured entries.
+     */
+    public TerrainJournal(Capture capture) {
+        for (int i = 0; i < capture.chunkKeys.length; i++) {
+            ChunkJournal chunkJournal = new ChunkJournal();
+            for (int j = 0; j < capture.sizes[i]; j++) {
+                chunkJournal.append(capture.entries[i][j]);
+                editHash = hashEdit(editHash, capture.chunkKeys[i], capture.entries[i][j]);
+            }
+            chunkJournal.compactedSize = chunkJournal.size;
+            chunkJournals.put(capture.chunkKeys[i], chunkJournal);
+        }
+    }
+
+    /**
+     * Records that the block at the given position was dug out or placed.
+     *
+     * @param blockX Left edge of the block, a multiple of {@link Block#SIZE}.
+     * @param blockY Top edge of the block, a multiple of {@link Block#SIZE}.
+     * @param placed {@code true} if a block was placed, {@code false} if it was dug out.
+     * @return The packed entry of the edit, as returned by {@link #entriesIn(long)}.
+     */
+    public int record(int blockX, int blockY, boolean placed) {
+        long chunkKey = chunkKeyOf(blockX, blockY);
+        ChunkJournal chunkJournal = chunkJournals.computeIfAbsent(chunkKey, key -> new ChunkJournal());
+        int localColumn = Math.floorMod(blockX, ChunkManager.CHUNK_WIDTH) / Block.SIZE;
+        int localRow = Math.floorMod(blockY, ChunkManager.CHUNK_HEIGHT) / Block.SIZE;
+        int entry = (localColumn << COLUMN_SHIFT) | (localRow << ROW_SHIFT) | (placed ? PLACED_BIT : 0);
+        chunkJournal.append(entry);
+        editHash = hashEdit(editHash, chunkKey, entry);
+        if (chunkJournal.pendingCompaction == null && chunkJournal.size >= MIN_ENTRIES_TO_COMPACT
+                && chunkJournal.size >= 2 * chunkJournal.compactedSize) {
+            int[] snapshot = Arrays.copyOf(chunkJournal.entries, chunkJournal.size);
+            chunkJournal.compactionBase = snapshot.length;
+            chunkJournal.pendingCompaction =
+                    CompletableFuture.supplyAsync(() -> compact(snapshot), compactionExecutor);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the latest edit of the block at the given position.
+     *
+     * @param blockX Left edge of the block, a multiple of {@link Block#SIZE}.
+     * @param blockY Top edge of the block, a multiple of {@link Block#SIZE}.
+     * @return {@link #UNCHANGED}, {@link #DUG} or {@link #PLACED}.
+     */
+    public int stateAt(int blockX, int blockY) {
+        ChunkJournal chunkJournal = chunkJournals.get(chunkKeyOf(blockX, blockY));
+        if (chunkJournal == null) {
+            return UNCHANGED;
+        }
+        int cell = ((Math.floorMod(blockX, ChunkManager.CHUNK_WIDTH) / Block.SIZE) << COLUMN_SHIFT)
+                | ((Math.floorMod(blockY, ChunkManager.CHUNK_HEIGHT) / Block.SIZE) << ROW_SHIFT);
+        for (int i = chunkJournal.size - 1; i >= 0; i--) {
+            int entry = chunkJournal.entries[i];
+            if ((entry & ~PLACED_BIT) == cell) {
+                return (entry & PLACED_BIT) != 0 ? PLACED : DUG;
+            }
+        }
+        return UNCHANGED;
+    }
+
+    /**
+     * Returns the positions of the blocks currently placed in a chunk.
+     *
+     * @param chunkKey Key of the chunk.
+     * @return Top-left corners of the placed blocks, in world coordinates.
+     */
+    public List<Vector2> placedBlocksIn(long chunkKey) {
+        List<Vector2> placedBlocks = new ArrayList<>();
+        for (int entry : entriesIn(chunkKey)) {
+            if (isPlaced(entry)) {
+                placedBlocks.add(blockPositionOf(chunkKey, entry));
+            }
+        }
+        return placedBlocks;
+    }
+
+    /**
+     * Returns the compacted entries of a chunk: the latest entry of every edited block.
+     *
+     * @param chunkKey Key of the chunk.
+     * @return The packed entries, in the order of their latest edits.
+     */
+    public int[] entriesIn(long chunkKey) {
+        ChunkJournal chunkJournal = chunkJournals.get(chunkKey);
+        if (chunkJournal == null) {
+            return new int[0];
+        }
+        return compact(Arrays.copyOf(chunkJournal.entries, chunkJournal.size));
+    }
+
+    /**
+     * Returns the top-left corner of the block a packed entry refers to.
+     *
+     * @param chunkKey Key of the chunk the entry belongs to.
+     * @param entry    The packed entry.
+     * @return The block's position, in world coordinates.
+     */
+    public static Vector2 blockPositionOf(long chunkKey, int entry) {
+        int localColumn = (entry >> COLUMN_SHIFT) & CELL_MASK;
+        int localRow = (entry >> ROW_SHIFT) & CELL_MASK;
+        return new Vector2(ChunkKey.chunkX(chunkKey) * ChunkManager.CHUNK_WIDTH + localColumn * Block.SIZE,
+                ChunkKey.chunkY(chunkKey) * ChunkManager.CHUNK_HEIGHT + localRow * Block.SIZE);
+    }
+
+    /**
+     * Checks whether a packed entry records a placed block, rather than a dug out one.
+     */
+    public static boolean isPlaced(int entry) {
+        return (entry & PLACED_BIT) != 0;
+    }
+
+    /**
+     * Returns the number of entries held by all chunks.
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (ChunkJournal chunkJournal : chunkJournals.values()) {
+            count += chunkJournal.size;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a hash of every edit recorded so far, in the order they were recorded. Compaction
+     * does not change it.
+     */
+    public int getEditHash() {
+        return editHash;
+    }
+
+    /**
+     * Combines generated terrain with the edits of this journal.
+     *
+     * @param generatedSolidity Solidity of the terrain as generated.
+     * @return A provider that answers with the edited solidity.
+     */
+    public SolidityProvider overlay(SolidityProvider generatedSolidity) {
+        return (x, y) -> {
+            int blockX = Math.floorDiv((int) Math.floor(x), Block.SIZE) * Block.SIZE;
+            int blockY = Math.floorDiv((int) Math.floor(y), Block.SIZE) * Block.SIZE;
+            int state = stateAt(blockX, blockY);
+            if (state == UNCHANGED) {
+                return generatedSolidity.isSolid(x, y);
+            }
+            return state == PLACED;
+        };
+    }
+
+    /**
+     * Replaces the entries of every chunk whose background compaction finished, keeping the
+     * entries recorded since the compaction started. Must be called from the game thread.
+     */
+    public void applyFinishedCompactions() {
+        for (ChunkJournal chunkJournal : chunkJournals.values()) {
+            if (chunkJournal.pendingCompaction != null && chunkJournal.pendingCompaction.isDone()) {
+                chunkJournal.replaceCompacted(chunkJournal.pendingCompaction.join());
+            }
+        }
+    }
+
+    /**
+     * Captures the entries of every chunk. Must be called from the game thread; the capture itself
+     * may then be used on any thread.
+     *
+     * @return The captured entries.
+     */
+    public Capture capture() {
+        long[] chunkKeys = new long[chunkJournals.size()];
+        int[][] entries = new int[chunkKeys.length][];
+        int[] sizes = new int[chunkKeys.length];
+        int i = 0;
+        for (Map.Entry<Long, ChunkJournal> entry : chunkJournals.entrySet()) {
+            chunkKeys[i] = entry.getKey();
+            entries[i] = entry.getValue().entries;
+            sizes[i] = entry.getValue().size;
+            i++;
+        }
+        return new Capture(chunkKeys, entries, sizes);
+    }
+
+    private static int hashEdit(int hash, long chunkKey, int entry) {
+        return 31 * (31 * hash + Long.hashCode(chunkKey)) + entry;
+    }
+
+    private static long chunkKeyOf(int blockX, int blockY) {
+        return ChunkKey.of(ChunkManager.worldToChunkIndex(blockX), ChunkManager.worldToChunkRow(blockY));
+    }
+
+    /**
+     * Keeps only the latest entry of every block, in the order of their latest edits.
+     */
+    private static int[] compact(int[] entries) {
+        Set<Integer> seenCells = new HashSet<>();
+        int[] compacted = new int[entries.length];
+        int write = compacted.length;
+        for (int i = entries.length - 1; i >= 0; i--) {
+            if (seenCells.add(entries[i] & ~PLACED_BIT)) {
+                compacted[--write] = entries[i];
+            }
+        }
+        return Arrays.copyOfRange(compacted, write, compacted.length);
+    }
+
+    /**
+     * The entries of a journal at the moment it was captured.
+     *
+     * <p>Encoding compacts the entries, so it is meant to run on a background thread.</p>
+     */
+    public static final class Capture {
+        private final long[] chunkKeys;
+        private final int[][] entries;
+        private final int[] sizes;
+
+        private Capture(long[] chunkKeys, int[][] entries, int[] sizes) {
+            this.chunkKeys = chunkKeys;
+            this.entries = entries;
+            this.sizes = sizes;
+        }
+
+        /**
+         * Compacts the captured entries and writes them to a buffer.
+         *
+         * @param buffer The buffer to write to; {@link #maxEncodedSize()} bytes must remain in it.
+         */
+        public void writeTo(ByteBuffer buffer) {
+            buffer.putInt(chunkKeys.length);
+            for (int i = 0; i < chunkKeys.length; i++) {
+                int[] compacted = compact(Arrays.copyOf(entries[i], sizes[i]));
+                buffer.putLong(chunkKeys[i]);
+                buffer.putInt(compacted.length);
+                for (int entry : compacted) {
+                    buffer.putInt(entry);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of bytes {@link #writeTo(ByteBuffer)} writes at most.
+         */
+        public int maxEncodedSize() {
+            int size = Integer.BYTES;
+            for (int chunkSize : sizes) {
+                size += Long.BYTES + Integer.BYTES + chunkSize * Integer.BYTES;
+            }
+            return size;
+        }
+
+        /**
+         * Reads entries written by {@link #writeTo(ByteBuffer)}.
+         *
+         * @param buffer The buffer to read from.
+         * @return The captured entries.
+         */
+        public static Capture readFrom(ByteBuffer buffer) {
+            int chunkCount = buffer.getInt();
+            long[] chunkKeys = new long[chunkCount];
+            int[][] entries = new int[chunkCount][];
+            int[] sizes = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                chunkKeys[i] = buffer.getLong();
+                sizes[i] = buffer.getInt();
+                entries[i] = new int[sizes[i]];
+                buffer.asIntBuffer().get(entries[i]);
+                buffer.position(buffer.position() + sizes[i] * Integer.BYTES);
+            }
+            return new Capture(chunkKeys, entries, sizes);
+        }
+    }
+
+    /**
+     * The growing array of packed entries of a single chunk.
+     */
+    private static class ChunkJournal {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] entries = new int[INITIAL_CAPACITY];
+        private int size;
+        private int compactedSize;
+        private int compactionBase;
+        private CompletableFuture<int[]> pendingCompaction;
+
+        void append(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        /**
+         * Replaces the entries the compaction started from, keeping the ones appended since.
+         */
+        void replaceCompacted(int[] compacted) {
+            int[] newEntries = new int[Math.max(INITIAL_CAPACITY, compacted.length + size - compactionBase)];
+            System.arraycopy(compacted, 0, newEntries, 0, compacted.length);
+            System.arraycopy(entries, compactionBase, newEntries, compacted.length, size - compactionBase);
+            size = compacted.length + size - compactionBase;
+            entries = newEntries;
+            compactedSize = size;
+            pendingCompaction = null;
+        }
+    }
+}
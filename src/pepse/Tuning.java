@@ -0,0 +1,377 @@
+package pepse;
+
+import pepse.constants.Constants;
+import pepse.interfaces.TuningMXBean;
+import pepse.world.Terrain;
+import pepse.world.trees.Flora;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The performance knobs of the game, which can be read from a properties file at startup and
+ * changed over JMX while the game runs.
+ *
+ * <p>Every knob is a volatile field, so the game reads it on its own thread without locking, and a
+ * JMX client sets it on another. Knobs that change how chunks are generated also bump a generation
+ * version; the game compares it once per step and regenerates its loaded chunks when it changed,
+ * so a chunk is never generated with a mix of old and new parameters. The game locks the
+ * generation parameters when the world must be generated exactly as elsewhere, after which their
+ * setters throw.</p>
+ *
+ * <p>The properties file uses the attribute names of {@link TuningMXBean}, such as
+ * {@code renderDistance=4} or {@code memoryBudgetBytes=67108864}; knobs it leaves out keep their
+ * defaults. The chunk size is not a knob: chunk keys, journals, saved sessions and the network
+ * protocol all depend on it.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class Tuning implements TuningMXBean {
+    /** The name the tuning console is registered under. */
+    public static final String OBJECT_NAME = "pepse:type=Tuning";
+
+    private static final int DEFAULT_RENDER_DISTANCE = 3;
+    private static final int DEFAULT_VERTICAL_RENDER_DISTANCE = 2;
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final long DEFAULT_TEARDOWN_BUDGET_NANOS = 1_000_000;
+    private static final float DEFAULT_RAIN_DROP_FACTOR = 0.3f;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private volatile int renderDistance = DEFAULT_RENDER_DISTANCE;
+    private volatile int verticalRenderDistance = DEFAULT_VERTICAL_RENDER_DISTANCE;
+    private volatile long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+    private volatile long teardownBudgetNanos = DEFAULT_TEARDOWN_BUDGET_NANOS;
+    private volatile float rainDropFactor = DEFAULT_RAIN_DROP_FACTOR;
+    private volatile int terrainDepth = Terrain.DEFAULT_DEPTH;
+    private volatile int leafThreshold = Flora.DEFAULT_LEAF_THRESHOLD;
+    private volatile int fruitThreshold = Flora.DEFAULT_FRUIT_THRESHOLD;
+    private final AtomicInteger generationVersion = new AtomicInteger();
+    private volatile boolean generationLocked;
+
+    private volatile int loadedChunkCount;
+    private volatile int queuedTeardownCount;
+    private volatile int culledChunkCount;
+    private volatile int loadedObjectCount;
+    private volatile int culledObjectCount;
+    private volatile long chunkMemoryBytes;
+    private volatile long generatedChunkCount;
+    private volatile long generationNanos;
+    private volatile int lastRegeneratedChunkCount;
+    private volatile long lastRegenerationNanos;
+
+    /**
+     * Reads the knobs from a properties file, over the defaults.
+     *
+     * @param path Path of the properties file.
+     * @return The knobs.
+     * @throws IOException              if the file cannot be read.
+     * @throws IllegalArgumentException if the file names an unknown knob or a value out of range.
+     */
+    public static Tuning load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        Tuning tuning = new Tuning();
+        for (String name : properties.stringPropertyNames()) {
+            tuning.set(name, properties.getProperty(name).trim());
+        }
+        return tuning;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "renderDistance":
+                setRenderDistance(Integer.parseInt(value));
+                break;
+            case "verticalRenderDistance":
+                setVerticalRenderDistance(Integer.parseInt(value));
+                break;
+            case "memoryBudgetBytes":
+                setMemoryBudgetBytes(Long.parseLong(value));
+                break;
+            case "teardownBudgetNanos":
+                setTeardownBudgetNanos(Long.parseLong(value));
+                break;
+            case "rainDropFactor":
+                setRainDropFactor(Float.parseFloat(value));
+                break;
+            case "terrainDepth":
+                setTerrainDepth(Integer.parseInt(value));
+                break;
+            case "leafThreshold":
+                setLeafThreshold(Integer.parseInt(value));
+                break;
+            case "fruitThreshold":
+                setFruitThreshold(Integer.parseInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tuning knob " + name);
+        }
+    }
+
+    /**
+     * Registers the knobs with the platform's MBean server, so JMX clients such as JConsole can
+     * change them under {@value #OBJECT_NAME}.
+     *
+     * @throws IllegalStateException if the knobs cannot be registered, such as when another
+     *                               instance already is.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register the tuning console", e);
+        }
+    }
+
+    /**
+     * Locks the generation parameters, such as while connected to a shared world or replaying,
+     * where the world must be generated exactly as elsewhere. Their setters then throw.
+     */
+    public void lockGeneration() {
+        generationLocked = true;
+    }
+
+    /**
+     * Returns the generation version, which changes whenever a generation parameter does, or
+     * chunks are to be regenerated for any other reason.
+     */
+    public int getGenerationVersion() {
+        return generationVersion.get();
+    }
+
+    /**
+     * Publishes the statistics of the current step. Must be called from the game thread.
+     *
+     * @param loadedChunkCount    Number of loaded chunks, not counting chunks being torn down.
+     * @param queuedTeardownCount Number of chunks being torn down.
+     * @param culledChunkCount    Number of loaded chunks out of view.
+     * @param chunkMemoryBytes    Estimated bytes retained by the loaded chunks.
+     * @param generatedChunkCount Number of chunks generated since the game started.
+     * @param generationNanos     Total time spent generating those chunks.
+     */
+    public void publishStats(int loadedChunkCount, int queuedTeardownCount, int culledChunkCount,
+                             long chunkMemoryBytes, long generatedChunkCount, long generationNanos) {
+        this.loadedChunkCount = loadedChunkCount;
+        this.queuedTeardownCount = queuedTeardownCount;
+        this.culledChunkCount = culledChunkCount;
+        this.chunkMemoryBytes = chunkMemoryBytes;
+        this.generatedChunkCount = generatedChunkCount;
+        this.generationNanos = generationNanos;
+    }
+
+    /**
+     * Publishes the object counts of the loaded chunks. Counting walks every loaded chunk, so the
+     * game only calls this when culling changed something. Must be called from the game thread.
+     *
+     * @param loadedObjectCount Number of objects in the loaded chunks.
+     * @param culledObjectCount Number of those objects taken out of the game by culling.
+     */
+    public void publishObjectCounts(int loadedObjectCount, int culledObjectCount) {
+        this.loadedObjectCount = loadedObjectCount;
+        this.culledObjectCount = culledObjectCount;
+    }
+
+    /**
+     * Publishes how long regenerating the loaded chunks took. Must be called from the game thread.
+     *
+     * @param chunkCount Number of chunks regenerated.
+     * @param nanos      Time spent regenerating them.
+     */
+    public void publishRegeneration(int chunkCount, long nanos) {
+        this.lastRegeneratedChunkCount = chunkCount;
+        this.lastRegenerationNanos = nanos;
+    }
+
+    @Override
+    public int getRenderDistance() {
+        return renderDistance;
+    }
+
+    @Override
+    public void setRenderDistance(int renderDistance) {
+        requireAtLeast("renderDistance", renderDistance, 1);
+        this.renderDistance = renderDistance;
+    }
+
+    @Override
+    public int getVerticalRenderDistance() {
+        return verticalRenderDistance;
+    }
+
+    @Override
+    public void setVerticalRenderDistance(int verticalRenderDistance) {
+        requireAtLeast("verticalRenderDistance", verticalRenderDistance, 1);
+        this.verticalRenderDistance = verticalRenderDistance;
+    }
+
+    @Override
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    @Override
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        requireAtLeast("memoryBudgetBytes", memoryBudgetBytes, 1);
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    @Override
+    public long getTeardownBudgetNanos() {
+        return teardownBudgetNanos;
+    }
+
+    @Override
+    public void setTeardownBudgetNanos(long teardownBudgetNanos) {
+        requireAtLeast("teardownBudgetNanos", teardownBudgetNanos, 1);
+        this.teardownBudgetNanos = teardownBudgetNanos;
+    }
+
+    @Override
+    public float getRainDropFactor() {
+        return rainDropFactor;
+    }
+
+    @Override
+    public void setRainDropFactor(float rainDropFactor) {
+        if (!(rainDropFactor > 0 && rainDropFactor <= 1)) {
+            throw new IllegalArgumentException("rainDropFactor must be in (0, 1], got " + rainDropFactor);
+        }
+        this.rainDropFactor = rainDropFactor;
+    }
+
+    @Override
+    public int getTerrainDepth() {
+        return terrainDepth;
+    }
+
+    @Override
+    public void setTerrainDepth(int terrainDepth) {
+        requireUnlocked();
+        requireAtLeast("terrainDepth", terrainDepth, 1);
+        if (terrainDepth != this.terrainDepth) {
+            this.terrainDepth = terrainDepth;
+            generationVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int getLeafThreshold() {
+        return leafThreshold;
+    }
+
+    @Override
+    public void setLeafThreshold(int leafThreshold) {
+        requireUnlocked();
+        requireProbability("leafThreshold", leafThreshold);
+        if (leafThreshold != this.leafThreshold) {
+            this.leafThreshold = leafThreshold;
+            generationVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int getFruitThreshold() {
+        return fruitThreshold;
+    }
+
+    @Override
+    public void setFruitThreshold(int fruitThreshold) {
+        requireUnlocked();
+        requireProbability("fruitThreshold", fruitThreshold);
+        if (fruitThreshold != this.fruitThreshold) {
+            this.fruitThreshold = fruitThreshold;
+            generationVersion.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void regenerateChunks() {
+        requireUnlocked();
+        generationVersion.incrementAndGet();
+    }
+
+    @Override
+    public boolean isGenerationLocked() {
+        return generationLocked;
+    }
+
+    @Override
+    public int getLoadedChunkCount() {
+        return loadedChunkCount;
+    }
+
+    @Override
+    public int getQueuedTeardownCount() {
+        return queuedTeardownCount;
+    }
+
+    @Override
+    public int getCulledChunkCount() {
+        return culledChunkCount;
+    }
+
+    @Override
+    public int getLoadedObjectCount() {
+        return loadedObjectCount;
+    }
+
+    @Override
+    public int getCulledObjectCount() {
+        return culledObjectCount;
+    }
+
+    @Override
+    public long getChunkMemoryBytes() {
+        return chunkMemoryBytes;
+    }
+
+    @Override
+    public long getGeneratedChunkCount() {
+        return generatedChunkCount;
+    }
+
+    @Override
+    public double getAverageGenerationMillis() {
+        long count = generatedChunkCount;
+        return count == 0 ? 0 : generationNanos / NANOS_PER_MILLI / count;
+    }
+
+    @Override
+    public int getLastRegeneratedChunkCount() {
+        return lastRegeneratedChunkCount;
+    }
+
+    @Override
+    public double getLastRegenerationMillis() {
+        return lastRegenerationNanos / NANOS_PER_MILLI;
+    }
+
+    private void requireUnlocked() {
+        if (generationLocked) {
+            throw new IllegalStateException("Generation parameters are locked while connected or replaying");
+        }
+    }
+
+    private static void requireAtLeast(String name, long value, long minimum) {
+        if (value < minimum) {
+            throw new IllegalArgumentException(name + " must be at least " + minimum + ", got " + value);
+        }
+    }
+
+    private static void requireProbability(String name, int value) {
+        if (value < 0 || value > Constants.PROBABILITY_DENOMINATOR) {
+            throw new IllegalArgumentException(name + " must be between 0 and "
+                    + Constants.PROBABILITY_DENOMINATOR + ", got " + value);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pepse.interfaces;
+
+import danogl.GameObject;
+
+import java.util.Collection;
+
+/**
+ * An interface for reacting to chunks coming and going, and to the avatar moving between chunks.
+ *
+ * <p>Chunks are identified by their {@link pepse.ChunkKey}. The chunk manager invokes
+ * {@link #onChunkLoaded(long)} once a chunk's objects are in the game, and
+ * {@link #onChunkUnloaded(long)} as soon as a chunk leaves the loaded area, even if its objects are
+ * still being torn down. A chunk that comes back before its teardown ends is loaded again.
+ * {@link #onAvatarChunkChanged(long, long)} is only invoked when the avatar's chunk actually
+ * changes, so listeners can do range work there instead of every frame.
+ * {@link #onChunkReleased(long, Collection)} is invoked once a chunk's objects are out of the game
+ * and forgotten by the chunk manager.</p>
+ *
+ * <p>Every method does nothing by default, so a listener only overrides the events it needs.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface ChunkListener {
+    /**
+     * Invoked when a chunk is loaded.
+     *
+     * @param chunkKey the key of the loaded chunk
+     */
+    default void onChunkLoaded(long chunkKey) {
+    }
+
+    /**
+     * Invoked when a chunk is unloaded.
+     *
+     * @param chunkKey the key of the unloaded chunk
+     */
+    default void onChunkUnloaded(long chunkKey) {
+    }
+
+    /**
+     * Invoked when the chunk manager lets go of an unloaded chunk's objects, once the last of them
+     * left the game. Nothing in the game should hold them anymore; a light overlay kept in the
+     * lighting cache is not included.
+     *
+     * @param chunkKey the key of the released chunk
+     * @param objects  the objects of the chunk; only valid during the call
+     */
+    default void onChunkReleased(long chunkKey, Collection<GameObject> objects) {
+    }
+
+    /**
+     * Invoked when the avatar enters another chunk.
+     *
+     * @param previousChunkKey the key of the chunk the avatar left
+     * @param chunkKey         the key of the chunk the avatar entered
+     */
+    default void onAvatarChunkChanged(long previousChunkKey, long chunkKey) {
+    }
+}
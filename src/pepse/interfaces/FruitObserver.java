@@ -0,0 +1,29 @@
+package pepse.interfaces;
+
+import danogl.util.Vector2;
+
+/**
+ * An interface for observing fruits being eaten and growing back.
+ *
+ * <p>Fruits invoke {@link #onFruitEaten(Vector2, float)} when the avatar eats them and
+ * {@link #onFruitRegrown(Vector2)} once they reappear, so eaten fruits can be remembered across
+ * chunk reloads and saved sessions.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface FruitObserver {
+    /**
+     * Invoked when a fruit is eaten.
+     *
+     * @param position      the top-left corner of the fruit
+     * @param regrowthDelay the time until the fruit grows back, in seconds
+     */
+    void onFruitEaten(Vector2 position, float regrowthDelay);
+
+    /**
+     * Invoked when an eaten fruit grows back.
+     *
+     * @param position the top-left corner of the fruit
+     */
+    void onFruitRegrown(Vector2 position);
+}
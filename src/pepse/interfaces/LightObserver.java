@@ -0,0 +1,19 @@
+package pepse.interfaces;
+
+/**
+ * A functional interface for observing changes in a {@link LightSource}.
+ *
+ * <p>Light sources invoke {@link #onLightChanged(LightSource)} whenever they are turned on or off,
+ * so the lighting system only recomputes the areas affected by the change.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@FunctionalInterface
+public interface LightObserver {
+    /**
+     * Invoked when the given light source changes its state.
+     *
+     * @param source the light source that changed
+     */
+    void onLightChanged(LightSource source);
+}
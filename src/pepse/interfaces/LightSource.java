@@ -0,0 +1,35 @@
+package pepse.interfaces;
+
+import danogl.util.Vector2;
+
+/**
+ * An interface for objects that emit light at night.
+ *
+ * <p>Implementing classes provide the position and radius of the light they emit, and whether the
+ * light is currently on. The lighting system uses this information to brighten the area around
+ * the source on the night overlay.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface LightSource {
+    /**
+     * Returns the world position the light is emitted from.
+     *
+     * @return the center of the light, in world coordinates
+     */
+    Vector2 getLightPosition();
+
+    /**
+     * Returns the distance, in pixels, the light reaches.
+     *
+     * @return the radius of the light
+     */
+    float getLightRadius();
+
+    /**
+     * Checks whether the source currently emits light.
+     *
+     * @return {@code true} if the light is on, otherwise {@code false}
+     */
+    boolean isLit();
+}
@@ -0,0 +1,22 @@
+package pepse.interfaces;
+
+/**
+ * A functional interface used to check whether a point of the world lies inside solid terrain.
+ *
+ * <p>Implementers should override {@link #isSolid(float, float)}. Unlike
+ * {@link GroundHeightProvider}, which only knows the surface, this also accounts for caves and
+ * overhangs below the surface.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@FunctionalInterface
+public interface SolidityProvider {
+    /**
+     * Checks whether the given point lies inside solid terrain.
+     *
+     * @param x the horizontal coordinate
+     * @param y the vertical coordinate
+     * @return {@code true} if the point is solid, otherwise {@code false}
+     */
+    boolean isSolid(float x, float y);
+}
@@ -0,0 +1,30 @@
+package pepse.interfaces;
+
+import danogl.util.Vector2;
+
+/**
+ * An interface for changing the terrain block by block.
+ *
+ * <p>Implementers should override {@link #dig(Vector2)} and {@link #place(Vector2)}, which act on
+ * the block containing the given point and report whether the terrain changed. This allows the
+ * avatar to edit the world without knowing how chunks are stored.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface TerrainEditor {
+    /**
+     * Digs out the block containing the given point.
+     *
+     * @param position a point in world coordinates
+     * @return {@code true} if a block was dug out, otherwise {@code false}
+     */
+    boolean dig(Vector2 position);
+
+    /**
+     * Places a block at the cell containing the given point.
+     *
+     * @param position a point in world coordinates
+     * @return {@code true} if a block was placed, otherwise {@code false}
+     */
+    boolean place(Vector2 position);
+}
@@ -0,0 +1,21 @@
+package pepse.interfaces;
+
+/**
+ * A functional interface used to provide the probability of a tree growing at a horizontal
+ * coordinate.
+ *
+ * <p>Implementers should override {@link #getTreeProbability(float)}, which typically depends on the
+ * biome at the given x-coordinate.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@FunctionalInterface
+public interface TreeProbabilityProvider {
+    /**
+     * Returns the probability of a tree growing at the specified x-coordinate.
+     *
+     * @param x the horizontal coordinate
+     * @return a probability between 0 and 1
+     */
+    float getTreeProbability(float x);
+}
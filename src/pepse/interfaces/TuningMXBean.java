@@ -0,0 +1,179 @@
+package pepse.interfaces;
+
+/**
+ * The management interface of the game's tuning console, published over JMX.
+ *
+ * <p>Setters may be called from any thread while the game runs; the game applies the new values
+ * on its own thread at the start of its next step. A setter throws an
+ * {@link IllegalArgumentException} for a value out of range, and leaves the current value as it
+ * was. Changing a generation parameter regenerates every loaded chunk. While the generation
+ * parameters are locked, their setters and {@link #regenerateChunks()} throw an
+ * {@link IllegalStateException}.</p>
+ *
+ * <p>The statistics are published by the game once per step, so they may be one step old.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface TuningMXBean {
+    /**
+     * Returns the number of chunk columns loaded on each side of the avatar.
+     */
+    int getRenderDistance();
+
+    /**
+     * Sets the number of chunk columns loaded on each side of the avatar.
+     *
+     * @param renderDistance the distance in chunks, at least 1
+     */
+    void setRenderDistance(int renderDistance);
+
+    /**
+     * Returns the number of chunk rows loaded above and below the avatar.
+     */
+    int getVerticalRenderDistance();
+
+    /**
+     * Sets the number of chunk rows loaded above and below the avatar.
+     *
+     * @param verticalRenderDistance the distance in chunks, at least 1
+     */
+    void setVerticalRenderDistance(int verticalRenderDistance);
+
+    /**
+     * Returns the maximum estimated bytes the loaded chunks may retain.
+     */
+    long getMemoryBudgetBytes();
+
+    /**
+     * Sets the maximum estimated bytes the loaded chunks may retain.
+     *
+     * @param memoryBudgetBytes the budget in bytes, positive
+     */
+    void setMemoryBudgetBytes(long memoryBudgetBytes);
+
+    /**
+     * Returns the time spent per step removing the blocks of unloaded chunks, in nanoseconds.
+     */
+    long getTeardownBudgetNanos();
+
+    /**
+     * Sets the time spent per step removing the blocks of unloaded chunks.
+     *
+     * @param teardownBudgetNanos the budget in nanoseconds, positive
+     */
+    void setTeardownBudgetNanos(long teardownBudgetNanos);
+
+    /**
+     * Returns the size of a raindrop relative to a block.
+     */
+    float getRainDropFactor();
+
+    /**
+     * Sets the size of new raindrops relative to a block.
+     *
+     * @param rainDropFactor the factor, in (0, 1]
+     */
+    void setRainDropFactor(float rainDropFactor);
+
+    /**
+     * Returns the depth of the terrain below the top of the world, in blocks. A generation
+     * parameter.
+     */
+    int getTerrainDepth();
+
+    /**
+     * Sets the depth of the terrain below the top of the world. A generation parameter.
+     *
+     * @param terrainDepth the depth in blocks, positive
+     */
+    void setTerrainDepth(int terrainDepth);
+
+    /**
+     * Returns the threshold a canopy cell's random draw must exceed to hold a leaf, out of
+     * {@link pepse.constants.Constants#PROBABILITY_DENOMINATOR}. A generation parameter.
+     */
+    int getLeafThreshold();
+
+    /**
+     * Sets the threshold a canopy cell's random draw must exceed to hold a leaf. A generation
+     * parameter.
+     *
+     * @param leafThreshold the threshold, from 0 to the probability denominator
+     */
+    void setLeafThreshold(int leafThreshold);
+
+    /**
+     * Returns the threshold a leaf cell's random draw must exceed to hold a fruit, out of
+     * {@link pepse.constants.Constants#PROBABILITY_DENOMINATOR}. A generation parameter.
+     */
+    int getFruitThreshold();
+
+    /**
+     * Sets the threshold a leaf cell's random draw must exceed to hold a fruit. A generation
+     * parameter.
+     *
+     * @param fruitThreshold the threshold, from 0 to the probability denominator
+     */
+    void setFruitThreshold(int fruitThreshold);
+
+    /**
+     * Regenerates every loaded chunk at the start of the next step.
+     */
+    void regenerateChunks();
+
+    /**
+     * Checks whether the generation parameters are locked, because the world must be generated
+     * exactly as in a shared world or a recording.
+     */
+    boolean isGenerationLocked();
+
+    /**
+     * Returns the number of loaded chunks, not counting chunks being torn down.
+     */
+    int getLoadedChunkCount();
+
+    /**
+     * Returns the number of chunks being torn down.
+     */
+    int getQueuedTeardownCount();
+
+    /**
+     * Returns the number of loaded chunks out of the camera's view.
+     */
+    int getCulledChunkCount();
+
+    /**
+     * Returns the number of objects in the loaded chunks, as of the last time culling changed.
+     */
+    int getLoadedObjectCount();
+
+    /**
+     * Returns the number of objects of the loaded chunks taken out of the game by culling.
+     */
+    int getCulledObjectCount();
+
+    /**
+     * Returns the estimated bytes retained by the loaded chunks.
+     */
+    long getChunkMemoryBytes();
+
+    /**
+     * Returns the number of chunks generated since the game started.
+     */
+    long getGeneratedChunkCount();
+
+    /**
+     * Returns the average time it took to generate a chunk and add its objects, in milliseconds.
+     */
+    double getAverageGenerationMillis();
+
+    /**
+     * Returns the number of chunks the last regeneration generated again.
+     */
+    int getLastRegeneratedChunkCount();
+
+    /**
+     * Returns the time the last regeneration took, in milliseconds.
+     */
+    double getLastRegenerationMillis();
+}
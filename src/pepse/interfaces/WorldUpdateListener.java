@@ -0,0 +1,40 @@
+package pepse.interfaces;
+
+import danogl.util.Vector2;
+
+/**
+ * An interface for receiving the state of a shared world from a world server.
+ *
+ * <p>The client invokes {@link #onChunk(long, int[], Vector2[], float[])} once for every chunk it
+ * subscribes to, and {@link #onEdit(long, int)} and {@link #onFruitEaten(Vector2, float)} for every
+ * change made afterwards, including changes made by this client.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public interface WorldUpdateListener {
+    /**
+     * Invoked when the full state of a chunk arrives.
+     *
+     * @param chunkKey       the key of the chunk
+     * @param entries        the chunk's terrain journal entries
+     * @param fruits         the top-left corners of the chunk's eaten fruits
+     * @param regrowthDelays the time until each of those fruits grows back, in seconds
+     */
+    void onChunk(long chunkKey, int[] entries, Vector2[] fruits, float[] regrowthDelays);
+
+    /**
+     * Invoked when a block of a subscribed chunk is dug out or placed.
+     *
+     * @param chunkKey the key of the chunk
+     * @param entry    the terrain journal entry of the edit
+     */
+    void onEdit(long chunkKey, int entry);
+
+    /**
+     * Invoked when a fruit of a subscribed chunk is eaten.
+     *
+     * @param position      the top-left corner of the fruit
+     * @param regrowthDelay the time until the fruit grows back, in seconds
+     */
+    void onFruitEaten(Vector2 position, float regrowthDelay);
+}
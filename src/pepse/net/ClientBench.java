@@ -0,0 +1,111 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.ChunkManager;
+import pepse.interfaces.WorldUpdateListener;
+import pepse.world.Block;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs several headless clients against a {@link WorldServer} on the same machine, and reports the
+ * latency they see and the size of the chunk payloads they receive.
+ *
+ * <p>Every client walks sideways through the world, subscribing to the same band of chunks the game
+ * keeps loaded, and digs, places and eats at random along the way, so the clients see each other's
+ * deltas.</p>
+ *
+ * <p>Run with {@code java pepse.net.ClientBench [port] [clients] [seconds]}.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class ClientBench {
+    private static final int HORIZONTAL_DISTANCE = 3;
+    private static final int VERTICAL_DISTANCE = 2;
+    private static final long STEP_MILLIS = 1000 / 60;
+    private static final int STEPS_PER_CHUNK = 120;
+    private static final float EDIT_PROBABILITY = 0.05f;
+
+    private ClientBench() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optionally the port of the server, the number of clients and the duration in
+     *             seconds.
+     * @throws IOException if a client loses its connection.
+     * @throws InterruptedException if interrupted while waiting between steps.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : WorldProtocol.DEFAULT_PORT;
+        int clientCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        List<WorldClient> clients = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++) {
+            clients.add(new WorldClient(port));
+        }
+        int[] deltasReceived = new int[1];
+        WorldUpdateListener listener = new WorldUpdateListener() {
+            @Override
+            public void onChunk(long chunkKey, int[] entries, Vector2[] fruits, float[] regrowthDelays) {
+            }
+
+            @Override
+            public void onEdit(long chunkKey, int entry) {
+                deltasReceived[0]++;
+            }
+
+            @Override
+            public void onFruitEaten(Vector2 position, float regrowthDelay) {
+                deltasReceived[0]++;
+            }
+        };
+
+        Random random = new Random();
+        long steps = seconds * 1000L / STEP_MILLIS;
+        double latencySum = 0;
+        long latencySamples = 0;
+        for (long step = 0; step < steps; step++) {
+            for (int i = 0; i < clientCount; i++) {
+                WorldClient client = clients.get(i);
+                // Clients start next to each other and walk in opposite directions
+                int chunkX = (int) ((i % 2 == 0 ? step : -step) / STEPS_PER_CHUNK) + i / 2;
+                client.updateSubscriptions(chunkX - HORIZONTAL_DISTANCE, chunkX + HORIZONTAL_DISTANCE,
+                        -VERTICAL_DISTANCE, VERTICAL_DISTANCE);
+                if (random.nextFloat() < EDIT_PROBABILITY) {
+                    int blockX = chunkX * ChunkManager.CHUNK_WIDTH
+                            + random.nextInt(ChunkManager.CHUNK_WIDTH / Block.SIZE) * Block.SIZE;
+                    int blockY = random.nextInt(ChunkManager.CHUNK_HEIGHT / Block.SIZE) * Block.SIZE;
+                    if (random.nextBoolean()) {
+                        client.sendEdit(blockX, blockY, random.nextBoolean());
+                    } else {
+                        client.sendFruitEaten(new Vector2(blockX, blockY), 30);
+                    }
+                }
+                client.poll(listener);
+                if (client.getLatencyMillis() > 0) {
+                    latencySum += client.getLatencyMillis();
+                    latencySamples++;
+                }
+            }
+            Thread.sleep(STEP_MILLIS);
+        }
+
+        long chunks = 0;
+        double chunkBytes = 0;
+        for (WorldClient client : clients) {
+            chunks += client.getChunksReceived();
+            chunkBytes += client.getBytesPerChunk() * client.getChunksReceived();
+            client.close();
+        }
+        System.out.printf("%d clients: %d chunks (%.1f bytes/chunk), %d deltas, %.3f ms average latency%n",
+                clientCount, chunks, chunks == 0 ? 0 : chunkBytes / chunks, deltasReceived[0],
+                latencySamples == 0 ? 0 : latencySum / latencySamples);
+    }
+}
@@ -0,0 +1,260 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.ChunkKey;
+import pepse.interfaces.WorldUpdateListener;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A connection to a {@link WorldServer} on the local machine.
+ *
+ * <p>The client is polled once per frame from the game thread: {@link #poll(WorldUpdateListener)}
+ * reads whatever arrived without blocking and hands it to the listener. The chunks the client
+ * subscribes to follow the range of chunks the game has loaded.</p>
+ *
+ * <p>The client pings the server every second and keeps track of the round trip latency, and of how
+ * many bytes an average chunk payload took.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class WorldClient implements AutoCloseable {
+    private static final long PING_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final int seed;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Set<Long> subscriptions = new HashSet<>();
+    private long nextPing;
+    private float latencyMillis;
+    private long chunksReceived;
+    private long chunkBytesReceived;
+
+    /**
+     * Connects to a world server on the local machine and waits for it to welcome the client.
+     *
+     * @param port The port of the server.
+     * @throws IOException if the server cannot be reached or does not answer as expected.
+     */
+    public WorldClient(int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+        int start = WorldProtocol.beginFrame(writeBuffer, WorldProtocol.JOIN);
+        WorldProtocol.endFrame(writeBuffer, start);
+        flush();
+
+        readBuffer.limit(WorldProtocol.LENGTH_SIZE + Byte.BYTES + Integer.BYTES);
+        while (readBuffer.hasRemaining()) {
+            if (channel.read(readBuffer) < 0) {
+                throw new IOException("The world server closed the connection");
+            }
+        }
+        readBuffer.flip();
+        readBuffer.getInt();
+        if (readBuffer.get() != WorldProtocol.WELCOME) {
+            throw new IOException("Unexpected answer from the world server");
+        }
+        seed = readBuffer.getInt();
+        readBuffer.clear();
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Returns the seed of the shared world.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the latest round trip time to the server, in milliseconds.
+     */
+    public float getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Returns the average size of the chunk payloads received so far, in bytes.
+     */
+    public float getBytesPerChunk() {
+        return chunksReceived == 0 ? 0 : (float) chunkBytesReceived / chunksReceived;
+    }
+
+    /**
+     * Returns the number of chunk payloads received so far.
+     */
+    public long getChunksReceived() {
+        return chunksReceived;
+    }
+
+    /**
+     * Subscribes to every chunk in the given range of columns and rows, and unsubscribes from the
+     * chunks outside it.
+     */
+    public void updateSubscriptions(int minChunkX, int maxChunkX, int minChunkY, int maxChunkY)
+            throws IOException {
+        Iterator<Long> iterator = subscriptions.iterator();
+        while (iterator.hasNext()) {
+            long chunkKey = iterator.next();
+            int chunkX = ChunkKey.chunkX(chunkKey);
+            int chunkY = ChunkKey.chunkY(chunkKey);
+            if (chunkX < minChunkX || chunkX > maxChunkX || chunkY < minChunkY || chunkY > maxChunkY) {
+                iterator.remove();
+                sendChunkKey(WorldProtocol.UNSUBSCRIBE, chunkKey);
+            }
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                long chunkKey = ChunkKey.of(chunkX, chunkY);
+                if (subscriptions.add(chunkKey)) {
+                    sendChunkKey(WorldProtocol.SUBSCRIBE, chunkKey);
+                }
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Asks the server to record a terrain edit.
+     *
+     * @param blockX Left edge of the block.
+     * @param blockY Top edge of the block.
+     * @param placed {@code true} if a block was placed, {@code false} if it was dug out.
+     */
+    public void sendEdit(int blockX, int blockY, boolean placed) throws IOException {
+        int start = WorldProtocol.beginFrame(reserve(Integer.BYTES * 2 + Byte.BYTES), WorldProtocol.EDIT);
+        writeBuffer.putInt(blockX);
+        writeBuffer.putInt(blockY);
+        writeBuffer.put((byte) (placed ? 1 : 0));
+        WorldProtocol.endFrame(writeBuffer, start);
+        flush();
+    }
+
+    /**
+     * Tells the server that a fruit was eaten.
+     *
+     * @param position      The top-left corner of the fruit.
+     * @param regrowthDelay The time until the fruit grows back, in seconds.
+     */
+    public void sendFruitEaten(Vector2 position, float regrowthDelay) throws IOException {
+        int start = WorldProtocol.beginFrame(reserve(Integer.BYTES * 2 + Float.BYTES), WorldProtocol.EAT);
+        writeBuffer.putInt(Math.round(position.x()));
+        writeBuffer.putInt(Math.round(position.y()));
+        writeBuffer.putFloat(regrowthDelay);
+        WorldProtocol.endFrame(writeBuffer, start);
+        flush();
+    }
+
+    /**
+     * Reads every message that has arrived without blocking, hands it to the listener, and pings the
+     * server when it is time to.
+     *
+     * @param listener The listener to notify.
+     * @throws IOException if the connection is lost.
+     */
+    public void poll(WorldUpdateListener listener) throws IOException {
+        long now = System.nanoTime();
+        if (now >= nextPing) {
+            int start = WorldProtocol.beginFrame(reserve(Long.BYTES), WorldProtocol.PING);
+            writeBuffer.putLong(now);
+            WorldProtocol.endFrame(writeBuffer, start);
+            nextPing = now + PING_INTERVAL_NANOS;
+        }
+        flush();
+
+        if (channel.read(readBuffer) < 0) {
+            throw new IOException("The world server closed the connection");
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= WorldProtocol.LENGTH_SIZE && readBuffer.remaining()
+                >= WorldProtocol.LENGTH_SIZE + readBuffer.getInt(readBuffer.position())) {
+            int length = readBuffer.getInt();
+            int end = readBuffer.position() + length;
+            handle(readBuffer.get(), length, listener);
+            readBuffer.position(end);
+        }
+        readBuffer.compact();
+    }
+
+    private void handle(byte type, int length, WorldUpdateListener listener) {
+        switch (type) {
+            case WorldProtocol.PONG:
+                latencyMillis = (System.nanoTime() - readBuffer.getLong()) / 1e6f;
+                break;
+            case WorldProtocol.CHUNK:
+                long chunkKey = readBuffer.getLong();
+                int[] entries = new int[readBuffer.getShort()];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = readBuffer.getInt();
+                }
+                Vector2[] fruits = new Vector2[readBuffer.getShort()];
+                float[] regrowthDelays = new float[fruits.length];
+                for (int i = 0; i < fruits.length; i++) {
+                    fruits[i] = WorldProtocol.getFruitPosition(readBuffer, chunkKey);
+                    regrowthDelays[i] = readBuffer.getFloat();
+                }
+                chunksReceived++;
+                chunkBytesReceived += WorldProtocol.LENGTH_SIZE + length;
+                if (subscriptions.contains(chunkKey)) {
+                    listener.onChunk(chunkKey, entries, fruits, regrowthDelays);
+                }
+                break;
+            case WorldProtocol.EDIT_DELTA:
+                listener.onEdit(readBuffer.getLong(), readBuffer.getInt());
+                break;
+            case WorldProtocol.FRUIT_DELTA:
+                long fruitChunkKey = readBuffer.getLong();
+                int count = readBuffer.getShort();
+                for (int i = 0; i < count; i++) {
+                    Vector2 position = WorldProtocol.getFruitPosition(readBuffer, fruitChunkKey);
+                    listener.onFruitEaten(position, readBuffer.getFloat());
+                }
+                break;
+            default:
+                System.err.println("Unknown message type " + type);
+        }
+    }
+
+    private void sendChunkKey(byte type, long chunkKey) {
+        int start = WorldProtocol.beginFrame(reserve(Long.BYTES), type);
+        writeBuffer.putLong(chunkKey);
+        WorldProtocol.endFrame(writeBuffer, start);
+    }
+
+    /**
+     * Makes sure the write buffer has room for a frame with the given payload size, and returns it.
+     */
+    private ByteBuffer reserve(int payloadSize) {
+        int size = WorldProtocol.LENGTH_SIZE + Byte.BYTES + payloadSize;
+        if (writeBuffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+                    writeBuffer.position() + size));
+            writeBuffer = larger.put(writeBuffer.flip());
+        }
+        return writeBuffer;
+    }
+
+    /**
+     * Writes as much of the pending messages as the channel accepts.
+     */
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        channel.write(writeBuffer);
+        writeBuffer.compact();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
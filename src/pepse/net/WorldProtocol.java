@@ -0,0 +1,114 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.ChunkKey;
+import pepse.ChunkManager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes the compact binary protocol shared by {@link WorldServer} and {@link WorldClient}.
+ *
+ * <p>Every message is a frame: its length (int, excluding the length itself), its type (byte) and
+ * its payload. The world is generated deterministically from the server's seed, so the server only
+ * sends the state it owns on top of generation: the terrain edits and the eaten fruits of a chunk.
+ * A full chunk payload is sent once per subscription, and only deltas follow.</p>
+ *
+ * <p>Positions inside a chunk are sent relative to the chunk's corner, as two shorts, and terrain
+ * edits are sent as the journal's packed entries.</p>
+ *
+ * <ul>
+ *     <li>{@link #JOIN}: client to server, no payload. Answered with {@link #WELCOME} and the seed.</li>
+ *     <li>{@link #SUBSCRIBE} / {@link #UNSUBSCRIBE}: client to server, a chunk key.</li>
+ *     <li>{@link #EDIT}: client to server, block x and y (ints) and whether it was placed (byte).</li>
+ *     <li>{@link #EAT}: client to server, fruit x and y (ints) and the regrowth delay (float).</li>
+ *     <li>{@link #PING} / {@link #PONG}: a timestamp (long), echoed back by the server.</li>
+ *     <li>{@link #CHUNK}: server to client, a chunk key, the chunk's journal entries and its eaten
+ *     fruits.</li>
+ *     <li>{@link #EDIT_DELTA}: server to client, a chunk key and one journal entry.</li>
+ *     <li>{@link #FRUIT_DELTA}: server to client, a chunk key and the fruits eaten in it since the
+ *     previous tick.</li>
+ * </ul>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class WorldProtocol {
+    /** The default port of the world server. */
+    public static final int DEFAULT_PORT = 7777;
+
+    /** The size of the length prefix of every frame. */
+    public static final int LENGTH_SIZE = Integer.BYTES;
+
+    /** The size of a single eaten fruit in a payload: its local x and y and its regrowth delay. */
+    public static final int FRUIT_SIZE = 2 * Short.BYTES + Float.BYTES;
+
+    /* Message types, as described above. */
+    public static final byte JOIN = 1;
+    public static final byte WELCOME = 2;
+    public static final byte SUBSCRIBE = 3;
+    public static final byte UNSUBSCRIBE = 4;
+    public static final byte EDIT = 5;
+    public static final byte EAT = 6;
+    public static final byte PING = 7;
+    public static final byte PONG = 8;
+    public static final byte CHUNK = 9;
+    public static final byte EDIT_DELTA = 10;
+    public static final byte FRUIT_DELTA = 11;
+
+    private WorldProtocol() {
+    }
+
+    /**
+     * Starts a frame of the given type, leaving room for its length.
+     *
+     * @param buffer The buffer to write to.
+     * @param type   The message type.
+     * @return The position of the frame's length, to be passed to {@link #endFrame(ByteBuffer, int)}.
+     */
+    public static int beginFrame(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length of a frame started by {@link #beginFrame(ByteBuffer, byte)}.
+     *
+     * @param buffer The buffer the frame was written to.
+     * @param start  The position returned by {@link #beginFrame(ByteBuffer, byte)}.
+     */
+    public static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - LENGTH_SIZE);
+    }
+
+    /**
+     * Writes a fruit position relative to the corner of its chunk, rounded to whole pixels, with its
+     * regrowth delay.
+     */
+    public static void putFruit(ByteBuffer buffer, long chunkKey, Vector2 position, float regrowthDelay) {
+        int minX = ChunkKey.chunkX(chunkKey) * ChunkManager.CHUNK_WIDTH;
+        int minY = ChunkKey.chunkY(chunkKey) * ChunkManager.CHUNK_HEIGHT;
+        buffer.putShort((short) (Math.round(position.x()) - minX));
+        buffer.putShort((short) (Math.round(position.y()) - minY));
+        buffer.putFloat(regrowthDelay);
+    }
+
+    /**
+     * Reads a fruit position written by {@link #putFruit}, in world coordinates.
+     */
+    public static Vector2 getFruitPosition(ByteBuffer buffer, long chunkKey) {
+        float x = buffer.getShort() + ChunkKey.chunkX(chunkKey) * ChunkManager.CHUNK_WIDTH;
+        float y = buffer.getShort() + ChunkKey.chunkY(chunkKey) * ChunkManager.CHUNK_HEIGHT;
+        return new Vector2(x, y);
+    }
+
+    /**
+     * Returns the key of the chunk that contains the given position.
+     */
+    public static long chunkKeyAt(Vector2 position) {
+        return ChunkKey.of(ChunkManager.worldToChunkIndex(position.x()),
+                ChunkManager.worldToChunkRow(position.y()));
+    }
+}
@@ -0,0 +1,389 @@
+package pepse.net;
+
+import danogl.util.Vector2;
+import pepse.ChunkKey;
+import pepse.ChunkManager;
+import pepse.TerrainJournal;
+import pepse.world.trees.EatenFruits;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+
+/**
+ * A headless server that owns a shared world: its seed, its terrain edits and its eaten fruits.
+ *
+ * <p>The server runs a single non-blocking NIO loop on the loopback interface. Clients subscribe
+ * to the chunks they have loaded and receive a full payload for each, followed by deltas whenever
+ * another client edits the terrain or eats a fruit there. Fruit changes are batched per chunk and
+ * sent once per tick.</p>
+ *
+ * <p>A client that sends a frame the server cannot read, or whose channel fails, is disconnected
+ * without affecting the others.</p>
+ *
+ * <p>Every few seconds the server reports how many bytes an average chunk payload and delta took.</p>
+ *
+ * <p>Run with {@code java pepse.net.WorldServer [port] [seed]}.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class WorldServer {
+    private static final long TICK_MILLIS = 1000 / 60;
+    private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int EDIT_DELTA_SIZE = WorldProtocol.LENGTH_SIZE + Byte.BYTES + Long.BYTES
+            + Integer.BYTES;
+
+    private final int seed;
+    private final TerrainJournal journal = new TerrainJournal();
+    private final EatenFruits eatenFruits = new EatenFruits();
+    private final Map<SocketChannel, Connection> connections = new HashMap<>();
+    private final Map<Long, List<Vector2>> pendingFruitDeltas = new HashMap<>();
+    private final Map<Long, List<Float>> pendingFruitDelays = new HashMap<>();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private long chunksSent;
+    private long chunkBytesSent;
+    private long deltasSent;
+    private long deltaBytesSent;
+
+    /**
+     * Creates a server for a world with the given seed, listening on the loopback interface.
+     *
+     * @param port The port to listen on.
+     * @param seed The seed of the shared world.
+     * @throws IOException if the port cannot be bound.
+     */
+    public WorldServer(int port, int seed) throws IOException {
+        this.seed = seed;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Runs the server loop until the thread is interrupted.
+     *
+     * @throws IOException if the selector fails.
+     */
+    public void run() throws IOException {
+        long previousTick = System.nanoTime();
+        long nextReport = previousTick + REPORT_INTERVAL_NANOS;
+        while (!Thread.currentThread().isInterrupted()) {
+            selector.select(TICK_MILLIS);
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                } else {
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+            }
+
+            long now = System.nanoTime();
+            eatenFruits.advance((now - previousTick) / 1e9f);
+            previousTick = now;
+            sendFruitDeltas();
+            journal.applyFinishedCompactions();
+            if (now >= nextReport) {
+                report();
+                nextReport = now + REPORT_INTERVAL_NANOS;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Connection connection = new Connection(channel, key);
+        key.attach(connection);
+        connections.put(channel, connection);
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.channel.read(connection.readBuffer) < 0) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer buffer = connection.readBuffer.flip();
+        while (buffer.remaining() >= WorldProtocol.LENGTH_SIZE) {
+            // A frame holds at least its type, and must fit in the read buffer to ever complete
+            int length = buffer.getInt(buffer.position());
+            if (length < Byte.BYTES || length > READ_BUFFER_SIZE - WorldProtocol.LENGTH_SIZE) {
+                System.err.println("Disconnecting a client that sent a frame of length " + length);
+                disconnect(connection);
+                return;
+            }
+            if (buffer.remaining() < WorldProtocol.LENGTH_SIZE + length) {
+                break;
+            }
+
+            // Limit the buffer to the frame, so a payload too short for its type cannot read past it
+            int limit = buffer.limit();
+            int end = buffer.position() + WorldProtocol.LENGTH_SIZE + length;
+            buffer.position(buffer.position() + WorldProtocol.LENGTH_SIZE).limit(end);
+            try {
+                handle(connection, buffer.get(), buffer);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                System.err.println("Disconnecting a client that sent a malformed frame: " + e);
+                disconnect(connection);
+                return;
+            }
+            if (!connection.key.isValid()) {
+                return;
+            }
+            buffer.limit(limit).position(end);
+        }
+        buffer.compact();
+    }
+
+    private void handle(Connection connection, byte type, ByteBuffer payload) {
+        switch (type) {
+            case WorldProtocol.JOIN:
+                ByteBuffer welcome =
+                        connection.reserve(WorldProtocol.LENGTH_SIZE + Byte.BYTES + Integer.BYTES);
+                int start = WorldProtocol.beginFrame(welcome, WorldProtocol.WELCOME);
+                welcome.putInt(seed);
+                WorldProtocol.endFrame(welcome, start);
+                break;
+            case WorldProtocol.SUBSCRIBE:
+                long chunkKey = payload.getLong();
+                connection.subscriptions.add(chunkKey);
+                sendChunk(connection, chunkKey);
+                break;
+            case WorldProtocol.UNSUBSCRIBE:
+                connection.subscriptions.remove(payload.getLong());
+                break;
+            case WorldProtocol.EDIT:
+                applyEdit(payload.getInt(), payload.getInt(), payload.get() != 0);
+                break;
+            case WorldProtocol.EAT:
+                Vector2 position = new Vector2(payload.getInt(), payload.getInt());
+                float regrowthDelay = payload.getFloat();
+                if (eatenFruits.remainingDelay(position) == 0) {
+                    eatenFruits.onFruitEaten(position, regrowthDelay);
+                    long fruitChunkKey = WorldProtocol.chunkKeyAt(position);
+                    pendingFruitDeltas.computeIfAbsent(fruitChunkKey, key -> new ArrayList<>())
+                            .add(position);
+                    pendingFruitDelays.computeIfAbsent(fruitChunkKey, key -> new ArrayList<>())
+                            .add(regrowthDelay);
+                }
+                break;
+            case WorldProtocol.PING:
+                ByteBuffer pong = connection.reserve(WorldProtocol.LENGTH_SIZE + Byte.BYTES + Long.BYTES);
+                int pongStart = WorldProtocol.beginFrame(pong, WorldProtocol.PONG);
+                pong.putLong(payload.getLong());
+                WorldProtocol.endFrame(pong, pongStart);
+                break;
+            default:
+                System.err.println("Unknown message type " + type);
+        }
+        flush(connection);
+    }
+
+    /**
+     * Sends the full state of a chunk: its journal entries and its eaten fruits.
+     */
+    private void sendChunk(Connection connection, long chunkKey) {
+        int[] entries = journal.entriesIn(chunkKey);
+        List<Vector2> fruits = new ArrayList<>();
+        List<Float> delays = new ArrayList<>();
+        for (Map.Entry<Long, Float> entry : eatenFruits.capture().entrySet()) {
+            Vector2 position = EatenFruits.unpack(entry.getKey());
+            float remainingDelay = eatenFruits.remainingDelay(position);
+            if (remainingDelay > 0 && WorldProtocol.chunkKeyAt(position) == chunkKey) {
+                fruits.add(position);
+                delays.add(remainingDelay);
+            }
+        }
+        int size = WorldProtocol.LENGTH_SIZE + Byte.BYTES + Long.BYTES + Short.BYTES
+                + entries.length * Integer.BYTES + Short.BYTES + fruits.size() * WorldProtocol.FRUIT_SIZE;
+        ByteBuffer buffer = connection.reserve(size);
+        int start = WorldProtocol.beginFrame(buffer, WorldProtocol.CHUNK);
+        buffer.putLong(chunkKey);
+        buffer.putShort((short) entries.length);
+        for (int entry : entries) {
+            buffer.putInt(entry);
+        }
+        buffer.putShort((short) fruits.size());
+        for (int i = 0; i < fruits.size(); i++) {
+            WorldProtocol.putFruit(buffer, chunkKey, fruits.get(i), delays.get(i));
+        }
+        WorldProtocol.endFrame(buffer, start);
+        chunksSent++;
+        chunkBytesSent += size;
+    }
+
+    /**
+     * Records a terrain edit and sends it to every client subscribed to its chunk, including the
+     * client that made it.
+     */
+    private void applyEdit(int blockX, int blockY, boolean placed) {
+        int entry = journal.record(blockX, blockY, placed);
+        long chunkKey = ChunkKey.of(ChunkManager.worldToChunkIndex(blockX),
+                ChunkManager.worldToChunkRow(blockY));
+        // Copied, since a failed flush disconnects its connection
+        for (Connection connection : new ArrayList<>(connections.values())) {
+            if (connection.subscriptions.contains(chunkKey)) {
+                ByteBuffer buffer = connection.reserve(EDIT_DELTA_SIZE);
+                int start = WorldProtocol.beginFrame(buffer, WorldProtocol.EDIT_DELTA);
+                buffer.putLong(chunkKey);
+                buffer.putInt(entry);
+                WorldProtocol.endFrame(buffer, start);
+                flush(connection);
+                deltasSent++;
+                deltaBytesSent += EDIT_DELTA_SIZE;
+            }
+        }
+    }
+
+    /**
+     * Sends the fruits eaten since the previous tick, one batch per chunk, to every subscribed client.
+     */
+    private void sendFruitDeltas() {
+        for (Map.Entry<Long, List<Vector2>> entry : pendingFruitDeltas.entrySet()) {
+            long chunkKey = entry.getKey();
+            List<Vector2> fruits = entry.getValue();
+            List<Float> delays = pendingFruitDelays.get(chunkKey);
+            int size = WorldProtocol.LENGTH_SIZE + Byte.BYTES + Long.BYTES + Short.BYTES
+                    + fruits.size() * WorldProtocol.FRUIT_SIZE;
+            for (Connection connection : new ArrayList<>(connections.values())) {
+                if (!connection.subscriptions.contains(chunkKey)) {
+                    continue;
+                }
+                ByteBuffer buffer = connection.reserve(size);
+                int start = WorldProtocol.beginFrame(buffer, WorldProtocol.FRUIT_DELTA);
+                buffer.putLong(chunkKey);
+                buffer.putShort((short) fruits.size());
+                for (int i = 0; i < fruits.size(); i++) {
+                    WorldProtocol.putFruit(buffer, chunkKey, fruits.get(i), delays.get(i));
+                }
+                WorldProtocol.endFrame(buffer, start);
+                flush(connection);
+                deltasSent++;
+                deltaBytesSent += size;
+            }
+        }
+        pendingFruitDeltas.clear();
+        pendingFruitDelays.clear();
+    }
+
+    /**
+     * Writes what the channel of a connection accepts, and disconnects the connection if it failed.
+     */
+    private void flush(Connection connection) {
+        if (!connection.flush()) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connections.remove(connection.channel);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+    }
+
+    private void report() {
+        System.out.printf("%d clients, %d chunks sent (%.1f bytes/chunk), "
+                        + "%d deltas sent (%.1f bytes/delta)%n",
+                connections.size(), chunksSent, chunksSent == 0 ? 0 : (double) chunkBytesSent / chunksSent,
+                deltasSent, deltasSent == 0 ? 0 : (double) deltaBytesSent / deltasSent);
+    }
+
+    /**
+     * The channel, buffers and subscriptions of a single client.
+     */
+    private static class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Set<Long> subscriptions = new HashSet<>();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Makes sure the write buffer has room for the given number of bytes, and returns it.
+         */
+        ByteBuffer reserve(int size) {
+            if (writeBuffer.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+                        writeBuffer.position() + size));
+                writeBuffer = larger.put(writeBuffer.flip());
+            }
+            return writeBuffer;
+        }
+
+        /**
+         * Writes as much as the channel accepts, and waits for it to become writable if anything is
+         * left.
+         *
+         * @return {@code false} if the channel failed, otherwise {@code true}.
+         */
+        boolean flush() {
+            writeBuffer.flip();
+            try {
+                channel.write(writeBuffer);
+            } catch (IOException e) {
+                writeBuffer.clear();
+                return false;
+            }
+            writeBuffer.compact();
+            if (key.isValid()) {
+                key.interestOps(writeBuffer.position() > 0
+                        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Starts a world server.
+     *
+     * @param args Optionally the port, followed by the seed of the world.
+     * @throws IOException if the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : WorldProtocol.DEFAULT_PORT;
+        int seed = args.length > 1 ? Integer.parseInt(args[1]) : new Random().nextInt();
+        System.out.println("World server on port " + port + " with seed " + seed);
+        new WorldServer(port, seed).run();
+    }
+}
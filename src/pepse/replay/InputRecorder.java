@@ -0,0 +1,95 @@
+package pepse.replay;
+
+import danogl.gui.UserInputListener;
+import pepse.interfaces.TuningMXBean;
+
+import java.io.*;
+
+/**
+ * Records the pressed keys, delta time and world-state hash of every frame to a file.
+ *
+ * <p>Frames are streamed to disk as they are recorded, so the recording does not grow in memory.
+ * The resulting file can be played back by an {@link InputReplayer} to re-run the same traversal.</p>
+ *
+ * <p>Writing a frame and closing the file are synchronized, so the recorder can be closed from a
+ * shutdown hook while the game thread records: the last frame is either written whole or not at
+ * all, and frames recorded after closing are dropped.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class InputRecorder implements Closeable {
+    private final DataOutputStream output;
+    private boolean closed;
+
+    /**
+     * Creates a recorder writing to the given file and stores the world seed and the knobs that
+     * shape the world in its header.
+     *
+     * @param path   Path of the recording file.
+     * @param seed   Seed the world was generated with.
+     * @param tuning The knobs the world is generated and streamed with.
+     * @throws IOException if the file cannot be created.
+     */
+    public InputRecorder(String path, int seed, TuningMXBean tuning) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        output.writeInt(InputRecording.MAGIC);
+        output.writeInt(InputRecording.VERSION);
+        output.writeInt(seed);
+        output.writeInt(tuning.getRenderDistance());
+        output.writeInt(tuning.getVerticalRenderDistance());
+        output.writeLong(tuning.getMemoryBudgetBytes());
+        output.writeInt(tuning.getTerrainDepth());
+        output.writeInt(tuning.getLeafThreshold());
+        output.writeInt(tuning.getFruitThreshold());
+    }
+
+    /**
+     * Captures the state of the recorded keys at the start of a frame.
+     *
+     * @param inputListener The live input listener.
+     * @return The pressed keys packed into a byte, to be passed to {@link #recordFrame(float, int, int)}.
+     */
+    public int captureKeys(UserInputListener inputListener) {
+        int keys = 0;
+        for (int keyCode : InputRecording.RECORDED_KEYS) {
+            if (inputListener.isKeyPressed(keyCode)) {
+                keys |= InputRecording.keyBit(keyCode);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Appends a single frame to the recording.
+     *
+     * @param deltaTime      The frame's delta time.
+     * @param keys           The keys pressed during the frame, as returned by {@link #captureKeys}.
+     * @param worldStateHash Hash of the world state after the frame.
+     */
+    public synchronized void recordFrame(float deltaTime, int keys, int worldStateHash) {
+        if (closed) {
+            return;
+        }
+        try {
+            output.writeFloat(deltaTime);
+            output.writeByte(keys);
+            output.writeInt(worldStateHash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the recording file, after the frame being recorded, if any. Does nothing
+     * if the file is already closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        output.close();
+    }
+}
@@ -0,0 +1,45 @@
+package pepse.replay;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Describes the compact binary format shared by {@link InputRecorder} and {@link InputReplayer}.
+ *
+ * <p>A recording starts with a header holding {@link #MAGIC}, {@link #VERSION}, the world seed and
+ * the knobs that shape the recorded world: the render distance, vertical render distance, memory
+ * budget (long), terrain depth, leaf threshold and fruit threshold. It is followed by one
+ * fixed-size record per frame: the frame's delta time (float), the pressed keys packed into a
+ * single byte, and a hash of the world state after the frame (int).</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class InputRecording {
+    /** Identifies a file as a Pepse input recording ("PEPR"). */
+    public static final int MAGIC = 0x50455052;
+
+    /** Version of the recording format. */
+    public static final int VERSION = 2;
+
+    /** The keys captured by a recording, in the order of their bits in the key byte. */
+    public static final int[] RECORDED_KEYS = {KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_SPACE,
+            KeyEvent.VK_Z, KeyEvent.VK_X};
+
+    private InputRecording() {
+    }
+
+    /**
+     * Returns the bit that represents the given key in a frame's key byte.
+     *
+     * @param keyCode The key code, as defined in {@link KeyEvent}.
+     * @return The key's bit, or 0 if the key is not recorded.
+     */
+    public static int keyBit(int keyCode) {
+        for (int i = 0; i < RECORDED_KEYS.length; i++) {
+            if (RECORDED_KEYS[i] == keyCode) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+}
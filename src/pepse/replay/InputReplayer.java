@@ -0,0 +1,172 @@
+package pepse.replay;
+
+import danogl.gui.UserInputListener;
+import pepse.interfaces.TuningMXBean;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Plays back a recording made by an {@link InputRecorder}.
+ *
+ * <p>The replayer provides the recorded seed and knobs and, frame by frame, the recorded delta time and key
+ * state. The key state is exposed through a {@link UserInputListener} (see
+ * {@link #createInputListener(UserInputListener)}), so the avatar reads it exactly like live input.
+ * After each frame, the world-state hash is compared with the recorded one to detect divergence.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class InputReplayer {
+    private static final String IS_KEY_PRESSED = "isKeyPressed";
+    private static final int HEADER_SIZE = 8 * Integer.BYTES + Long.BYTES;
+    private static final int FRAME_SIZE = Float.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private final ByteBuffer frames;
+    private final int seed;
+    private final int renderDistance;
+    private final int verticalRenderDistance;
+    private final long memoryBudgetBytes;
+    private final int terrainDepth;
+    private final int leafThreshold;
+    private final int fruitThreshold;
+    private final int frameCount;
+    private int currentFrame = -1;
+    private int currentKeys;
+    private int currentHash;
+    private int firstDivergentFrame = -1;
+
+    /**
+     * Loads a recording from the given file.
+     *
+     * @param path Path of the recording file.
+     * @throws IOException if the file cannot be read or is not a valid recording.
+     */
+    public InputReplayer(String path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != InputRecording.MAGIC) {
+            throw new IOException("Not a Pepse input recording: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != InputRecording.VERSION) {
+            throw new IOException("Unsupported recording version " + version + ": " + path);
+        }
+        this.seed = buffer.getInt();
+        this.renderDistance = buffer.getInt();
+        this.verticalRenderDistance = buffer.getInt();
+        this.memoryBudgetBytes = buffer.getLong();
+        this.terrainDepth = buffer.getInt();
+        this.leafThreshold = buffer.getInt();
+        this.fruitThreshold = buffer.getInt();
+        this.frameCount = buffer.remaining() / FRAME_SIZE;
+        this.frames = buffer.slice();
+    }
+
+    /**
+     * Returns the seed the recorded world was generated with.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the knobs that shape the world to their recorded values, so the replay generates and
+     * streams the world as the recorded session did, whatever the configuration file says. Must be
+     * called before the generation parameters are locked.
+     *
+     * @param tuning The knobs of the replaying game.
+     */
+    public void applyRecordedTuning(TuningMXBean tuning) {
+        tuning.setRenderDistance(renderDistance);
+        tuning.setVerticalRenderDistance(verticalRenderDistance);
+        tuning.setMemoryBudgetBytes(memoryBudgetBytes);
+        tuning.setTerrainDepth(terrainDepth);
+        tuning.setLeafThreshold(leafThreshold);
+        tuning.setFruitThreshold(fruitThreshold);
+    }
+
+    /**
+     * Checks whether there are frames left to play back.
+     */
+    public boolean hasNextFrame() {
+        return currentFrame + 1 < frameCount;
+    }
+
+    /**
+     * Advances to the next recorded frame.
+     *
+     * @return The recorded delta time of the frame.
+     */
+    public float nextFrame() {
+        currentFrame++;
+        int offset = currentFrame * FRAME_SIZE;
+        float deltaTime = frames.getFloat(offset);
+        currentKeys = frames.get(offset + Float.BYTES);
+        currentHash = frames.getInt(offset + Float.BYTES + Byte.BYTES);
+        return deltaTime;
+    }
+
+    /**
+     * Compares the world-state hash after the current frame with the recorded one.
+     *
+     * @param worldStateHash Hash of the world state after the current frame.
+     * @return {@code true} if the replay still matches the recording, otherwise {@code false}.
+     */
+    public boolean verifyFrame(int worldStateHash) {
+        if (worldStateHash != currentHash && firstDivergentFrame < 0) {
+            firstDivergentFrame = currentFrame;
+        }
+        return firstDivergentFrame < 0;
+    }
+
+    /**
+     * Returns the first frame whose world state differed from the recording, or -1 if none did.
+     */
+    public int getFirstDivergentFrame() {
+        return firstDivergentFrame;
+    }
+
+    /**
+     * Returns the number of frames in the recording.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Checks whether the given key is pressed in the current recorded frame.
+     *
+     * @param keyCode The key code, as defined in {@link java.awt.event.KeyEvent}.
+     * @return {@code true} if the key was recorded as pressed, otherwise {@code false}.
+     */
+    public boolean isKeyPressed(int keyCode) {
+        return (currentKeys & InputRecording.keyBit(keyCode)) != 0;
+    }
+
+    /**
+     * Creates an input listener that answers key queries from the recording, and forwards every
+     * other query (mouse, etc.) to the live listener.
+     *
+     * @param liveInputListener The real input listener of the game.
+     * @return An input listener that replays the recorded keys.
+     */
+    public UserInputListener createInputListener(UserInputListener liveInputListener) {
+        return (UserInputListener) Proxy.newProxyInstance(
+                UserInputListener.class.getClassLoader(),
+                new Class<?>[]{UserInputListener.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(IS_KEY_PRESSED)) {
+                        return isKeyPressed((Integer) args[0]);
+                    }
+                    try {
+                        return method.invoke(liveInputListener, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
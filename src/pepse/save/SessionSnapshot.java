@@ -0,0 +1,155 @@
+package pepse.save;
+
+import danogl.util.Vector2;
+import pepse.TerrainJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable capture of everything needed to resume a session: the world seed, the avatar's
+ * position and energy, the eaten fruits and the terrain edits.
+ *
+ * <p>Capturing is cheap enough to run on the game thread every few seconds: the eaten fruits and
+ * the terrain journal are both copy-on-write, so the snapshot only holds references to data the
+ * game never modifies again. The expensive part, {@link #encode()}, runs on a background thread.</p>
+ *
+ * <p>The binary format starts with {@link #MAGIC} and {@link #VERSION}, followed by the seed, the
+ * avatar's state, the eaten fruits as pairs of a packed position and a remaining delay, and the
+ * compacted terrain journal.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class SessionSnapshot {
+    /** Identifies a file as a Pepse session ("PEPS"). */
+    public static final int MAGIC = 0x50455053;
+
+    /** Version of the session format. */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + 3 * Float.BYTES + Integer.BYTES;
+    private static final int FRUIT_SIZE = Long.BYTES + Float.BYTES;
+
+    private final int seed;
+    private final Vector2 avatarPosition;
+    private final float avatarEnergy;
+    private final Map<Long, Float> fruitRegrowthTimes;
+    private final float fruitTime;
+    private final TerrainJournal.Capture journal;
+
+    /**
+     * Creates a snapshot of a session.
+     *
+     * @param seed               Seed of the world.
+     * @param avatarPosition     Top-left corner of the avatar.
+     * @param avatarEnergy       Energy of the avatar.
+     * @param fruitRegrowthTimes Regrowth times of the eaten fruits, by packed position; never modified.
+     * @param fruitTime          Simulation time the regrowth times are measured against.
+     * @param journal            Captured terrain edits.
+     */
+    public SessionSnapshot(int seed, Vector2 avatarPosition, float avatarEnergy,
+                           Map<Long, Float> fruitRegrowthTimes, float fruitTime,
+                           TerrainJournal.Capture journal) {
+        this.seed = seed;
+        this.avatarPosition = avatarPosition;
+        this.avatarEnergy = avatarEnergy;
+        this.fruitRegrowthTimes = fruitRegrowthTimes;
+        this.fruitTime = fruitTime;
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the seed of the world.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the top-left corner of the avatar.
+     */
+    public Vector2 getAvatarPosition() {
+        return avatarPosition;
+    }
+
+    /**
+     * Returns the energy of the avatar.
+     */
+    public float getAvatarEnergy() {
+        return avatarEnergy;
+    }
+
+    /**
+     * Returns the remaining regrowth delay of every fruit that has not grown back yet, by packed position.
+     */
+    public Map<Long, Float> getRemainingFruitDelays() {
+        Map<Long, Float> remainingDelays = new HashMap<>();
+        for (Map.Entry<Long, Float> entry : fruitRegrowthTimes.entrySet()) {
+            if (entry.getValue() > fruitTime) {
+                remainingDelays.put(entry.getKey(), entry.getValue() - fruitTime);
+            }
+        }
+        return remainingDelays;
+    }
+
+    /**
+     * Returns the captured terrain edits.
+     */
+    public TerrainJournal.Capture getJournal() {
+        return journal;
+    }
+
+    /**
+     * Encodes the snapshot into its binary format.
+     *
+     * @return A buffer holding the encoded snapshot, ready to be read.
+     */
+    public ByteBuffer encode() {
+        Map<Long, Float> remainingDelays = getRemainingFruitDelays();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + remainingDelays.size() * FRUIT_SIZE
+                + journal.maxEncodedSize());
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(seed);
+        buffer.putFloat(avatarPosition.x());
+        buffer.putFloat(avatarPosition.y());
+        buffer.putFloat(avatarEnergy);
+        buffer.putInt(remainingDelays.size());
+        for (Map.Entry<Long, Float> entry : remainingDelays.entrySet()) {
+            buffer.putLong(entry.getKey());
+            buffer.putFloat(entry.getValue());
+        }
+        journal.writeTo(buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a snapshot written by {@link #encode()}.
+     *
+     * @param buffer The encoded snapshot.
+     * @return The decoded snapshot.
+     * @throws IOException if the buffer does not hold a valid session.
+     */
+    public static SessionSnapshot decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a Pepse session");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported session version " + version);
+        }
+        int seed = buffer.getInt();
+        Vector2 avatarPosition = new Vector2(buffer.getFloat(), buffer.getFloat());
+        float avatarEnergy = buffer.getFloat();
+        int fruitCount = buffer.getInt();
+        Map<Long, Float> remainingDelays = new HashMap<>();
+        for (int i = 0; i < fruitCount; i++) {
+            remainingDelays.put(buffer.getLong(), buffer.getFloat());
+        }
+        return new SessionSnapshot(seed, avatarPosition, avatarEnergy, remainingDelays, 0,
+                TerrainJournal.Capture.readFrom(buffer));
+    }
+}
@@ -0,0 +1,113 @@
+package pepse.save;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads and writes {@link SessionSnapshot sessions} through NIO file channels.
+ *
+ * <p>{@link #saveInBackground(SessionSnapshot)} encodes and writes a snapshot on a dedicated
+ * thread, so the game thread only pays for capturing it. Every save goes to a temporary file that
+ * then atomically replaces the session file, so a crash mid-save never corrupts the last session.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class SessionStore {
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path path;
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates a store for the session file at the given path.
+     *
+     * @param path Path of the session file.
+     */
+    public SessionStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Checks whether a session has been saved at the store's path.
+     */
+    public boolean hasSession() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Reads the saved session.
+     *
+     * @return The saved snapshot.
+     * @throws IOException if the file cannot be read or is not a valid session.
+     */
+    public SessionSnapshot load() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            return SessionSnapshot.decode(buffer.flip());
+        }
+    }
+
+    /**
+     * Checks whether a background save is still being written.
+     */
+    public boolean isSaving() {
+        return !pendingSave.isDone();
+    }
+
+    /**
+     * Encodes and writes a snapshot on the store's background thread.
+     *
+     * @param snapshot The snapshot to save.
+     */
+    public void saveInBackground(SessionSnapshot snapshot) {
+        pendingSave = CompletableFuture.runAsync(() -> {
+            try {
+                write(snapshot);
+            } catch (IOException e) {
+                System.err.println("Failed to save session: " + e.getMessage());
+            }
+        }, saveExecutor);
+    }
+
+    /**
+     * Encodes and writes a snapshot on the calling thread, such as a shutdown hook, after any
+     * background save is done.
+     *
+     * @param snapshot The snapshot to save.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(SessionSnapshot snapshot) throws IOException {
+        pendingSave.join();
+        write(snapshot);
+    }
+
+    private void write(SessionSnapshot snapshot) throws IOException {
+        ByteBuffer buffer = snapshot.encode();
+        Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
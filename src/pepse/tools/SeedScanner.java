@@ -0,0 +1,182 @@
+package pepse.tools;
+
+import danogl.util.Vector2;
+import pepse.constants.Constants;
+import pepse.world.Block;
+import pepse.world.Terrain;
+import pepse.world.trees.Flora;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A command-line tool that searches a range of seeds for good demo worlds.
+ *
+ * <p>For every seed, the scanner samples the ground height of each column around the avatar's
+ * starting position and the tree placement rule, without creating any game objects, and measures:</p>
+ * <ul>
+ *     <li>the spawn flatness: the height difference across the columns next to the avatar's start,</li>
+ *     <li>the tree density: the share of columns with a tree,</li>
+ *     <li>the height variance of the whole scanned width.</li>
+ * </ul>
+ *
+ * <p>Seeds are scanned in parallel on every core and printed best first, by the chosen criterion.</p>
+ *
+ * <p>Usage: {@code java pepse.tools.SeedScanner [--seeds n] [--start seed] [--top n]
+ * [--rank flat|trees|variance] [--width columns] [--window-height pixels]}</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class SeedScanner {
+    private static final int SPAWN_RADIUS = 5;
+    private static final int DEFAULT_SEEDS = 10_000;
+    private static final int DEFAULT_TOP = 20;
+    private static final int DEFAULT_WIDTH = 400;
+    private static final float DEFAULT_WINDOW_HEIGHT = 720;
+
+    private final Vector2 windowDimensions;
+    private final int width;
+
+    /**
+     * The measurements of a single seed.
+     */
+    private static final class Result {
+        private final int seed;
+        private final float spawnHeightRange;
+        private final float treeDensity;
+        private final float heightVariance;
+
+        Result(int seed, float spawnHeightRange, float treeDensity, float heightVariance) {
+            this.seed = seed;
+            this.spawnHeightRange = spawnHeightRange;
+            this.treeDensity = treeDensity;
+            this.heightVariance = heightVariance;
+        }
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param windowHeight The height of the game window, which sets the average ground height.
+     * @param width        The number of columns scanned, centered on the avatar's start.
+     */
+    public SeedScanner(float windowHeight, int width) {
+        this.windowDimensions = new Vector2(0, windowHeight);
+        this.width = width;
+    }
+
+    /**
+     * Measures a single seed.
+     */
+    private Result scan(int seed) {
+        Terrain terrain = new Terrain(windowDimensions, seed);
+        Flora flora = new Flora(terrain::findNearestValidLocation, terrain::groundHeightAt,
+                terrain::treeProbabilityAt, seed);
+        int startColumn = terrain.findNearestValidLocation(Constants.AVATAR_START_X_POSITION) / Block.SIZE;
+
+        float spawnMin = Float.MAX_VALUE;
+        float spawnMax = -Float.MAX_VALUE;
+        int trees = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int column = startColumn - width / 2; column < startColumn + width / 2; column++) {
+            int x = column * Block.SIZE;
+            float height = terrain.groundHeightAt(x);
+            sum += height;
+            sumOfSquares += (double) height * height;
+            if (Math.abs(column - startColumn) <= SPAWN_RADIUS) {
+                spawnMin = Math.min(spawnMin, height);
+                spawnMax = Math.max(spawnMax, height);
+            }
+            if (flora.hasTreeAt(x)) {
+                trees++;
+            }
+        }
+        int columns = width / 2 * 2;
+        double mean = sum / columns;
+        return new Result(seed, spawnMax - spawnMin, (float) trees / columns,
+                (float) (sumOfSquares / columns - mean * mean));
+    }
+
+    /**
+     * Scans a range of seeds in parallel.
+     *
+     * @param start The first seed.
+     * @param count The number of seeds.
+     * @return The measurements of every seed, in seed order.
+     */
+    private Result[] scanAll(int start, int count) {
+        return IntStream.range(0, count).parallel()
+                .mapToObj(i -> scan(start + i))
+                .toArray(Result[]::new);
+    }
+
+    private static Comparator<Result> rankingFor(String rank) {
+        switch (rank) {
+            case "flat":
+                return Comparator.comparingDouble((Result result) -> result.spawnHeightRange)
+                        .thenComparing(result -> -result.treeDensity);
+            case "trees":
+                return Comparator.comparingDouble((Result result) -> -result.treeDensity);
+            case "variance":
+                return Comparator.comparingDouble((Result result) -> -result.heightVariance);
+            default:
+                throw new IllegalArgumentException("Unknown ranking " + rank);
+        }
+    }
+
+    /**
+     * Runs the scanner.
+     *
+     * @param args The options described in the class documentation.
+     */
+    public static void main(String[] args) {
+        int count = DEFAULT_SEEDS;
+        int start = 0;
+        int top = DEFAULT_TOP;
+        String rank = "flat";
+        int width = DEFAULT_WIDTH;
+        float windowHeight = DEFAULT_WINDOW_HEIGHT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seeds":
+                    count = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--start":
+                    start = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--top":
+                    top = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rank":
+                    rank = args[i + 1];
+                    break;
+                case "--width":
+                    width = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--window-height":
+                    windowHeight = Float.parseFloat(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        SeedScanner scanner = new SeedScanner(windowHeight, width);
+        long startTime = System.nanoTime();
+        Result[] results = scanner.scanAll(start, count);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        Arrays.sort(results, rankingFor(rank));
+
+        System.out.printf("Scanned %d seeds in %.2f s (%.0f seeds/s) on %d cores, ranked by %s%n",
+                count, seconds, count / seconds, Runtime.getRuntime().availableProcessors(), rank);
+        System.out.printf("%12s %14s %14s %16s%n", "seed", "spawn range", "tree density", "height variance");
+        for (int i = 0; i < Math.min(top, results.length); i++) {
+            Result result = results[i];
+            System.out.printf("%12d %14.0f %14.3f %16.0f%n", result.seed, result.spawnHeightRange,
+                    result.treeDensity, result.heightVariance);
+        }
+    }
+}
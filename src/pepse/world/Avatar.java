@@ -6,8 +6,10 @@ import danogl.gui.ImageReader;
 import danogl.gui.UserInputListener;
 import danogl.gui.rendering.AnimationRenderable;
 import danogl.util.Vector2;
+import pepse.AllocationGate;
 import pepse.constants.Constants;
 import pepse.interfaces.JumpObserver;
+import pepse.interfaces.TerrainEditor;
 
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
@@ -19,6 +21,9 @@ import java.util.List;
  *
  * <p>Includes a set of {@link JumpObserver} objects to notify when a jump occurs.</p>
  *
+ * <p>With a {@link TerrainEditor} set, the avatar digs out the block in front of it (or, if there is
+ * none, the block beneath it) on {@code Z}, and places a block in front of it on {@code X}.</p>
+ *
  * @author Joshua Kolodny, Itamar Lev Ari
  */
 public class Avatar extends GameObject {
@@ -30,8 +35,10 @@ public class Avatar extends GameObject {
     private static final float VELOCITY_X = 400;
     private static final float VELOCITY_Y = -650;
     private static final String AVATAR_IMAGE = "src/assets/idle_0.png";
+    private static final int DIG_KEY = KeyEvent.VK_Z;
+    private static final int PLACE_KEY = KeyEvent.VK_X;
 
-    // Energy
+    // Energy (per-update amounts are applied once per fixed simulation step)
     private static final float MAX_ENERGY = 100;
     private static final float MOVE_REDUCTION = -0.3f;
     private static final float JUMP_REDUCTION = -10;
@@ -63,10 +70,16 @@ public class Avatar extends GameObject {
     private static final float FRUIT_ENERGY = 10;
 
     private final UserInputListener inputListener;
-    private final ImageReader imageReader;
+    private final AnimationRenderable runningAnimation;
+    private final AnimationRenderable jumpingAnimation;
+    private final AnimationRenderable stillAnimation;
     private float energy;
     private AnimationTypes currentAnimation;
     private final List<JumpObserver> jumpObservers = new ArrayList<>();
+    private TerrainEditor terrainEditor;
+    private boolean facingLeft;
+    private boolean digKeyWasPressed;
+    private boolean placeKeyWasPressed;
 
     /**
      * Constructs an avatar with position, user input listener, and image reading capabilities.
@@ -80,11 +93,12 @@ public class Avatar extends GameObject {
         physics().preventIntersectionsFromDirection(Vector2.ZERO);
         transform().setAccelerationY(Constants.GRAVITY);
         this.inputListener = inputListener;
-        this.imageReader = imageReader;
+        runningAnimation = new AnimationRenderable(RUNNING_PATHS, imageReader, true, TIME_BETWEEN_ANIMATIONS);
+        jumpingAnimation = new AnimationRenderable(JUMPING_PATHS, imageReader, true, TIME_BETWEEN_ANIMATIONS);
+        stillAnimation = new AnimationRenderable(STILL_PATHS, imageReader, true, TIME_BETWEEN_ANIMATIONS);
         energy = MAX_ENERGY;
         currentAnimation = AnimationTypes.STILL;
-        renderer().setRenderable(new AnimationRenderable(STILL_PATHS, imageReader,
-                true, TIME_BETWEEN_ANIMATIONS));
+        renderer().setRenderable(stillAnimation);
         this.setTag(Constants.AVATAR_TAG);
     }
 
@@ -103,14 +117,21 @@ public class Avatar extends GameObject {
 
     /**
      * Handles input-based movement, jumping, resting, and animating the avatar each frame.
+     *
+     * <p>The velocity is read once: every read copies it, and an idle or walking avatar must not
+     * allocate. The horizontal velocity is the one set from the input this frame.</p>
      */
     @Override
     public void update(float deltaTime) {
+        AllocationGate.Site previousSite = AllocationGate.enter(AllocationGate.Site.AVATAR);
         super.update(deltaTime);
-        handleHorizontalMovement();
-        handleJump();
-        handleRestingEnergy();
-        updateAnimation();
+        float velocityY = getVelocity().y();
+        float velocityX = handleHorizontalMovement();
+        velocityY = handleJump(velocityY);
+        handleTerrainEditing();
+        handleRestingEnergy(velocityX, velocityY);
+        updateAnimation(velocityX, velocityY);
+        AllocationGate.enter(previousSite);
     }
 
     /**
@@ -124,8 +145,10 @@ public class Avatar extends GameObject {
 
     /**
      * Moves the avatar horizontally based on input, reducing energy when moving.
+     *
+     * @return The new horizontal velocity.
      */
-    private void handleHorizontalMovement() {
+    private float handleHorizontalMovement() {
         float xVel = 0;
 
         boolean movingLeft = inputListener.isKeyPressed(KeyEvent.VK_LEFT) && energy >= MIN_ENERGY_TO_MOVE;
@@ -133,10 +156,12 @@ public class Avatar extends GameObject {
 
         if (movingLeft) {
             xVel -= VELOCITY_X;
+            facingLeft = true;
             renderer().setIsFlippedHorizontally(true);
         }
         if (movingRight) {
             xVel += VELOCITY_X;
+            facingLeft = false;
             renderer().setIsFlippedHorizontally(false);
         }
 
@@ -144,25 +169,56 @@ public class Avatar extends GameObject {
         if (xVel != 0) {
             updateEnergy(MOVE_REDUCTION);
         }
+        return xVel;
     }
 
     /**
      * Allows the avatar to jump if energy and grounded conditions are met.
+     *
+     * @param velocityY The current vertical velocity.
+     * @return The new vertical velocity.
      */
-    private void handleJump() {
-        if (inputListener.isKeyPressed(KeyEvent.VK_SPACE) && getVelocity().y() == 0
+    private float handleJump(float velocityY) {
+        if (inputListener.isKeyPressed(KeyEvent.VK_SPACE) && velocityY == 0
                 && energy >= -JUMP_REDUCTION) {
             notifyJumpObservers();
             updateEnergy(JUMP_REDUCTION);
             transform().setVelocityY(VELOCITY_Y);
+            return VELOCITY_Y;
+        }
+        return velocityY;
+    }
+
+    /**
+     * Digs or places a block once per key press, in front of the avatar at the height of its feet.
+     */
+    private void handleTerrainEditing() {
+        boolean digKeyPressed = inputListener.isKeyPressed(DIG_KEY);
+        boolean placeKeyPressed = inputListener.isKeyPressed(PLACE_KEY);
+        boolean digging = digKeyPressed && !digKeyWasPressed;
+        boolean placing = placeKeyPressed && !placeKeyWasPressed;
+        if (terrainEditor != null && (digging || placing)) {
+            Vector2 topLeftCorner = getTopLeftCorner();
+            float feetY = topLeftCorner.y() + getDimensions().y() - Block.SIZE / 2f;
+            float frontX = facingLeft ? topLeftCorner.x() - Block.SIZE / 2f
+                    : topLeftCorner.x() + getDimensions().x() + Block.SIZE / 2f;
+            Vector2 front = new Vector2(frontX, feetY);
+            if (digging && !terrainEditor.dig(front)) {
+                terrainEditor.dig(new Vector2(getCenter().x(), feetY + Block.SIZE));
+            }
+            if (placing) {
+                terrainEditor.place(front);
+            }
         }
+        digKeyWasPressed = digKeyPressed;
+        placeKeyWasPressed = placeKeyPressed;
     }
 
     /**
      * Replenishes a small amount of energy when the avatar is idle.
      */
-    private void handleRestingEnergy() {
-        if (getVelocity().equals(Vector2.ZERO)) {
+    private void handleRestingEnergy(float velocityX, float velocityY) {
+        if (velocityX == 0 && velocityY == 0) {
             updateEnergy(RESTING_ENERGY);
         }
     }
@@ -170,37 +226,35 @@ public class Avatar extends GameObject {
     /**
      * Chooses and sets an animation based on the avatar's current motion.
      */
-    private void updateAnimation() {
-        Vector2 velocity = getVelocity();
-
-        if (isRunning(velocity)) {
-            setAnimation(AnimationTypes.RUNNING, RUNNING_PATHS);
-        } else if (isJumping(velocity)) {
-            setAnimation(AnimationTypes.JUMPING, JUMPING_PATHS);
-        } else if (isStill(velocity)) {
-            setAnimation(AnimationTypes.STILL, STILL_PATHS);
+    private void updateAnimation(float velocityX, float velocityY) {
+        if (isRunning(velocityX)) {
+            setAnimation(AnimationTypes.RUNNING, runningAnimation);
+        } else if (isJumping(velocityX, velocityY)) {
+            setAnimation(AnimationTypes.JUMPING, jumpingAnimation);
+        } else if (isStill(velocityX, velocityY)) {
+            setAnimation(AnimationTypes.STILL, stillAnimation);
         }
     }
 
-    private boolean isRunning(Vector2 velocity) {
-        return (velocity.x() != 0) && (currentAnimation != AnimationTypes.RUNNING);
+    private boolean isRunning(float velocityX) {
+        return (velocityX != 0) && (currentAnimation != AnimationTypes.RUNNING);
     }
 
-    private boolean isJumping(Vector2 velocity) {
-        return (velocity.y() != 0) && (velocity.x() == 0) && (currentAnimation != AnimationTypes.JUMPING);
+    private boolean isJumping(float velocityX, float velocityY) {
+        return (velocityY != 0) && (velocityX == 0) && (currentAnimation != AnimationTypes.JUMPING);
     }
 
-    private boolean isStill(Vector2 velocity) {
-        return velocity.equals(Vector2.ZERO) && currentAnimation != AnimationTypes.STILL;
+    private boolean isStill(float velocityX, float velocityY) {
+        return velocityX == 0 && velocityY == 0 && currentAnimation != AnimationTypes.STILL;
     }
 
     /**
-     * Updates the current animation renderable based on the new animation state.
+     * Switches to the renderable of the new animation state. The renderables are created once,
+     * so switching costs no allocation.
      */
-    private void setAnimation(AnimationTypes newAnimation, String[] paths) {
+    private void setAnimation(AnimationTypes newAnimation, AnimationRenderable animation) {
         currentAnimation = newAnimation;
-        renderer().setRenderable(new AnimationRenderable(paths, imageReader, true,
-                TIME_BETWEEN_ANIMATIONS));
+        renderer().setRenderable(animation);
     }
 
     /**
@@ -212,6 +266,15 @@ public class Avatar extends GameObject {
         energy = Math.max(0, Math.min(MAX_ENERGY, energy + delta));
     }
 
+    /**
+     * Sets the avatar's energy, such as when resuming a saved session.
+     *
+     * @param energy The new energy, clamped to the allowable bounds.
+     */
+    public void setEnergy(float energy) {
+        this.energy = Math.max(0, Math.min(MAX_ENERGY, energy));
+    }
+
     /**
      * Returns the current energy level of the avatar.
      */
@@ -219,6 +282,15 @@ public class Avatar extends GameObject {
         return energy;
     }
 
+    /**
+     * Sets the editor used to dig and place blocks.
+     *
+     * @param terrainEditor The terrain editor, or {@code null} to disable editing.
+     */
+    public void setTerrainEditor(TerrainEditor terrainEditor) {
+        this.terrainEditor = terrainEditor;
+    }
+
     /**
      * Subscribes a {@link JumpObserver} to receive jump notifications.
      *
@@ -0,0 +1,58 @@
+package pepse.world;
+
+/**
+ * The biomes of the world, each shaping the terrain and the trees growing on it.
+ *
+ * <p>A biome scales the amplitude of the ground's height noise and sets the probability of a tree
+ * growing in a column. Neighbouring biomes blend into each other, so these values change gradually
+ * along the world.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public enum Biome {
+    /** Flat, open land with scattered trees. */
+    PLAINS(0.4f, 0.06f),
+    /** Gently rolling land covered with trees. */
+    FOREST(0.9f, 0.3f),
+    /** Steep, rugged land with few trees. */
+    HILLS(1.8f, 0.08f);
+
+    private static final float FOREST_THRESHOLD = 0.43f;
+    private static final float HILLS_THRESHOLD = 0.57f;
+
+    private final float amplitude;
+    private final float treeProbability;
+
+    Biome(float amplitude, float treeProbability) {
+        this.amplitude = amplitude;
+        this.treeProbability = treeProbability;
+    }
+
+    /**
+     * Returns the factor the ground's height noise is scaled by.
+     */
+    public float getAmplitude() {
+        return amplitude;
+    }
+
+    /**
+     * Returns the probability of a tree growing in a column.
+     */
+    public float getTreeProbability() {
+        return treeProbability;
+    }
+
+    /**
+     * Returns the biome of a biome noise value.
+     *
+     * @param noise A value between 0 and 1.
+     * @return The biome.
+     */
+    public static Biome of(float noise) {
+        if (noise < FOREST_THRESHOLD) {
+            return PLAINS;
+        }
+        return noise < HILLS_THRESHOLD ? FOREST : HILLS;
+    }
+}
@@ -2,16 +2,25 @@ package pepse.world;
 
 import danogl.GameObject;
 import danogl.components.GameObjectPhysics;
+import danogl.gui.rendering.Camera;
+import danogl.gui.rendering.RectangleRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.constants.Constants;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+
 /**
  * A solid block with fixed size that forms part of the terrain or structures.
  * <p>Prevents intersection in any direction and does not collide with other blocks.</p>
  *
  * <p>Used widely for ground, platforms, and other terrain features.</p>
  *
+ * <p>A detached block neither collides nor is drawn, while it waits to be removed from the game.
+ * Detaching costs a single field write, so a whole chunk can stop colliding at once, and be
+ * removed over several frames.</p>
+ *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
@@ -21,6 +30,9 @@ public class Block extends GameObject {
      */
     public static final int SIZE = 30;
 
+    private final Color color;
+    private boolean detached;
+
     /**
      * Constructs a block at the specified location with a given renderable.
      *
@@ -28,10 +40,42 @@ public class Block extends GameObject {
      * @param renderable    A {@link Renderable} (e.g., color or texture).
      */
     public Block(Vector2 topLeftCorner, Renderable renderable){
+        this(topLeftCorner, renderable, null);
+    }
+
+    /**
+     * Constructs a block of a single solid color. Such blocks can be baked into a
+     * {@link TerrainImage} together with their neighbours.
+     *
+     * @param topLeftCorner Position of the block's top-left corner.
+     * @param color         The color of the block.
+     */
+    public Block(Vector2 topLeftCorner, Color color){
+        this(topLeftCorner, new RectangleRenderable(color), color);
+    }
+
+    private Block(Vector2 topLeftCorner, Renderable renderable, Color color){
         super(topLeftCorner, Vector2.ONES.mult(SIZE), renderable);
         physics().preventIntersectionsFromDirection(Vector2.ZERO);
         physics().setMass(GameObjectPhysics.IMMOVABLE_MASS);
         this.setTag(Constants.BLOCK_TAG);
+        this.color = color;
+    }
+
+    /**
+     * Returns the block's solid color, or {@code null} if it was created with a custom renderable.
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Sets whether the block is detached, so it neither collides nor is drawn.
+     *
+     * @param detached {@code true} to detach the block, {@code false} to attach it again.
+     */
+    public void setDetached(boolean detached) {
+        this.detached = detached;
     }
 
     /**
@@ -39,9 +83,19 @@ public class Block extends GameObject {
      */
     @Override
     public boolean shouldCollideWith(GameObject other){
-        if (other.getTag().equals(Constants.BLOCK_TAG)) {
+        if (detached || other.getTag().equals(Constants.BLOCK_TAG)) {
             return false;
         }
         return super.shouldCollideWith(other);
     }
+
+    /**
+     * Draws the block, unless it is detached.
+     */
+    @Override
+    public void render(Graphics2D g, Camera camera) {
+        if (!detached) {
+            super.render(g, camera);
+        }
+    }
 }
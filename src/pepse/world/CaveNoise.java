@@ -0,0 +1,70 @@
+package pepse.world;
+
+/**
+ * Smooth two-dimensional value noise, used to carve caves into the terrain.
+ *
+ * <p>Random values are assigned to the corners of a square lattice by hashing their coordinates
+ * with the seed, and interpolated smoothly in between. Two octaves are combined for more natural
+ * shapes. The noise is a pure function of its inputs, so it is safe to evaluate from any thread.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class CaveNoise {
+    private static final float SECOND_OCTAVE_WEIGHT = 0.35f;
+
+    private final int seed;
+    private final float scale;
+
+    /**
+     * Creates a noise function.
+     *
+     * @param seed  Seed for deterministic values.
+     * @param scale Distance between lattice points, in pixels.
+     */
+    public CaveNoise(int seed, float scale) {
+        this.seed = seed;
+        this.scale = scale;
+    }
+
+    /**
+     * Evaluates the noise at the given point.
+     *
+     * @param x The horizontal coordinate.
+     * @param y The vertical coordinate.
+     * @return A value between 0 and 1.
+     */
+    public float noise(float x, float y) {
+        float first = octave(x / scale, y / scale, seed);
+        float second = octave(2 * x / scale, 2 * y / scale, seed + 1);
+        return (first + SECOND_OCTAVE_WEIGHT * second) / (1 + SECOND_OCTAVE_WEIGHT);
+    }
+
+    private static float octave(float x, float y, int seed) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float tx = smooth(x - x0);
+        float ty = smooth(y - y0);
+        float top = lerp(latticeValue(x0, y0, seed), latticeValue(x0 + 1, y0, seed), tx);
+        float bottom = lerp(latticeValue(x0, y0 + 1, seed), latticeValue(x0 + 1, y0 + 1, seed), tx);
+        return lerp(top, bottom, ty);
+    }
+
+    private static float latticeValue(int x, int y, int seed) {
+        int hash = seed;
+        hash = (hash ^ x) * 0x27D4EB2D;
+        hash = (hash ^ y) * 0x165667B1;
+        hash ^= hash >>> 15;
+        hash *= 0x5BD1E995;
+        hash ^= hash >>> 13;
+        return (hash & 0xFFFFFF) / (float) 0x1000000;
+    }
+
+    private static float smooth(float t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+}
@@ -1,106 +1,192 @@
 package pepse.world;
 
 import danogl.components.CoordinateSpace;
-import danogl.components.Transition;
-import danogl.gui.rendering.RectangleRenderable;
-import danogl.gui.rendering.Renderable;
+import danogl.gui.rendering.ImageRenderable;
 import danogl.util.Vector2;
 import pepse.interfaces.JumpObserver;
 import pepse.interfaces.RainDropper;
 import pepse.util.ColorSupplier;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
 
 /**
- * Represents a moving cloud structure composed of multiple {@link Block} objects.
- * <p>Once a jump event is detected, this cloud triggers rainfall via {@link RainDropper}.</p>
+ * Represents a single procedurally shaped cloud drifting across the sky.
+ * <p>The whole cloud is one {@link danogl.GameObject}: its cells are baked into a single image and the
+ * cloud is moved by its own velocity, rather than by a transition per cell.</p>
  *
- * <p>Uses a looping horizontal transition to move each block.</p>
+ * <p>Once the cloud drifts past the right edge of the window it is recycled: it receives a new
+ * shape, height and speed, and re-enters from the left. Every shape is drawn from a
+ * {@link StatelessRandom} keyed by the cloud's index and how many times it was reshaped, so the same
+ * seed always brings the same sky.</p>
  *
- * <p>See {@link #createBlocks(Vector2)} for block formation and transitions.</p>
+ * <p>Once a jump event is detected while the cloud is on screen, it triggers rainfall via its own
+ * {@link RainDropper}.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
-public class Cloud implements JumpObserver {
+public class Cloud extends IndependentGameObject implements JumpObserver {
     private static final Color BASE_CLOUD_COLOR = new Color(255, 255, 255);
-    private static final Vector2 INIT_LOCATION = new Vector2(-Block.SIZE * 8, 3 * Block.SIZE);
-    private static final int CLOUD_TRANSITION_TIME = 15;
-    private final List<Block> cloudBlocks;
+    private static final int MIN_COLUMNS = 4;
+    private static final int MAX_COLUMNS = 9;
+    private static final int MIN_ROWS = 3;
+    private static final int MAX_ROWS = 5;
+    private static final int MIN_ROW_OFFSET = 1;
+    private static final int MAX_ROW_OFFSET = 6;
+    private static final float MIN_SPEED = 25;
+    private static final float MAX_SPEED = 60;
+    private static final float EDGE_FILL_PROBABILITY = 0.55f;
+    private static final int COLUMNS_DRAW = 0;
+    private static final int ROWS_DRAW = 1;
+    private static final int ROW_OFFSET_DRAW = 2;
+    private static final int SPEED_DRAW = 3;
+    private static final int FIRST_CELL_DRAW = 4;
+
+    private final Vector2 windowDimensions;
+    private final int seed;
+    private final int index;
+    private int generation;
+    private final List<Vector2> cellOffsets = new ArrayList<>();
     private RainDropper rainDropper;
 
     /**
-     * Provides a read-only list of the cloud blocks used to form the cloud.
+     * Creates a new cloud with a random shape at the given horizontal position.
+     *
+     * @param x                Initial x-coordinate of the cloud, in camera coordinates.
+     * @param windowDimensions Dimensions of the window, used to decide when the cloud is recycled.
+     * @param seed             Seed for the cloud's shape, height and speed.
+     * @param index            Index of the cloud in the sky, so every cloud gets its own shapes.
      */
-    public List<Block> getCloudBlocks() {
-        return cloudBlocks;
+    public Cloud(float x, Vector2 windowDimensions, int seed, int index) {
+        super(Vector2.ZERO, Vector2.ZERO, null);
+        this.windowDimensions = windowDimensions;
+        this.seed = seed;
+        this.index = index;
+        setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        reshape(x);
     }
 
     /**
-     * Creates a new cloud and initializes its blocks and movement.
-     *
-     * @param windowDimensions Dimensions used for calculating the transition range.
+     * Provides the offsets of the cloud's cells, relative to its top-left corner.
      */
-    public Cloud(Vector2 windowDimensions) {
-        this.cloudBlocks = new ArrayList<>();
-        createBlocks(windowDimensions);
+    public List<Vector2> getCellOffsets() {
+        return cellOffsets;
     }
 
     /**
-     * Sets a {@link RainDropper} to trigger rainfall when a jump is detected.
+     * Sets a {@link RainDropper} to trigger rainfall from this cloud when a jump is detected.
      */
     public void setRainDropper(RainDropper rainDropper) {
         this.rainDropper = rainDropper;
     }
 
     /**
-     * Builds a 2D pattern of blocks and applies a repeating horizontal shift transition.
+     * Moves the cloud and recycles it once it has fully left the window.
+     */
+    @Override
+    public void updateIndependently(float deltaTime) {
+        super.updateIndependently(deltaTime);
+        if (getTopLeftCorner().x() > windowDimensions.x()) {
+            reshape(0);
+            setTopLeftCorner(new Vector2(-getDimensions().x(), getTopLeftCorner().y()));
+        }
+    }
+
+    /**
+     * Checks whether any part of the cloud is currently inside the window.
      *
-     * @param windowDimensions The size of the window for calculating shift distance.
+     * @return {@code true} if the cloud is visible, otherwise {@code false}.
      */
-    private void createBlocks(Vector2 windowDimensions) {
-        int[][] cloud =
-                {{0, 1, 1, 0, 0, 0},
-                        {1, 1, 1, 0, 1, 0},
-                        {1, 1, 1, 1, 1, 1},
-                        {1, 1, 1, 1, 1, 1},
-                        {0, 1, 1, 1, 0},
-                        {0, 0, 0, 0, 0, 0}};
-        for (int i = 0; i < cloud.length; i++) {
-            for (int j = 0; j < cloud[i].length; j++) {
-                if (cloud[i][j] == 1) {
-                    Vector2 blockLocation = new Vector2(INIT_LOCATION.x() + j * Block.SIZE,
-                            INIT_LOCATION.y() + i * Block.SIZE);
-                    Renderable renderable = new RectangleRenderable(ColorSupplier
-                            .approximateMonoColor(BASE_CLOUD_COLOR));
-                    Block cloudBlock = new Block(blockLocation, renderable);
-                    Consumer<Float> lambdaCloud = (Float shiftRight) ->
-                            cloudBlock.setCenter(blockLocation.add(Vector2.RIGHT.mult(shiftRight)));
-                    new Transition<>(
-                            cloudBlock,
-                            lambdaCloud,
-                            0f,
-                            windowDimensions.x() - INIT_LOCATION.x(),
-                            Transition.LINEAR_INTERPOLATOR_FLOAT,
-                            CLOUD_TRANSITION_TIME,
-                            Transition.TransitionType.TRANSITION_LOOP,
-                            null
-                    );
-                    cloudBlock.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
-                    cloudBlocks.add(cloudBlock);
+    public boolean isVisible() {
+        float x = getTopLeftCorner().x();
+        return x + getDimensions().x() > 0 && x < windowDimensions.x();
+    }
+
+    /**
+     * Generates a new shape, height and speed for the cloud and bakes its cells into one image.
+     *
+     * @param x The x-coordinate to place the reshaped cloud at.
+     */
+    private void reshape(float x) {
+        generation++;
+        boolean[][] shape = createShape();
+        int rows = shape.length;
+        int columns = shape[0].length;
+
+        // One pixel per cell; the renderable scales it up to the cloud's dimensions.
+        BufferedImage image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        cellOffsets.clear();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (shape[i][j]) {
+                    image.setRGB(j, i, ColorSupplier.approximateMonoColor(BASE_CLOUD_COLOR).getRGB());
+                    cellOffsets.add(new Vector2(j * Block.SIZE, i * Block.SIZE));
                 }
             }
         }
+
+        renderer().setRenderable(new ImageRenderable(image));
+        setDimensions(new Vector2(columns * Block.SIZE, rows * Block.SIZE));
+        float y = nextInt(ROW_OFFSET_DRAW, MIN_ROW_OFFSET, MAX_ROW_OFFSET) * Block.SIZE;
+        setTopLeftCorner(new Vector2(x, y));
+        transform().setVelocityX(MIN_SPEED + nextFloat(SPEED_DRAW) * (MAX_SPEED - MIN_SPEED));
     }
 
     /**
-     * Triggered when a jump occurs. Invokes {@code MakeItRain()} on the assigned {@link RainDropper}.
+     * Builds a random blob-like pattern: the middle rows are always filled, while cells on the
+     * top and bottom edges are filled with decreasing probability towards the sides.
+     *
+     * @return A 2D mask where {@code true} marks a cloud cell.
+     */
+    private boolean[][] createShape() {
+        int columns = nextInt(COLUMNS_DRAW, MIN_COLUMNS, MAX_COLUMNS);
+        int rows = nextInt(ROWS_DRAW, MIN_ROWS, MAX_ROWS);
+        boolean[][] shape = new boolean[rows][columns];
+        float centerX = (columns - 1) / 2f;
+        for (int i = 0; i < rows; i++) {
+            boolean isEdgeRow = i == 0 || i == rows - 1;
+            for (int j = 0; j < columns; j++) {
+                if (!isEdgeRow) {
+                    shape[i][j] = true;
+                    continue;
+                }
+                float distanceFromCenter = Math.abs(j - centerX) / (centerX + 1);
+                float randomFill = nextFloat(FIRST_CELL_DRAW + i * columns + j);
+                shape[i][j] = randomFill < EDGE_FILL_PROBABILITY * (1 - distanceFromCenter);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Draws a random int for the current shape; each draw of a shape has its own number.
+     */
+    private int nextInt(int draw, int origin, int bound) {
+        return StatelessRandom.nextInt(seed, shapeKey(), draw, StatelessRandom.CLOUD, origin, bound);
+    }
+
+    /**
+     * Draws a random float in [0, 1) for the current shape.
+     */
+    private float nextFloat(int draw) {
+        return StatelessRandom.nextFloat(seed, shapeKey(), draw, StatelessRandom.CLOUD);
+    }
+
+    private long shapeKey() {
+        return ((long) index << Integer.SIZE) | generation;
+    }
+
+    /**
+     * Triggered when a jump occurs. Invokes {@code MakeItRain()} on the assigned {@link RainDropper}
+     * if the cloud is currently on screen.
      */
     @Override
     public void updateJump() {
-        rainDropper.MakeItRain();
+        if (rainDropper != null && isVisible()) {
+            rainDropper.MakeItRain();
+        }
     }
 }
@@ -5,6 +5,7 @@ import danogl.components.CoordinateSpace;
 import danogl.gui.rendering.Renderable;
 import danogl.gui.rendering.TextRenderable;
 import danogl.util.Vector2;
+import pepse.AllocationGate;
 import pepse.interfaces.EnergyProvider;
 
 /**
@@ -15,14 +16,26 @@ import pepse.interfaces.EnergyProvider;
  *
  * <p>Placed in camera coordinates so it remains fixed in the UI.</p>
  *
- * <p>See {@link #update(float)} for refreshing the displayed value.</p>
+ * <p>See {@link #update(float)} for refreshing the displayed value. The text is only replaced when
+ * the whole number changes, and the texts of the usual energy range are created once, so an
+ * update costs no allocation.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
 public class EnergyDisplay extends GameObject {
+    private static final int CACHED_TEXTS = 101;
+    private static final String[] TEXTS = new String[CACHED_TEXTS];
+
+    static {
+        for (int value = 0; value < CACHED_TEXTS; value++) {
+            TEXTS[value] = Integer.toString(value);
+        }
+    }
+
     private final EnergyProvider energyProvider;
     private final TextRenderable textRenderable;
+    private int displayedEnergy;
 
     /**
      * Creates a new energy display with a given provider for energy levels.
@@ -36,7 +49,8 @@ public class EnergyDisplay extends GameObject {
                          EnergyProvider energyProvider) {
         super(topLeftCorner, dimensions, renderable);
         this.energyProvider = energyProvider;
-        this.textRenderable = new TextRenderable(Integer.toString((int) energyProvider.getCurrentEnergy()));
+        this.displayedEnergy = (int) energyProvider.getCurrentEnergy();
+        this.textRenderable = new TextRenderable(textOf(displayedEnergy));
         this.renderer().setRenderable(textRenderable);
         this.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
     }
@@ -46,7 +60,17 @@ public class EnergyDisplay extends GameObject {
      */
     @Override
     public void update(float deltaTime) {
+        AllocationGate.Site previousSite = AllocationGate.enter(AllocationGate.Site.ENERGY_DISPLAY);
         super.update(deltaTime);
-        textRenderable.setString(Integer.toString((int) energyProvider.getCurrentEnergy()));
+        int energy = (int) energyProvider.getCurrentEnergy();
+        if (energy != displayedEnergy) {
+            displayedEnergy = energy;
+            textRenderable.setString(textOf(energy));
+        }
+        AllocationGate.enter(previousSite);
+    }
+
+    private static String textOf(int value) {
+        return value >= 0 && value < CACHED_TEXTS ? TEXTS[value] : Integer.toString(value);
     }
 }
@@ -0,0 +1,160 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Camera;
+import danogl.util.Vector2;
+import pepse.ChunkManager;
+import pepse.interfaces.GroundHeightProvider;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws distant hills as parallax silhouettes behind the world, so the horizon goes on past the
+ * loaded chunks.
+ *
+ * <p>Each layer samples the ground height far beyond the loaded area, every few blocks, and
+ * draws the samples as a filled silhouette that scrolls slower than the world, by the layer's
+ * parallax factor. The samples of one chunk's width form a strip; strips are sampled lazily off
+ * the game thread when they come near the view, and kept in a small ring per layer, so walking back
+ * and forth never samples them again. The silhouettes are drawn directly, without a game object or
+ * a collider per block, and a strip that is not ready yet is simply skipped for a frame.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class FarBackground extends GameObject {
+    private static final float[] PARALLAX_FACTORS = {0.25f, 0.5f};
+    private static final Color[] LAYER_COLORS = {new Color(150, 190, 210), new Color(112, 152, 172)};
+    /** Each layer shows terrain this far from the loaded area, so it never mirrors the world. */
+    private static final float[] LAYER_OFFSETS = {-131 * ChunkManager.CHUNK_WIDTH,
+            67 * ChunkManager.CHUNK_WIDTH};
+    private static final float STRIP_WIDTH = ChunkManager.CHUNK_WIDTH;
+    private static final int SAMPLE_SPACING = 2 * Block.SIZE;
+    private static final int SAMPLES_PER_STRIP = (int) STRIP_WIDTH / SAMPLE_SPACING + 1;
+    /** Strips are sampled this many strips before they come into view. */
+    private static final int PREFETCH_STRIPS = 2;
+
+    private final GroundHeightProvider groundHeightProvider;
+    private final Camera worldCamera;
+    private final Vector2 windowDimensions;
+    private final Strip[][] strips = new Strip[PARALLAX_FACTORS.length][];
+    private final int[] xPoints = new int[SAMPLES_PER_STRIP + 2];
+    private final int[] yPoints = new int[SAMPLES_PER_STRIP + 2];
+    private final ExecutorService samplingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "far-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates the background. Add it to the background layer, after the sky.
+     *
+     * @param groundHeightProvider Provides the ground height; called off the game thread.
+     * @param camera               The game's camera, which the silhouettes scroll with.
+     * @param windowDimensions     Dimensions of the window.
+     */
+    public FarBackground(GroundHeightProvider groundHeightProvider, Camera camera,
+                         Vector2 windowDimensions) {
+        super(Vector2.ZERO, windowDimensions, null);
+        this.groundHeightProvider = groundHeightProvider;
+        this.worldCamera = camera;
+        this.windowDimensions = windowDimensions;
+        setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        for (int layer = 0; layer < PARALLAX_FACTORS.length; layer++) {
+            int visibleStrips = (int) Math.ceil(windowDimensions.x() / PARALLAX_FACTORS[layer] / STRIP_WIDTH);
+            int capacity = 2 * (visibleStrips + 2 * PREFETCH_STRIPS + 1);
+            strips[layer] = new Strip[capacity];
+        }
+    }
+
+    /**
+     * The background is purely visual, so it never collides.
+     */
+    @Override
+    public boolean shouldCollideWith(GameObject other) {
+        return false;
+    }
+
+    /**
+     * Draws every layer, farthest first.
+     */
+    @Override
+    public void render(Graphics2D g, Camera camera) {
+        Vector2 cameraCenter = worldCamera.getCenter();
+        for (int layer = 0; layer < PARALLAX_FACTORS.length; layer++) {
+            renderLayer(g, layer, cameraCenter.x(), cameraCenter.y());
+        }
+    }
+
+    private void renderLayer(Graphics2D g, int layer, float cameraX, float cameraY) {
+        float factor = PARALLAX_FACTORS[layer];
+        float halfWidth = windowDimensions.x() / 2;
+        int firstStrip = (int) Math.floor((cameraX - halfWidth / factor) / STRIP_WIDTH);
+        int lastStrip = (int) Math.floor((cameraX + halfWidth / factor) / STRIP_WIDTH);
+        g.setColor(LAYER_COLORS[layer]);
+        for (int stripIndex = firstStrip - PREFETCH_STRIPS; stripIndex <= lastStrip + PREFETCH_STRIPS;
+             stripIndex++) {
+            Strip strip = stripAt(layer, stripIndex);
+            if (stripIndex < firstStrip || stripIndex > lastStrip || !strip.heights.isDone()) {
+                continue;
+            }
+            float[] heights = strip.heights.join();
+            for (int i = 0; i < SAMPLES_PER_STRIP; i++) {
+                float x = stripIndex * STRIP_WIDTH + i * SAMPLE_SPACING;
+                xPoints[i] = Math.round((x - cameraX) * factor + halfWidth);
+                yPoints[i] = Math.round((heights[i] - cameraY) * factor + windowDimensions.y() / 2);
+            }
+            xPoints[SAMPLES_PER_STRIP] = xPoints[SAMPLES_PER_STRIP - 1];
+            xPoints[SAMPLES_PER_STRIP + 1] = xPoints[0];
+            yPoints[SAMPLES_PER_STRIP] = (int) windowDimensions.y();
+            yPoints[SAMPLES_PER_STRIP + 1] = (int) windowDimensions.y();
+            g.fillPolygon(xPoints, yPoints, SAMPLES_PER_STRIP + 2);
+        }
+    }
+
+    /**
+     * Returns a layer's strip from the ring, and starts sampling it if the ring holds another one.
+     */
+    private Strip stripAt(int layer, int stripIndex) {
+        int slot = Math.floorMod(stripIndex, strips[layer].length);
+        Strip strip = strips[layer][slot];
+        if (strip == null || strip.index != stripIndex) {
+            float firstX = stripIndex * STRIP_WIDTH + LAYER_OFFSETS[layer];
+            strip = new Strip(stripIndex,
+                    CompletableFuture.supplyAsync(() -> sampleStrip(firstX), samplingExecutor));
+            strips[layer][slot] = strip;
+        }
+        return strip;
+    }
+
+    /**
+     * Samples the ground height across a strip, including the first sample of the next strip, so
+     * neighbouring strips meet. Does not touch any game object, so it is safe to call off the game
+     * thread.
+     */
+    private float[] sampleStrip(float firstX) {
+        float[] heights = new float[SAMPLES_PER_STRIP];
+        for (int i = 0; i < SAMPLES_PER_STRIP; i++) {
+            heights[i] = groundHeightProvider.getGroundHeight(firstX + i * SAMPLE_SPACING);
+        }
+        return heights;
+    }
+
+    /**
+     * The sampled heights of one strip of a layer.
+     */
+    private static final class Strip {
+        private final int index;
+        private final CompletableFuture<float[]> heights;
+
+        Strip(int index, CompletableFuture<float[]> heights) {
+            this.index = index;
+            this.heights = heights;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.gui.rendering.Camera;
+import danogl.util.Vector2;
+
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A game object that updates and draws a group of child objects, so the whole group enters or
+ * leaves the game in a single operation instead of one per child.
+ *
+ * <p>Children are updated and drawn in the order they were added, exactly as if they had been added
+ * to the group's layer one by one. They are not in the game's collection themselves, so the engine
+ * never checks them for collisions: only objects that collide with nothing belong in a group.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class GameObjectGroup extends GameObject {
+    private final List<GameObject> children = new ArrayList<>();
+
+    /**
+     * Creates an empty group.
+     *
+     * @param topLeftCorner Position of the top-left corner of the area the group covers.
+     * @param dimensions    Size of the area the group covers.
+     */
+    public GameObjectGroup(Vector2 topLeftCorner, Vector2 dimensions) {
+        super(topLeftCorner, dimensions, null);
+    }
+
+    /**
+     * Adds a child, updated and drawn after the existing children.
+     *
+     * @param child The child to add.
+     */
+    public void add(GameObject child) {
+        children.add(child);
+    }
+
+    /**
+     * Removes a child.
+     *
+     * @param child The child to remove.
+     * @return {@code true} if the child was in the group, otherwise {@code false}.
+     */
+    public boolean remove(GameObject child) {
+        return children.remove(child);
+    }
+
+    /**
+     * Removes every child that matches a filter, in a single pass over the children.
+     *
+     * @param filter Returns {@code true} for the children to remove.
+     * @return {@code true} if any child was removed, otherwise {@code false}.
+     */
+    public boolean removeIf(Predicate<? super GameObject> filter) {
+        return children.removeIf(filter);
+    }
+
+    /**
+     * Returns the number of children.
+     */
+    public int size() {
+        return children.size();
+    }
+
+    /**
+     * Updates the group's children.
+     */
+    @Override
+    public void update(float deltaTime) {
+        super.update(deltaTime);
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).update(deltaTime);
+        }
+    }
+
+    /**
+     * Draws the group's children.
+     */
+    @Override
+    public void render(Graphics2D g, Camera camera) {
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).render(g, camera);
+        }
+    }
+
+    /**
+     * A group never collides; its children are not checked for collisions either.
+     */
+    @Override
+    public boolean shouldCollideWith(GameObject other) {
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+/**
+ * A game object whose update only touches its own state, such as a swaying leaf or a fruit
+ * waiting to reappear.
+ *
+ * <p>Once {@link #setUpdatedIndependently(boolean)} is turned on, the regular game-loop
+ * {@link #update(float)} does nothing, and the object is updated instead through
+ * {@link #updateIndependently(float)}. This allows independent objects of different chunks to be
+ * updated in parallel, before the game loop resolves collisions.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class IndependentGameObject extends GameObject {
+    private boolean updatedIndependently;
+
+    /**
+     * Constructs a new independent game object.
+     *
+     * @param topLeftCorner Position of the object's top-left corner.
+     * @param dimensions    Size of the object.
+     * @param renderable    A {@link Renderable} for the object (may be null).
+     */
+    public IndependentGameObject(Vector2 topLeftCorner, Vector2 dimensions, Renderable renderable) {
+        super(topLeftCorner, dimensions, renderable);
+    }
+
+    /**
+     * Sets whether the object is updated through {@link #updateIndependently(float)} instead of
+     * the regular game loop.
+     */
+    public void setUpdatedIndependently(boolean updatedIndependently) {
+        this.updatedIndependently = updatedIndependently;
+    }
+
+    /**
+     * Updates the object from the game loop, unless it is updated independently.
+     */
+    @Override
+    public void update(float deltaTime) {
+        if (!updatedIndependently) {
+            updateIndependently(deltaTime);
+        }
+    }
+
+    /**
+     * Updates the object outside the regular game loop. May be called from a worker thread, so
+     * overriding implementations must only modify the object's own state.
+     *
+     * @param deltaTime Time passed since the previous update.
+     */
+    public void updateIndependently(float deltaTime) {
+        super.update(deltaTime);
+    }
+}
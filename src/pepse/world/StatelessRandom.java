@@ -0,0 +1,95 @@
+package pepse.world;
+
+/**
+ * A stateless, counter-based random generator for world generation.
+ *
+ * <p>Every value is a pure function of a seed, two coordinates and a purpose, mixed with the
+ * SplitMix64 finalizer. Nothing is allocated and no state is shared, so the generator is safe to
+ * use from any number of threads at once, and a value never depends on what was drawn before it.
+ * The arithmetic is fully specified, so worlds stay the same across JDK versions.</p>
+ *
+ * <p>The purpose keeps unrelated decisions at the same coordinates independent: whether a column
+ * holds a tree and how tall that tree is are drawn with different purposes. Purposes are listed
+ * here so none is used twice.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public final class StatelessRandom {
+    /** Whether a column holds a tree. */
+    public static final int TREE_PLACEMENT = 1;
+    /** The height of a tree's stem. */
+    public static final int STEM_HEIGHT = 2;
+    /** The size of a tree's canopy. */
+    public static final int CANOPY_SIZE = 3;
+    /** The color of a tree's stem. */
+    public static final int STEM_COLOR = 4;
+    /** Whether a canopy cell holds a leaf. */
+    public static final int LEAF = 5;
+    /** Whether a canopy cell holds a fruit. */
+    public static final int FRUIT = 6;
+    /** The color of a terrain block. */
+    public static final int BLOCK_COLOR = 7;
+    /** The delay before a leaf starts swaying. */
+    public static final int LEAF_SWAY = 8;
+    /** The shape, height and speed of a cloud. */
+    public static final int CLOUD = 9;
+    /** Whether a cloud cell drops rain. */
+    public static final int RAIN = 10;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final float FLOAT_UNIT = 0x1.0p-24f;
+
+    private StatelessRandom() {
+    }
+
+    /**
+     * Returns 64 random bits for the given key.
+     *
+     * @param seed    The world's seed.
+     * @param x       The first coordinate, such as a column.
+     * @param y       The second coordinate, such as a row or a cell index.
+     * @param purpose What the value is drawn for; one of the constants of this class.
+     * @return The random bits.
+     */
+    public static long hash(long seed, long x, long y, int purpose) {
+        long hash = mix(seed * GOLDEN_GAMMA + purpose);
+        hash = mix(hash + x * GOLDEN_GAMMA);
+        return mix(hash + y * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns a random int in [0, bound) for the given key.
+     *
+     * @param bound The exclusive upper bound; must be positive.
+     */
+    public static int nextInt(long seed, long x, long y, int purpose, int bound) {
+        return (int) (((hash(seed, x, y, purpose) >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * Returns a random int in [origin, bound) for the given key.
+     *
+     * @param origin The inclusive lower bound.
+     * @param bound  The exclusive upper bound; must be greater than the origin.
+     */
+    public static int nextInt(long seed, long x, long y, int purpose, int origin, int bound) {
+        return origin + nextInt(seed, x, y, purpose, bound - origin);
+    }
+
+    /**
+     * Returns a random float in [0, 1) for the given key.
+     */
+    public static float nextFloat(long seed, long x, long y, int purpose) {
+        return (hash(seed, x, y, purpose) >>> 40) * FLOAT_UNIT;
+    }
+
+    /**
+     * The SplitMix64 finalizer: a bijective mix of all 64 bits.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
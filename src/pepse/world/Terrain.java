@@ -1,40 +1,66 @@
 package pepse.world;
 
-import danogl.gui.rendering.RectangleRenderable;
-import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.ChunkData;
+import pepse.LongMap;
 import pepse.constants.Constants;
 import pepse.util.ColorSupplier;
 import pepse.util.NoiseGenerator;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Manages procedural terrain generation using Perlin-like noise.
- * <p>Handles block creation in a specified x-range, stacking blocks to a defined depth
- * below the noise-calculated ground level.</p>
+ * <p>Handles block creation in a specified rectangle, filling the ground from the noise-calculated
+ * surface down to a deep, fixed bottom. Below a thin crust under the surface, {@link CaveNoise}
+ * carves caves, which also leaves overhangs wherever a cave comes close to the surface.</p>
  *
- * <p>Use {@link #createInRange(int, int)} to generate terrain blocks for a horizontal segment,
- * and {@link #groundHeightAt(float)} to query the height of the terrain.</p>
+ * <p>Use {@link #generateInto(ChunkData.Builder)} to generate the terrain of a chunk as data,
+ * {@link #groundHeightAt(float)} to query the height of the surface, and
+ * {@link #isSolid(float, float)} to check any point below it.</p>
  *
- * <p>Ensures all x-locations snap to multiples of {@link Block#SIZE} for alignment.</p>
- *
- * <p>Color variations are applied via {@link ColorSupplier} to create visual diversity.</p>
+ * <p>The world is divided into {@link Biome}s, which scale the height noise and set the probability
+ * of trees. Noise is expensive, so each layer is sampled on its own coarse grid of columns and
+ * interpolated linearly per column: the height every {@value #HEIGHT_GRID} columns, the biome every
+ * {@value #BIOME_GRID} columns. Interpolated columns are cached in tiles the width of a chunk, so the
+ * many height queries of a chunk cost one tile. The cache is keyed by the primitive tile index, and
+ * when it is full it evicts a single tile that was not used recently (the "clock" algorithm), so
+ * the tiles around the player survive the far background sampling distant ones.</p>
  *
- * <p>Example usage: {@code terrain.createInRange(-300, 300);}</p>
+ * <p>Ensures all x-locations snap to multiples of {@link Block#SIZE} for alignment.</p>
  *
- * <p>Generated blocks may be added to the game objects for rendering and collision.</p>
+ * <p>Color variations come from a small palette approximated by {@link ColorSupplier}; every block
+ * picks its color index from its position, so generated data does not depend on the palette.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
 public class Terrain {
     private static final Color BASE_GROUND_COLOR = new Color(212, 123, 74);
-    private static final int TERRAIN_DEPTH = 24;
+    /** Depth of the terrain below the top of the world, in blocks, unless set otherwise. */
+    public static final int DEFAULT_DEPTH = 400;
+    private static final int CRUST_THICKNESS = 2;
+    private static final float CAVE_SCALE = Block.SIZE * 6;
+    private static final float CAVE_THRESHOLD = 0.62f;
+    private static final int PALETTE_SIZE = 16;
+    private static final int HEIGHT_GRID = 2;
+    private static final int BIOME_GRID = 16;
+    private static final float BIOME_SCALE = BIOME_GRID * Block.SIZE * 4;
+    private static final int BIOME_SEED_OFFSET = 0x5EED;
+    private static final int TILE_COLUMNS = ChunkData.COLUMNS;
+    private static final int MAX_CACHED_TILES = 1024;
+    private final int seed;
     private final float groundHeightAtX0;
     private final NoiseGenerator noiseGenerator;
+    private final CaveNoise caveNoise;
+    private final CaveNoise biomeNoise;
+    /** The cached tiles by index; guarded by itself, since chunks are generated on several threads. */
+    private final LongMap<Tile> tiles = new LongMap<>();
+    /** The indices of the cached tiles, in the order the clock hand visits them. */
+    private final long[] clockTileIndices = new long[MAX_CACHED_TILES];
+    private int clockHand;
+    private final Color[] palette = new Color[PALETTE_SIZE];
+    private volatile int depth = DEFAULT_DEPTH;
 
     /**
      * Constructs a terrain generator for the given window dimensions and random seed.
@@ -43,59 +69,267 @@ public class Terrain {
      * @param seed             Seed for deterministic noise generation.
      */
     public Terrain(Vector2 windowDimensions, int seed) {
+        this.seed = seed;
         groundHeightAtX0 = windowDimensions.mult(Constants.INITIAL_GROUND_FACTOR).y();
         this.noiseGenerator = new NoiseGenerator(seed, (int) groundHeightAtX0);
+        this.caveNoise = new CaveNoise(seed, CAVE_SCALE);
+        this.biomeNoise = new CaveNoise(seed + BIOME_SEED_OFFSET, BIOME_SCALE);
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = ColorSupplier.approximateColor(BASE_GROUND_COLOR);
+        }
+    }
+
+    /**
+     * Sets the depth of the terrain below the top of the world. Chunks generated before keep their
+     * depth until they are generated again.
+     *
+     * @param depth The depth in blocks.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
     }
 
     /**
-     * Computes the ground height at a given x-coordinate using noise,
-     * then snaps to a multiple of 30 (block size).
+     * Returns the ground height of the column containing a given x-coordinate: the height noise,
+     * scaled by the biome, snapped to a multiple of 30 (block size).
      *
      * @param x The horizontal coordinate in the world.
      * @return The y-value of the ground, aligned to block size.
      */
     public float groundHeightAt(float x) {
-        float noise = (float) noiseGenerator.noise(x, Block.SIZE * 7);
-        float height = groundHeightAtX0 + noise;
-        return (float) (Math.ceil(height / Block.SIZE) * Block.SIZE);
+        int column = columnOf(x);
+        return tileAt(column).heights[Math.floorMod(column, TILE_COLUMNS)];
+    }
+
+    /**
+     * Returns the biome of the column containing a given x-coordinate.
+     *
+     * @param x The horizontal coordinate in the world.
+     * @return The biome.
+     */
+    public Biome biomeAt(float x) {
+        int column = columnOf(x);
+        return Biome.values()[tileAt(column).biomes[Math.floorMod(column, TILE_COLUMNS)]];
     }
 
     /**
-     * Generates terrain blocks from minX to maxX, stacking blocks down from the ground level
-     * to a fixed depth.
+     * Returns the probability of a tree growing in the column containing a given x-coordinate,
+     * blended between the neighbouring biomes.
      *
-     * @param minX Start of the horizontal range.
-     * @param maxX End of the horizontal range.
-     * @return A list of {@link Block} objects forming the terrain in this range.
-     */
-    public List<Block> createInRange(int minX, int maxX) {
-        List<Block> blockList = new ArrayList<>();
-        int initX = findNearestValidLocation(minX);
-        int endX = findNearestValidLocation(maxX);
-        int currentX = initX;
-
-        while (currentX <= endX) {
-            int currentY = (int) Math.floor(groundHeightAt(currentX) / Block.SIZE) * Block.SIZE;
-            blockList.addAll(addAllInColumn(currentX, currentY));
-            currentX += Block.SIZE;
+     * @param x The horizontal coordinate in the world.
+     * @return A probability between 0 and 1.
+     */
+    public float treeProbabilityAt(float x) {
+        int column = columnOf(x);
+        return tileAt(column).treeProbabilities[Math.floorMod(column, TILE_COLUMNS)];
+    }
+
+    /**
+     * Checks whether the block containing the given point is solid ground: below the surface,
+     * above the bottom of the world, and not carved out by a cave.
+     *
+     * @param x The horizontal coordinate in the world.
+     * @param y The vertical coordinate in the world.
+     * @return {@code true} if the point is inside solid ground, otherwise {@code false}.
+     */
+    public boolean isSolid(float x, float y) {
+        int blockX = Math.floorDiv((int) Math.floor(x), Block.SIZE) * Block.SIZE;
+        int blockY = Math.floorDiv((int) Math.floor(y), Block.SIZE) * Block.SIZE;
+        return isSolidBlock(blockX, blockY, surfaceAt(blockX));
+    }
+
+    /**
+     * Generates the terrain of a chunk: the surface height of every column in [minX, maxX), and the
+     * color index of every solid block whose top lies in [minY, maxY).
+     *
+     * @param builder The chunk being generated.
+     */
+    public void generateInto(ChunkData.Builder builder) {
+        int minX = builder.getMinX();
+        int minY = builder.getMinY();
+        int bottom = depth * Block.SIZE;
+        for (int column = 0; column < ChunkData.COLUMNS; column++) {
+            int blockX = minX + column * Block.SIZE;
+            int surfaceY = surfaceAt(blockX);
+            builder.setSurfaceHeight(column, surfaceY);
+            for (int row = 0; row < ChunkData.ROWS; row++) {
+                int blockY = minY + row * Block.SIZE;
+                if (blockY >= bottom) {
+                    break;
+                }
+                if (isSolidBlock(blockX, blockY, surfaceY)) {
+                    builder.setBlock(column, row, colorIndexAt(blockX, blockY));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a single ground block, colored like the generated terrain at its position.
+     *
+     * @param topLeftCorner Position of the block's top-left corner.
+     * @return The new block.
+     */
+    public Block createBlock(Vector2 topLeftCorner) {
+        return createBlock(topLeftCorner, colorIndexAt((int) topLeftCorner.x(), (int) topLeftCorner.y()));
+    }
+
+    /**
+     * Creates a single ground block with the given color from the terrain's palette.
+     *
+     * @param topLeftCorner Position of the block's top-left corner.
+     * @param colorIndex    Index of the block's color, as generated into chunk data.
+     * @return The new block.
+     */
+    public Block createBlock(Vector2 topLeftCorner, int colorIndex) {
+        return new Block(topLeftCorner, palette[colorIndex]);
+    }
+
+    /**
+     * Picks the palette index of a block from its position.
+     */
+    private int colorIndexAt(int blockX, int blockY) {
+        return StatelessRandom.nextInt(seed, blockX, blockY, StatelessRandom.BLOCK_COLOR, PALETTE_SIZE);
+    }
+
+    private static int columnOf(float x) {
+        return Math.floorDiv((int) Math.floor(x), Block.SIZE);
+    }
+
+    /**
+     * Returns the cached tile containing a column, computing it if needed. The tile is computed
+     * outside the lock, so two threads may compute the same tile; the first one cached wins.
+     */
+    private Tile tileAt(int column) {
+        int tileIndex = Math.floorDiv(column, TILE_COLUMNS);
+        synchronized (tiles) {
+            Tile tile = tiles.get(tileIndex);
+            if (tile != null) {
+                tile.used = true;
+                return tile;
+            }
         }
-        return blockList;
+        Tile computedTile = computeTile(tileIndex);
+        synchronized (tiles) {
+            Tile tile = tiles.get(tileIndex);
+            if (tile != null) {
+                return tile;
+            }
+            cacheTile(tileIndex, computedTile);
+            return computedTile;
+        }
+    }
+
+    /**
+     * Caches a tile. When the cache is full, the clock hand sweeps the cached tiles, sparing and
+     * clearing the used mark of each tile used since its last visit, and evicts the first one that
+     * was not. Must be called holding the lock of {@link #tiles}.
+     */
+    private void cacheTile(long tileIndex, Tile tile) {
+        if (tiles.size() < MAX_CACHED_TILES) {
+            clockTileIndices[tiles.size()] = tileIndex;
+            tiles.put(tileIndex, tile);
+            return;
+        }
+        while (true) {
+            Tile candidate = tiles.get(clockTileIndices[clockHand]);
+            if (!candidate.used) {
+                break;
+            }
+            candidate.used = false;
+            clockHand = (clockHand + 1) % MAX_CACHED_TILES;
+        }
+        tiles.remove(clockTileIndices[clockHand]);
+        clockTileIndices[clockHand] = tileIndex;
+        tiles.put(tileIndex, tile);
+        clockHand = (clockHand + 1) % MAX_CACHED_TILES;
     }
 
     /**
-     * Stacks terrain blocks starting at the ground level down to the terrain's depth.
+     * Computes the columns of a tile by interpolating the coarse samples of each noise layer.
      */
-    private List<Block> addAllInColumn(int currentX, int currentY) {
-        List<Block> columnBlockList = new ArrayList<>();
-        int countBlocks = TERRAIN_DEPTH - (currentY / Block.SIZE);
+    private Tile computeTile(int tileIndex) {
+        int firstColumn = tileIndex * TILE_COLUMNS;
+        int lastColumn = firstColumn + TILE_COLUMNS - 1;
 
-        for (int i = 0; i < countBlocks; i++) {
-            Renderable renderable = new RectangleRenderable(ColorSupplier
-                    .approximateColor(BASE_GROUND_COLOR));
-            Block block = new Block(new Vector2(currentX, (currentY + i * Block.SIZE)), renderable);
-            columnBlockList.add(block);
+        // Sample the biome layer on its grid, far enough to cover the height samples as well
+        int firstBiomeSample = Math.floorDiv(firstColumn, BIOME_GRID);
+        int biomeSampleCount = Math.floorDiv(lastColumn + HEIGHT_GRID, BIOME_GRID) - firstBiomeSample + 2;
+        float[] biomeValues = new float[biomeSampleCount];
+        float[] amplitudes = new float[biomeSampleCount];
+        float[] treeProbabilities = new float[biomeSampleCount];
+        for (int i = 0; i < biomeSampleCount; i++) {
+            biomeValues[i] = biomeNoise.noise((firstBiomeSample + i) * BIOME_GRID * Block.SIZE, 0);
+            Biome biome = Biome.of(biomeValues[i]);
+            amplitudes[i] = biome.getAmplitude();
+            treeProbabilities[i] = biome.getTreeProbability();
+        }
+
+        // Sample the height layer on its own grid, scaled by the biome amplitude at each sample
+        int firstHeightSample = Math.floorDiv(firstColumn, HEIGHT_GRID);
+        float[] heightSamples = new float[Math.floorDiv(lastColumn, HEIGHT_GRID) - firstHeightSample + 2];
+        for (int i = 0; i < heightSamples.length; i++) {
+            int sampleColumn = (firstHeightSample + i) * HEIGHT_GRID;
+            float amplitude = interpolate(amplitudes, firstBiomeSample, BIOME_GRID, sampleColumn);
+            heightSamples[i] = amplitude
+                    * (float) noiseGenerator.noise(sampleColumn * Block.SIZE, Block.SIZE * 7);
+        }
+
+        Tile tile = new Tile();
+        for (int i = 0; i < TILE_COLUMNS; i++) {
+            int column = firstColumn + i;
+            float noise = interpolate(heightSamples, firstHeightSample, HEIGHT_GRID, column);
+            float height = groundHeightAtX0 + noise;
+            tile.heights[i] = (float) (Math.ceil(height / Block.SIZE) * Block.SIZE);
+            tile.treeProbabilities[i] = interpolate(treeProbabilities, firstBiomeSample, BIOME_GRID, column);
+            tile.biomes[i] = (byte) Biome.of(interpolate(biomeValues, firstBiomeSample, BIOME_GRID, column))
+                    .ordinal();
+        }
+        return tile;
+    }
+
+    /**
+     * Linearly interpolates a layer's coarse samples at a column.
+     *
+     * @param samples     The layer's samples, the first of which is at grid index firstSample.
+     * @param firstSample Grid index of the first sample.
+     * @param grid        Columns between samples.
+     * @param column      The column to interpolate at.
+     */
+    private static float interpolate(float[] samples, int firstSample, int grid, int column) {
+        int sample = Math.floorDiv(column, grid);
+        float t = (float) (column - sample * grid) / grid;
+        float left = samples[sample - firstSample];
+        return left + (samples[sample - firstSample + 1] - left) * t;
+    }
+
+    /**
+     * The interpolated layers of the columns of one chunk.
+     */
+    private static final class Tile {
+        private final float[] heights = new float[TILE_COLUMNS];
+        private final float[] treeProbabilities = new float[TILE_COLUMNS];
+        private final byte[] biomes = new byte[TILE_COLUMNS];
+        /** Whether the tile was used since the clock hand last visited it; guarded by the cache. */
+        private boolean used;
+    }
+
+    /**
+     * Returns the top of the highest block of a column.
+     */
+    private int surfaceAt(int blockX) {
+        return (int) Math.floor(groundHeightAt(blockX) / Block.SIZE) * Block.SIZE;
+    }
+
+    /**
+     * Checks whether a block-aligned position is solid, given its column's surface.
+     */
+    private boolean isSolidBlock(int blockX, int blockY, int surfaceY) {
+        if (blockY < surfaceY || blockY >= depth * Block.SIZE) {
+            return false;
         }
-        return columnBlockList;
+        boolean belowCrust = blockY >= surfaceY + CRUST_THICKNESS * Block.SIZE;
+        return !belowCrust || caveNoise.noise(blockX, blockY) < CAVE_THRESHOLD;
     }
 
     /**
@@ -0,0 +1,123 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A single image that draws many colored {@link Block}s at once.
+ *
+ * <p>Blocks are baked into an image with one pixel per block, which is scaled back up to block size
+ * when drawn, so the result looks the same as drawing each block. The image never collides with
+ * anything; the original blocks stay in the game, without a renderable, to handle collisions.</p>
+ *
+ * <p>Use {@link #snapshot(List)} on the game thread, {@link #bake(BlockSnapshot)} on any thread, and
+ * {@link #TerrainImage(BlockSnapshot, BufferedImage)} back on the game thread.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class TerrainImage extends GameObject {
+
+    /**
+     * Constructs the object that draws a baked image over the area of the snapshot it was baked from.
+     *
+     * @param snapshot The snapshot the image was baked from.
+     * @param image    The baked image.
+     */
+    public TerrainImage(BlockSnapshot snapshot, BufferedImage image) {
+        super(new Vector2(snapshot.minX, snapshot.minY),
+                new Vector2(snapshot.columns * Block.SIZE, snapshot.rows * Block.SIZE),
+                new ImageRenderable(image));
+    }
+
+    /**
+     * The baked image is purely visual, so it never collides.
+     */
+    @Override
+    public boolean shouldCollideWith(GameObject other) {
+        return false;
+    }
+
+    /**
+     * Copies the positions and colors of the given blocks, so they can be baked on another thread.
+     * Blocks without a color are skipped.
+     *
+     * @param blocks The blocks to snapshot.
+     * @return A snapshot of the blocks, or {@code null} if none of them has a color.
+     */
+    public static BlockSnapshot snapshot(List<Block> blocks) {
+        int count = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Block block : blocks) {
+            if (block.getColor() != null) {
+                Vector2 topLeftCorner = block.getTopLeftCorner();
+                minX = Math.min(minX, (int) topLeftCorner.x());
+                minY = Math.min(minY, (int) topLeftCorner.y());
+                maxX = Math.max(maxX, (int) topLeftCorner.x());
+                maxY = Math.max(maxY, (int) topLeftCorner.y());
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        BlockSnapshot snapshot = new BlockSnapshot(minX, minY,
+                (maxX - minX) / Block.SIZE + 1, (maxY - minY) / Block.SIZE + 1, count);
+        int i = 0;
+        for (Block block : blocks) {
+            if (block.getColor() != null) {
+                snapshot.columnIndices[i] = ((int) block.getTopLeftCorner().x() - minX) / Block.SIZE;
+                snapshot.rowIndices[i] = ((int) block.getTopLeftCorner().y() - minY) / Block.SIZE;
+                snapshot.colors[i] = block.getColor().getRGB();
+                i++;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Draws the blocks of a snapshot into an image, one pixel per block.
+     * Does not touch any game object, so it is safe to call off the game thread.
+     *
+     * @param snapshot The blocks to bake.
+     * @return The baked image; cells without a block are transparent.
+     */
+    public static BufferedImage bake(BlockSnapshot snapshot) {
+        BufferedImage image = new BufferedImage(snapshot.columns, snapshot.rows, BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < snapshot.colors.length; i++) {
+            image.setRGB(snapshot.columnIndices[i], snapshot.rowIndices[i], snapshot.colors[i]);
+        }
+        return image;
+    }
+
+    /**
+     * The positions and colors of a group of blocks, copied into primitive arrays.
+     */
+    public static class BlockSnapshot {
+        private final int minX;
+        private final int minY;
+        private final int columns;
+        private final int rows;
+        private final int[] columnIndices;
+        private final int[] rowIndices;
+        private final int[] colors;
+
+        private BlockSnapshot(int minX, int minY, int columns, int rows, int count) {
+            this.minX = minX;
+            this.minY = minY;
+            this.columns = columns;
+            this.rows = rows;
+            this.columnIndices = new int[count];
+            this.rowIndices = new int[count];
+            this.colors = new int[count];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pepse.world;
+
+import danogl.util.Vector2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates and holds the clouds drifting across the sky.
+ * <p>Clouds are spread evenly across the window when the weather is created. Each {@link Cloud}
+ * recycles itself once it leaves the screen, so the number of clouds stays fixed for the whole
+ * game and the weather's cost depends only on the cloud count.</p>
+ *
+ * <p>Use {@link #getClouds()} to add the clouds to the game and to wire their rain.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class Weather {
+    private final List<Cloud> clouds = new ArrayList<>();
+
+    /**
+     * Creates the given number of clouds, spread across the window.
+     *
+     * @param windowDimensions The dimensions of the game window.
+     * @param cloudCount       Number of clouds to create.
+     * @param seed             Seed for the clouds' shapes.
+     */
+    public Weather(Vector2 windowDimensions, int cloudCount, int seed) {
+        float spacing = windowDimensions.x() / cloudCount;
+        for (int i = 0; i < cloudCount; i++) {
+            clouds.add(new Cloud(i * spacing, windowDimensions, seed, i));
+        }
+    }
+
+    /**
+     * Provides the clouds managed by this weather system.
+     */
+    public List<Cloud> getClouds() {
+        return clouds;
+    }
+}
@@ -1,25 +1,23 @@
 package pepse.world.daynight;
 
 import danogl.GameObject;
-import danogl.components.CoordinateSpace;
 import danogl.components.Transition;
-import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
-import pepse.constants.Constants;
 
-import java.awt.*;
+import java.util.function.Consumer;
 
 /**
- * Represents the night-time overlay in the game world.
+ * Represents the night-time darkness in the game world.
  *
- * <p>The {@code Night} class creates a black rectangle that transitions between
- * a transparent state at midday and a semi-transparent state at midnight. This
+ * <p>The {@code Night} class creates an invisible object that drives the darkness of the world
+ * between a transparent state at midday and a semi-transparent state at midnight. This
  * transition simulates the cycle of day and night in the game environment.</p>
  *
- * <p>It uses a {@link Transition} to animate its opacity.</p>
+ * <p>It uses a {@link Transition} to animate the darkness, and reports it to an observer (such as
+ * the lighting system), which darkens the world while keeping light sources visible.</p>
  *
- * <p>The static {@link #create(Vector2, float)} method serves as a factory method
- * to set up the night overlay in your game world.</p>
+ * <p>The static {@link #create(float, Consumer)} method serves as a factory method
+ * to set up the night cycle in your game world.</p>
  *
  * @author Joshua Kolodny, Itamar Lev Ari
  *
@@ -29,20 +27,18 @@ public class Night {
     private static final Float MIDNIGHT_OPACITY = 0.5f;
 
     /**
-     * Creates a night overlay {@link GameObject} that transitions its opacity over a specified cycle length.
+     * Creates a night {@link GameObject} that transitions the darkness over a specified cycle length.
      *
-     * @param windowDimensions the dimensions of the game window
      * @param cycleLength the duration (in seconds or frames, depending on the engine) for a full
      *                   day-night cycle
-     * @return a {@link GameObject} representing the night overlay
+     * @param darknessObserver receives the current darkness, from 0 at midday to its midnight value
+     * @return a {@link GameObject} driving the night cycle
      */
-    public static GameObject create(Vector2 windowDimensions, float cycleLength) {
-        RectangleRenderable renderable = new RectangleRenderable(Color.black);
-        GameObject night = new GameObject(Vector2.ZERO, windowDimensions, renderable);
-        night.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+    public static GameObject create(float cycleLength, Consumer<Float> darknessObserver) {
+        GameObject night = new GameObject(Vector2.ZERO, Vector2.ZERO, null);
         new Transition<>(
                 night,
-                night.renderer()::setOpaqueness,
+                darknessObserver,
                 MIDDAY_OPACITY,
                 MIDNIGHT_OPACITY,
                 Transition.CUBIC_INTERPOLATOR_FLOAT,
@@ -0,0 +1,45 @@
+package pepse.world.lighting;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.interfaces.LightSource;
+
+/**
+ * A light source carried by a {@link GameObject}, such as the avatar's lantern.
+ *
+ * <p>The lantern is always lit and follows the center of its holder. Since it moves, it should be
+ * registered with {@link LightingManager#addDynamicSource(LightSource)}.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class Lantern implements LightSource {
+    private final GameObject holder;
+    private final float radius;
+
+    /**
+     * Creates a lantern carried by the given object.
+     *
+     * @param holder The object carrying the lantern.
+     * @param radius The distance, in pixels, the lantern's light reaches.
+     */
+    public Lantern(GameObject holder, float radius) {
+        this.holder = holder;
+        this.radius = radius;
+    }
+
+    @Override
+    public Vector2 getLightPosition() {
+        return holder.getCenter();
+    }
+
+    @Override
+    public float getLightRadius() {
+        return radius;
+    }
+
+    @Override
+    public boolean isLit() {
+        return true;
+    }
+}
@@ -0,0 +1,203 @@
+package pepse.world.lighting;
+
+import danogl.GameObject;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+import pepse.interfaces.LightSource;
+import pepse.interfaces.SolidityProvider;
+import pepse.world.Block;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A coarse grid of light levels covering a single chunk.
+ *
+ * <p>Each cell is one {@link Block} in size. Light from every {@link LightSource} spreads outwards
+ * cell by cell, and loses strength faster when passing through the ground. The result is written
+ * into a small image, one pixel per cell, which is shown over the chunk by a single overlay
+ * {@link GameObject}: dark cells are opaque and lit cells are transparent.</p>
+ *
+ * <p>The grid is only recomputed when it is marked dirty, so a map whose sources and terrain have
+ * not changed costs nothing beyond drawing its overlay.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class LightMap {
+    /** The side length of a single light cell, in pixels. */
+    public static final int CELL_SIZE = Block.SIZE;
+
+    private static final int GROUND_STEP_COST = 3;
+    private static final int AIR_STEP_COST = 1;
+    private static final int DARK_PIXEL = 0xFF000000;
+
+    private final int minX;
+    private final int topY;
+    private final int columns;
+    private final int rows;
+    private final float[] light;
+    private final int[] distances;
+    private final int[] queue;
+    private final boolean[] solid;
+    private final BufferedImage image;
+    private final GameObject overlay;
+    private int sourcesSignature;
+    private boolean dirty = true;
+
+    /**
+     * Creates an empty light map covering the given world area.
+     *
+     * @param minX   Left edge of the area, in world coordinates.
+     * @param width  Width of the area, in pixels.
+     * @param topY   Top edge of the area, in world coordinates.
+     * @param height Height of the area, in pixels.
+     */
+    public LightMap(int minX, int width, int topY, int height) {
+        this.minX = minX;
+        this.topY = topY;
+        this.columns = width / CELL_SIZE;
+        this.rows = height / CELL_SIZE;
+        this.light = new float[columns * rows];
+        this.distances = new int[columns * rows];
+        this.queue = new int[columns * rows * GROUND_STEP_COST];
+        this.solid = new boolean[columns * rows];
+        this.image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        int[] darkPixels = new int[columns * rows];
+        Arrays.fill(darkPixels, DARK_PIXEL);
+        image.setRGB(0, 0, columns, rows, darkPixels, 0, columns);
+        this.overlay = new GameObject(new Vector2(minX, topY),
+                new Vector2(columns * CELL_SIZE, rows * CELL_SIZE), new ImageRenderable(image));
+    }
+
+    /**
+     * Returns the overlay object that renders this light map.
+     */
+    public GameObject getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Checks whether the map must be recomputed before it is shown again.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks the map as needing a recomputation.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Returns the signature of the sources the map was last computed with.
+     */
+    public int getSourcesSignature() {
+        return sourcesSignature;
+    }
+
+    /**
+     * Sets the signature of the chunk's own sources, used to decide whether a cached map is still valid.
+     *
+     * @param sourcesSignature Signature computed from the positions and states of the sources.
+     */
+    public void setSourcesSignature(int sourcesSignature) {
+        this.sourcesSignature = sourcesSignature;
+    }
+
+    /**
+     * Recomputes the light levels from the given sources and redraws the overlay image.
+     *
+     * @param sources           All light sources that may reach this map.
+     * @param solidityProvider  Determines which cells lie inside the ground.
+     */
+    public void recompute(List<LightSource> sources, SolidityProvider solidityProvider) {
+        updateSolidCells(solidityProvider);
+        Arrays.fill(light, 0);
+        for (LightSource source : sources) {
+            if (source.isLit()) {
+                propagate(source);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int alpha = (int) ((1 - light[row * columns + column]) * 255);
+                image.setRGB(column, row, alpha << 24);
+            }
+        }
+        dirty = false;
+    }
+
+    /**
+     * Marks every cell whose center lies inside solid ground, so caves let light through.
+     */
+    private void updateSolidCells(SolidityProvider solidityProvider) {
+        for (int row = 0; row < rows; row++) {
+            float cellCenterY = topY + row * CELL_SIZE + CELL_SIZE / 2f;
+            for (int column = 0; column < columns; column++) {
+                float cellCenterX = minX + column * CELL_SIZE + CELL_SIZE / 2f;
+                solid[row * columns + column] = solidityProvider.isSolid(cellCenterX, cellCenterY);
+            }
+        }
+    }
+
+    /**
+     * Spreads the light of a single source over the grid, keeping the brightest value per cell.
+     * Sources outside the map enter it through the nearest cell, at their real distance.
+     */
+    private void propagate(LightSource source) {
+        Vector2 position = source.getLightPosition();
+        int radius = Math.max(1, (int) (source.getLightRadius() / CELL_SIZE));
+        int sourceColumn = (int) Math.floor((position.x() - minX) / CELL_SIZE);
+        int sourceRow = (int) Math.floor((position.y() - topY) / CELL_SIZE);
+        int startColumn = Math.max(0, Math.min(columns - 1, sourceColumn));
+        int startRow = Math.max(0, Math.min(rows - 1, sourceRow));
+        int startDistance = Math.abs(startColumn - sourceColumn) + Math.abs(startRow - sourceRow);
+        if (startDistance >= radius) {
+            return;
+        }
+
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        int head = 0;
+        int tail = 0;
+        int start = startRow * columns + startColumn;
+        distances[start] = startDistance;
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int distance = distances[cell];
+            light[cell] = Math.max(light[cell], 1 - (float) distance / radius);
+            int column = cell % columns;
+            int row = cell / columns;
+            if (column > 0) {
+                tail = relax(cell - 1, distance, radius, tail);
+            }
+            if (column < columns - 1) {
+                tail = relax(cell + 1, distance, radius, tail);
+            }
+            if (row > 0) {
+                tail = relax(cell - columns, distance, radius, tail);
+            }
+            if (row < rows - 1) {
+                tail = relax(cell + columns, distance, radius, tail);
+            }
+        }
+    }
+
+    /**
+     * Enqueues a neighbouring cell if the light reaches it with a shorter distance than before.
+     *
+     * @return The new tail of the queue.
+     */
+    private int relax(int neighbour, int distance, int radius, int tail) {
+        int newDistance = distance + (solid[neighbour] ? GROUND_STEP_COST : AIR_STEP_COST);
+        if (newDistance < radius && newDistance < distances[neighbour] && tail < queue.length) {
+            distances[neighbour] = newDistance;
+            queue[tail++] = neighbour;
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,262 @@
+package pepse.world.lighting;
+
+import danogl.GameObject;
+import danogl.util.Vector2;
+import pepse.ChunkKey;
+import pepse.interfaces.LightSource;
+import pepse.interfaces.SolidityProvider;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Owns the {@link LightMap} of every loaded chunk and keeps them up to date. Chunks are identified by
+ * their {@link ChunkKey}, and each map covers exactly the area of its chunk.
+ *
+ * <p>Maps are only recomputed when something that affects them changes: a static source (such as
+ * a fruit) turning on or off, a dynamic source (such as the avatar's lantern) moving into another
+ * cell, or the terrain of the chunk changing. Maps of unloaded chunks are kept in a small cache,
+ * so walking back into a chunk reuses its map instead of recomputing it.</p>
+ *
+ * <p>The sun is modeled as ambient light: the day/night cycle sets the opacity of every overlay
+ * through {@link #setDarkness(float)}, which costs nothing per cell.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class LightingManager {
+    private static final int CACHE_CAPACITY = 32;
+
+    private final SolidityProvider solidityProvider;
+    private final int chunkWidth;
+    private final int chunkHeight;
+    private final Map<Long, LightMap> loadedMaps = new HashMap<>();
+    private final Map<Long, List<LightSource>> chunkSources = new HashMap<>();
+    private final Map<Long, LightMap> cachedMaps = new LinkedHashMap<>(CACHE_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LightMap> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+    private final List<LightSource> dynamicSources = new ArrayList<>();
+    private final Map<LightSource, int[]> dynamicSourceCells = new HashMap<>();
+    private final List<LightSource> sourcesBuffer = new ArrayList<>();
+    private final Queue<LightSource> changedSources = new ConcurrentLinkedQueue<>();
+    private float darkness;
+
+    /**
+     * Creates a lighting manager for chunks of the given size.
+     *
+     * @param solidityProvider Determines which light cells lie inside the ground.
+     * @param chunkWidth       Width of a single chunk, in pixels.
+     * @param chunkHeight      Height of a single chunk, in pixels.
+     */
+    public LightingManager(SolidityProvider solidityProvider, int chunkWidth, int chunkHeight) {
+        this.solidityProvider = solidityProvider;
+        this.chunkWidth = chunkWidth;
+        this.chunkHeight = chunkHeight;
+    }
+
+    /**
+     * Registers a newly loaded chunk and its light sources.
+     *
+     * <p>A cached map is reused if the chunk's sources are unchanged since it was computed.</p>
+     *
+     * @param chunkKey Key of the loaded chunk.
+     * @param sources  Light sources that belong to the chunk.
+     * @return The overlay object of the chunk's light map, to be added to the game.
+     */
+    public GameObject chunkLoaded(long chunkKey, List<? extends LightSource> sources) {
+        List<LightSource> ownSources = new ArrayList<>(sources);
+        int signature = computeSignature(ownSources);
+        LightMap lightMap = cachedMaps.remove(chunkKey);
+        if (lightMap == null || lightMap.getSourcesSignature() != signature) {
+            lightMap = new LightMap(ChunkKey.chunkX(chunkKey) * chunkWidth, chunkWidth,
+                    ChunkKey.chunkY(chunkKey) * chunkHeight, chunkHeight);
+        }
+        lightMap.setSourcesSignature(signature);
+        lightMap.getOverlay().renderer().setOpaqueness(darkness);
+        chunkSources.put(chunkKey, ownSources);
+        loadedMaps.put(chunkKey, lightMap);
+
+        // Neighbours may be lit by the new chunk's sources.
+        forEachNeighbour(chunkKey, this::markChunkDirty);
+        return lightMap.getOverlay();
+    }
+
+    /**
+     * Moves an unloaded chunk's map into the cache.
+     *
+     * @param chunkKey Key of the unloaded chunk.
+     * @return The overlay of the cached map, which stays in memory until the map leaves the cache,
+     *         or {@code null} if the chunk had no map.
+     */
+    public GameObject chunkUnloaded(long chunkKey) {
+        chunkSources.remove(chunkKey);
+        LightMap lightMap = loadedMaps.remove(chunkKey);
+        if (lightMap == null) {
+            return null;
+        }
+        cachedMaps.put(chunkKey, lightMap);
+        return lightMap.getOverlay();
+    }
+
+    /**
+     * Registers a light source that may move every frame, such as the avatar's lantern.
+     *
+     * @param source The moving light source.
+     */
+    public void addDynamicSource(LightSource source) {
+        dynamicSources.add(source);
+    }
+
+    /**
+     * Marks the map of the given chunk, loaded or cached, as needing a recomputation.
+     * Should be called whenever the terrain of the chunk changes.
+     *
+     * @param chunkKey Key of the chunk.
+     */
+    public void markChunkDirty(long chunkKey) {
+        LightMap lightMap = loadedMaps.get(chunkKey);
+        if (lightMap == null) {
+            lightMap = cachedMaps.get(chunkKey);
+        }
+        if (lightMap != null) {
+            lightMap.markDirty();
+        }
+    }
+
+    /**
+     * Records that the given source changed. The maps it reaches are marked dirty on the next
+     * {@link #update()}, so this method is safe to call from the parallel update phase.
+     *
+     * @param source The light source that changed.
+     */
+    public void onLightChanged(LightSource source) {
+        changedSources.add(source);
+    }
+
+    /**
+     * Marks every map reached by a changed source as needing a recomputation.
+     */
+    private void applyLightChange(LightSource source) {
+        Vector2 position = source.getLightPosition();
+        markSourceAreaDirty(position.x(), position.y(), source.getLightRadius());
+        LightMap ownMap = loadedMaps.get(worldToChunkKey(position));
+        if (ownMap != null) {
+            ownMap.setSourcesSignature(ownMap.getSourcesSignature() + 1);
+        }
+    }
+
+    /**
+     * Sets how dark the night currently is, from 0 (midday) to 1 (fully dark).
+     *
+     * @param darkness The opacity of the unlit parts of the overlays.
+     */
+    public void setDarkness(float darkness) {
+        this.darkness = darkness;
+        for (LightMap lightMap : loadedMaps.values()) {
+            lightMap.getOverlay().renderer().setOpaqueness(darkness);
+        }
+    }
+
+    /**
+     * Applies changed sources, detects moved dynamic sources and recomputes every dirty loaded map.
+     */
+    public void update() {
+        LightSource changedSource;
+        while ((changedSource = changedSources.poll()) != null) {
+            applyLightChange(changedSource);
+        }
+
+        for (LightSource source : dynamicSources) {
+            Vector2 position = source.getLightPosition();
+            int cellX = (int) Math.floor(position.x() / LightMap.CELL_SIZE);
+            int cellY = (int) Math.floor(position.y() / LightMap.CELL_SIZE);
+            // The cell is updated in place, so a source that stays put costs no allocation
+            int[] cell = dynamicSourceCells.get(source);
+            if (cell == null) {
+                dynamicSourceCells.put(source, new int[]{cellX, cellY});
+                markSourceAreaDirty(position.x(), position.y(), source.getLightRadius());
+            } else if (cell[0] != cellX || cell[1] != cellY) {
+                markSourceAreaDirty(cell[0] * LightMap.CELL_SIZE, cell[1] * LightMap.CELL_SIZE,
+                        source.getLightRadius());
+                cell[0] = cellX;
+                cell[1] = cellY;
+                markSourceAreaDirty(position.x(), position.y(), source.getLightRadius());
+            }
+        }
+
+        for (Map.Entry<Long, LightMap> entry : loadedMaps.entrySet()) {
+            if (entry.getValue().isDirty()) {
+                entry.getValue().recompute(collectSources(entry.getKey()), solidityProvider);
+            }
+        }
+    }
+
+    /**
+     * Gathers the sources that may reach a chunk: its own, its eight neighbours' and all dynamic sources.
+     */
+    private List<LightSource> collectSources(long chunkKey) {
+        sourcesBuffer.clear();
+        addChunkSources(chunkKey);
+        forEachNeighbour(chunkKey, this::addChunkSources);
+        sourcesBuffer.addAll(dynamicSources);
+        return sourcesBuffer;
+    }
+
+    private void addChunkSources(long chunkKey) {
+        List<LightSource> sources = chunkSources.get(chunkKey);
+        if (sources != null) {
+            sourcesBuffer.addAll(sources);
+        }
+    }
+
+    /**
+     * Applies an action to the keys of the eight chunks around the given chunk.
+     */
+    private static void forEachNeighbour(long chunkKey, LongConsumer action) {
+        int chunkX = ChunkKey.chunkX(chunkKey);
+        int chunkY = ChunkKey.chunkY(chunkKey);
+        for (int neighbourX = chunkX - 1; neighbourX <= chunkX + 1; neighbourX++) {
+            for (int neighbourY = chunkY - 1; neighbourY <= chunkY + 1; neighbourY++) {
+                if (neighbourX != chunkX || neighbourY != chunkY) {
+                    action.accept(ChunkKey.of(neighbourX, neighbourY));
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the maps of every chunk within the given radius around a position as dirty.
+     */
+    private void markSourceAreaDirty(float x, float y, float radius) {
+        int firstX = (int) Math.floor((x - radius) / chunkWidth);
+        int lastX = (int) Math.floor((x + radius) / chunkWidth);
+        int firstY = (int) Math.floor((y - radius) / chunkHeight);
+        int lastY = (int) Math.floor((y + radius) / chunkHeight);
+        for (int chunkX = firstX; chunkX <= lastX; chunkX++) {
+            for (int chunkY = firstY; chunkY <= lastY; chunkY++) {
+                markChunkDirty(ChunkKey.of(chunkX, chunkY));
+            }
+        }
+    }
+
+    /**
+     * Computes a signature of the positions and states of a chunk's own sources.
+     */
+    private int computeSignature(List<LightSource> sources) {
+        int signature = 1;
+        for (LightSource source : sources) {
+            signature = 31 * signature + Objects.hash(source.getLightPosition().x(),
+                    source.getLightPosition().y(), source.isLit());
+        }
+        return signature;
+    }
+
+    private long worldToChunkKey(Vector2 position) {
+        return ChunkKey.of((int) Math.floor(position.x() / chunkWidth),
+                (int) Math.floor(position.y() / chunkHeight));
+    }
+}
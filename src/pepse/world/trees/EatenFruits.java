@@ -0,0 +1,147 @@
+package pepse.world.trees;
+
+import danogl.util.Vector2;
+import pepse.interfaces.FruitObserver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which fruits have been eaten and when they grow back.
+ *
+ * <p>Fruits are identified by their position, so a fruit that is regenerated with its chunk can be
+ * eaten again only once its regrowth time has passed. The times are measured on the simulation
+ * clock, which the game advances through {@link #advance(float)}.</p>
+ *
+ * <p>The registry is copy-on-write: every change replaces the whole map, which is rare, while
+ * {@link #capture()} only hands out the current map. Saving a session therefore never copies or
+ * locks anything on the game thread. Fruits regrow during the parallel update, so changes are
+ * synchronized.</p>
+ *
+ * <p>The registry keeps a hash of which fruits are eaten, updated with every change, so a replay
+ * can check that it reproduced them without walking the map.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class EatenFruits implements FruitObserver {
+    private volatile Map<Long, Float> regrowthTimes = Collections.emptyMap();
+    private float time;
+    private volatile int stateHash;
+
+    /**
+     * Creates an empty registry.
+     */
+    public EatenFruits() {
+    }
+
+    /**
+     * Creates a registry from the remaining regrowth delays of a saved session.
+     *
+     * @param remainingDelays The remaining regrowth delay of every eaten fruit, by packed position.
+     */
+    public EatenFruits(Map<Long, Float> remainingDelays) {
+        this.regrowthTimes = Collections.unmodifiableMap(new HashMap<>(remainingDelays));
+        int hash = 0;
+        for (long packedPosition : remainingDelays.keySet()) {
+            hash += hashPosition(packedPosition);
+        }
+        this.stateHash = hash;
+    }
+
+    /**
+     * Advances the simulation clock of the registry.
+     *
+     * @param deltaTime Time passed since the previous step, in seconds.
+     */
+    public void advance(float deltaTime) {
+        time += deltaTime;
+    }
+
+    @Override
+    public synchronized void onFruitEaten(Vector2 position, float regrowthDelay) {
+        long packedPosition = pack(position);
+        Map<Long, Float> newRegrowthTimes = new HashMap<>(regrowthTimes);
+        if (newRegrowthTimes.put(packedPosition, time + regrowthDelay) == null) {
+            stateHash += hashPosition(packedPosition);
+        }
+        regrowthTimes = Collections.unmodifiableMap(newRegrowthTimes);
+    }
+
+    @Override
+    public synchronized void onFruitRegrown(Vector2 position) {
+        long packedPosition = pack(position);
+        if (regrowthTimes.containsKey(packedPosition)) {
+            Map<Long, Float> newRegrowthTimes = new HashMap<>(regrowthTimes);
+            newRegrowthTimes.remove(packedPosition);
+            stateHash -= hashPosition(packedPosition);
+            regrowthTimes = Collections.unmodifiableMap(newRegrowthTimes);
+        }
+    }
+
+    /**
+     * Returns how long until the fruit at the given position grows back.
+     *
+     * @param position The top-left corner of the fruit.
+     * @return The remaining time in seconds, or 0 if the fruit is not eaten.
+     */
+    public float remainingDelay(Vector2 position) {
+        Float regrowthTime = regrowthTimes.get(pack(position));
+        return regrowthTime == null ? 0 : Math.max(0, regrowthTime - time);
+    }
+
+    /**
+     * Returns the current simulation time of the registry, in seconds.
+     */
+    public float getTime() {
+        return time;
+    }
+
+    /**
+     * Returns a hash of the positions of the eaten fruits, which does not depend on the order
+     * they were eaten in.
+     */
+    public int getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Captures the regrowth times of the eaten fruits. The returned map is never modified, so it
+     * can be read on another thread while the game goes on. It may still hold fruits whose time
+     * has passed, if their chunk was unloaded before they grew back.
+     *
+     * @return The regrowth time of every eaten fruit on the simulation clock, by packed position.
+     */
+    public Map<Long, Float> capture() {
+        return regrowthTimes;
+    }
+
+    /**
+     * Spreads the bits of a packed position, so the sum of the hashes of different fruits rarely
+     * collides.
+     */
+    private static int hashPosition(long packedPosition) {
+        return (int) ((packedPosition * 0x9E3779B97F4A7C15L) >>> Integer.SIZE);
+    }
+
+    /**
+     * Packs the position of a fruit into the key it is registered under.
+     *
+     * @param position The top-left corner of the fruit.
+     * @return The packed position.
+     */
+    public static long pack(Vector2 position) {
+        return ((long) Math.round(position.x()) << Integer.SIZE) | (Math.round(position.y()) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Unpacks a position packed by {@link #pack(Vector2)}.
+     *
+     * @param packedPosition The packed position.
+     * @return The top-left corner of the fruit.
+     */
+    public static Vector2 unpack(long packedPosition) {
+        return new Vector2((int) (packedPosition >> Integer.SIZE), (int) packedPosition);
+    }
+}
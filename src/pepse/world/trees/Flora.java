@@ -1,89 +1,136 @@
 package pepse.world.trees;
 
-import danogl.util.Vector2;
+import pepse.ChunkData;
 import pepse.constants.Constants;
 import pepse.interfaces.GroundHeightProvider;
 import pepse.interfaces.NearestLocationProvider;
+import pepse.interfaces.TreeProbabilityProvider;
 import pepse.world.Block;
-
-import java.util.*;
+import pepse.world.StatelessRandom;
 
 /**
- * Manages the creation of {@link Tree} objects in a given horizontal range.
+ * Generates the trees of a chunk as {@link ChunkData}, from which {@link Tree} objects are created.
  * <p>Uses {@link NearestLocationProvider} to snap x-coordinates, {@link GroundHeightProvider} to
- * determine ground heights, and randomized logic (with a seed) to ensure reproducible tree placement.</p>
+ * determine ground heights, {@link TreeProbabilityProvider} to let the biome decide how dense the
+ * trees are, and a {@link StatelessRandom} (with a seed) to ensure reproducible trees.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
 public class Flora {
-    private static final int TREE_PROBABILITY_NOMINATOR = 0;
     private static final int MIN_BOUND = 3;
     private static final int MAX_BOUND = 6;
+    /** A canopy cell holds a leaf when its draw exceeds this, unless set otherwise. */
+    public static final int DEFAULT_LEAF_THRESHOLD = 4;
+    /** A canopy cell without a leaf holds a fruit when its draw exceeds this, unless set otherwise. */
+    public static final int DEFAULT_FRUIT_THRESHOLD = 8;
     private final NearestLocationProvider nearestLocationProvider;
     private final GroundHeightProvider groundHeightProvider;
+    private final TreeProbabilityProvider treeProbabilityProvider;
     private final int seed;
+    private volatile int leafThreshold = DEFAULT_LEAF_THRESHOLD;
+    private volatile int fruitThreshold = DEFAULT_FRUIT_THRESHOLD;
 
     /**
      * Initializes the flora generator with required providers and a seed for randomness.
      *
      * @param nearestLocationProvider Aligns x-coordinates to valid positions.
      * @param groundHeightProvider    Determines ground height at each x-coordinate.
+     * @param treeProbabilityProvider Determines the probability of a tree at each x-coordinate.
      * @param seed                    Seed for reproducible randomization.
      */
     public Flora(NearestLocationProvider nearestLocationProvider, GroundHeightProvider groundHeightProvider,
-                 int seed) {
+                 TreeProbabilityProvider treeProbabilityProvider, int seed) {
         this.nearestLocationProvider = nearestLocationProvider;
         this.groundHeightProvider = groundHeightProvider;
+        this.treeProbabilityProvider = treeProbabilityProvider;
         this.seed = seed;
     }
 
     /**
-     * Creates trees in the given range. Each potential x-location is tested for tree placement,
-     * and if a tree is placed, its height and leaf count are determined randomly.
+     * Sets the thresholds a canopy cell's draw, out of {@link Constants#PROBABILITY_DENOMINATOR},
+     * must exceed to hold a leaf, or else a fruit. Chunks generated before keep their canopies until
+     * they are generated again.
      *
-     * @param minX The minimum x-coordinate of the region.
-     * @param maxX The maximum x-coordinate of the region.
-     * @return A list of {@link Tree} objects within the specified range.
+     * @param leafThreshold  The threshold for a leaf.
+     * @param fruitThreshold The threshold for a fruit.
      */
-    public List<Tree> createInRange(int minX, int maxX) {
-        List<Tree> treeLocationsList = new ArrayList<>();
-
-        // Use nearestLocationProvider to snap min/max to valid tree positions.
-        int initX = nearestLocationProvider.getNearestLocation(minX);
-        int endX = nearestLocationProvider.getNearestLocation(maxX);
+    public void setCanopyThresholds(int leafThreshold, int fruitThreshold) {
+        this.leafThreshold = leafThreshold;
+        this.fruitThreshold = fruitThreshold;
+    }
 
-        int currentX = initX;
-        while (currentX <= endX) {
-            Random placementRand = new Random(Objects.hash(currentX, seed));
-            if (shouldCreateTree(currentX, placementRand)) {
-                int stemHeight = placementRand.nextInt(MIN_BOUND, MAX_BOUND) * Block.SIZE;
-                int numLeaves = 2 * placementRand.nextInt(MIN_BOUND, MAX_BOUND) + 1;
+    /**
+     * Generates the trees of a chunk. Each column in [minX, maxX) is tested for tree placement, and
+     * if a tree is placed, its height, canopy and stem color are determined randomly, along with
+     * which canopy cells hold a leaf or a fruit.
+     * A tree belongs to the chunk that contains its base, so it is generated exactly once even
+     * when it reaches into the chunk above or beside it.
+     *
+     * <p>Every decision is drawn from a {@link StatelessRandom} keyed by the world's seed, the column
+     * and the decision, so a chunk always generates the same trees, on any thread.</p>
+     *
+     * @param builder The chunk being generated.
+     */
+    public void generateInto(ChunkData.Builder builder) {
+        int initX = nearestLocationProvider.getNearestLocation(builder.getMinX());
+        for (int currentX = initX; currentX < builder.getMaxX(); currentX += Block.SIZE) {
+            int groundY = (int) groundHeightProvider.getGroundHeight(currentX);
+            boolean baseInRange = groundY >= builder.getMinY() && groundY < builder.getMaxY();
+            if (baseInRange && shouldCreateTree(currentX)) {
+                int stemHeight = StatelessRandom.nextInt(seed, currentX, 0, StatelessRandom.STEM_HEIGHT,
+                        MIN_BOUND, MAX_BOUND);
+                int canopySize = 2 * StatelessRandom.nextInt(seed, currentX, 0, StatelessRandom.CANOPY_SIZE,
+                        MIN_BOUND, MAX_BOUND) + 1;
+                int stemColorIndex = StatelessRandom.nextInt(seed, currentX, 0, StatelessRandom.STEM_COLOR,
+                        Tree.PALETTE_SIZE);
+                int tree = builder.addTree(currentX, groundY, stemHeight, canopySize, stemColorIndex);
+                generateCanopy(builder, tree, currentX, canopySize);
+            }
+        }
+    }
 
-                float groundY = groundHeightProvider.getGroundHeight(currentX);
-                Vector2 treeTopLeftCorner = new Vector2(currentX, groundY - stemHeight);
+    /**
+     * Checks whether a tree grows in the given column, by the placement rule alone: no tree is
+     * generated, and the column's ground height is not consulted.
+     *
+     * @param x Left edge of the column, a multiple of {@link Block#SIZE}.
+     * @return {@code true} if a tree grows in the column; otherwise, {@code false}.
+     */
+    public boolean hasTreeAt(int x) {
+        return shouldCreateTree(x);
+    }
 
-                Tree tree = new Tree(treeTopLeftCorner,
-                        new Vector2(Block.SIZE, stemHeight),
-                        numLeaves,
-                        null);
-                treeLocationsList.add(tree);
+    /**
+     * Decides, for each canopy cell, whether it holds a leaf, a fruit, or neither.
+     */
+    private void generateCanopy(ChunkData.Builder builder, int tree, int treeX, int canopySize) {
+        for (int cell = 0; cell < canopySize * canopySize; cell++) {
+            int randomLeafInt = StatelessRandom.nextInt(seed, treeX, cell, StatelessRandom.LEAF,
+                    Constants.PROBABILITY_DENOMINATOR);
+            if (randomLeafInt > leafThreshold) {
+                builder.addLeaf(tree, cell);
+            } else {
+                // Alternatively, try placing a fruit
+                int randomFruitInt = StatelessRandom.nextInt(seed, treeX, cell, StatelessRandom.FRUIT,
+                        Constants.PROBABILITY_DENOMINATOR);
+                if (randomFruitInt > fruitThreshold) {
+                    builder.addFruit(tree, cell);
+                }
             }
-            currentX += Block.SIZE;
         }
-        return treeLocationsList;
     }
 
     /**
      * Checks whether a tree should be created at the specified x-coordinate
-     * based on a random value and constraints.
+     * based on a random value, the column's tree probability and constraints.
      *
-     * @param currentX     The current x-coordinate in question.
-     * @param placementRand Random generator initialized with a unique seed per x-coordinate.
+     * @param currentX The current x-coordinate in question.
      * @return {@code true} if a tree should be created; otherwise, {@code false}.
      */
-    private boolean shouldCreateTree(int currentX, Random placementRand) {
-        int isCreated = placementRand.nextInt(Constants.PROBABILITY_DENOMINATOR);
-        return isCreated == TREE_PROBABILITY_NOMINATOR && currentX != Constants.AVATAR_START_X_POSITION;
+    private boolean shouldCreateTree(int currentX) {
+        float isCreated = StatelessRandom.nextFloat(seed, currentX, 0, StatelessRandom.TREE_PLACEMENT);
+        return isCreated < treeProbabilityProvider.getTreeProbability(currentX)
+                && currentX != Constants.AVATAR_START_X_POSITION;
     }
 }
@@ -6,6 +6,10 @@ import danogl.components.ScheduledTask;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.constants.Constants;
+import pepse.world.IndependentGameObject;
+import pepse.interfaces.FruitObserver;
+import pepse.interfaces.LightObserver;
+import pepse.interfaces.LightSource;
 
 /**
  * Represents a fruit that can be collected once, disappears, and reappears later.
@@ -13,22 +17,29 @@ import pepse.constants.Constants;
  *
  * <p>Activation/deactivation toggles its visibility and collision area.</p>
  *
+ * <p>Active fruits glow at night; as a {@link LightSource}, the fruit notifies its
+ * {@link LightObserver} whenever it is activated or deactivated. Its {@link FruitObserver} is
+ * notified when it is eaten and when it grows back.</p>
+ *
  * <p>Typical usage: added to a tree or terrain structure for in-game consumption.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
-public class Fruit extends GameObject {
+public class Fruit extends IndependentGameObject implements LightSource {
     /**
      * The default size of the fruit when active.
      */
     public static final Vector2 SIZE = Vector2.ONES.mult(18);
+    private static final float LIGHT_RADIUS = 75;
 
     /**
      * True if the fruit is currently active (visible and collectible).
      */
     boolean isActive;
     private final Renderable originalRenderable;
+    private LightObserver lightObserver;
+    private FruitObserver fruitObserver;
 
     /**
      * Constructs a new {@code Fruit} object at the specified location.
@@ -41,6 +52,21 @@ public class Fruit extends GameObject {
         super(topLeftCorner, dimensions, renderable);
         this.setTag(Constants.FRUIT_TAG);
         this.originalRenderable = renderable;
+        this.isActive = true;
+    }
+
+    /**
+     * Sets the observer notified when the fruit's glow turns on or off.
+     */
+    public void setLightObserver(LightObserver lightObserver) {
+        this.lightObserver = lightObserver;
+    }
+
+    /**
+     * Sets the observer notified when the fruit is eaten and when it grows back.
+     */
+    public void setFruitObserver(FruitObserver fruitObserver) {
+        this.fruitObserver = fruitObserver;
     }
 
     /**
@@ -48,8 +74,30 @@ public class Fruit extends GameObject {
      */
     @Override
     public void onCollisionEnter(GameObject other, Collision collision){
+        deactivateFor(Constants.CYCLE_LENGTH);
+        if (fruitObserver != null) {
+            fruitObserver.onFruitEaten(getTopLeftCorner(), Constants.CYCLE_LENGTH);
+        }
+    }
+
+    /**
+     * Deactivates the fruit and schedules its reactivation once the given delay has passed.
+     *
+     * @param regrowthDelay Time until the fruit grows back, in seconds.
+     */
+    public void deactivateFor(float regrowthDelay) {
         deactivate();
-        new ScheduledTask(this, Constants.CYCLE_LENGTH, false, this::activate);
+        new ScheduledTask(this, regrowthDelay, false, this::regrow);
+    }
+
+    /**
+     * Reactivates an eaten fruit and notifies the fruit observer.
+     */
+    private void regrow() {
+        activate();
+        if (fruitObserver != null) {
+            fruitObserver.onFruitRegrown(getTopLeftCorner());
+        }
     }
 
     /**
@@ -67,6 +115,7 @@ public class Fruit extends GameObject {
         this.isActive = false;
         this.renderer().setRenderable(null);
         setDimensions(Vector2.ZERO);
+        notifyLightObserver();
     }
 
     /**
@@ -76,5 +125,27 @@ public class Fruit extends GameObject {
         this.isActive = true;
         this.renderer().setRenderable(originalRenderable);
         setDimensions(SIZE);
+        notifyLightObserver();
+    }
+
+    @Override
+    public Vector2 getLightPosition() {
+        return getTopLeftCorner().add(SIZE.mult(0.5f));
+    }
+
+    @Override
+    public float getLightRadius() {
+        return LIGHT_RADIUS;
+    }
+
+    @Override
+    public boolean isLit() {
+        return isActive;
+    }
+
+    private void notifyLightObserver() {
+        if (lightObserver != null) {
+            lightObserver.onLightChanged(this);
+        }
     }
 }
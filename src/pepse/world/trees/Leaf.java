@@ -6,8 +6,9 @@ import danogl.components.Transition;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.constants.Constants;
+import pepse.world.IndependentGameObject;
+import pepse.world.StatelessRandom;
 
-import java.util.Random;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -30,7 +31,7 @@ import java.util.function.Supplier;
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
-public class Leaf extends GameObject {
+public class Leaf extends IndependentGameObject {
     /**
      * The default size of each leaf.
      */
@@ -113,8 +114,9 @@ public class Leaf extends GameObject {
      */
     private void createTransitionDelay(Supplier<Transition<Float>> angleSupplier,
                                        Supplier<Transition<Vector2>> widthSupplier) {
-        Random random = new Random();
-        float taskDelay = random.nextFloat(TASK_DELAY);
+        // Keyed by the leaf's position, so the same leaf always sways the same way
+        float taskDelay = TASK_DELAY * StatelessRandom.nextFloat(0, (long) getTopLeftCorner().x(),
+                (long) getTopLeftCorner().y(), StatelessRandom.LEAF_SWAY);
 
         // Schedule both transitions to start after a random delay.
         new ScheduledTask(this, taskDelay, false, angleSupplier::get);
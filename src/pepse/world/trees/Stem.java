@@ -2,8 +2,6 @@ package pepse.world.trees;
 
 import danogl.GameObject;
 import danogl.components.GameObjectPhysics;
-import danogl.gui.rendering.RectangleRenderable;
-import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 import pepse.constants.Constants;
 import pepse.util.ColorSupplier;
@@ -23,8 +21,9 @@ import java.awt.*;
  * <p>Use {@link #getStemBlocks()} to retrieve the blocks for rendering
  * or collision management.</p>
  *
- * <p>The color of the stem is approximated by {@link ColorSupplier} to
- * vary slightly between stems.</p>
+ * <p>The color of the stem is given by its {@link Tree}, which picks it
+ * from a palette approximated by {@link ColorSupplier}, so it varies
+ * slightly between stems.</p>
  *
  * <p>This class does not extend {@link GameObject}, rather it manages
  * a set of game objects (the blocks).</p>
@@ -35,7 +34,7 @@ import java.awt.*;
  * <p><strong>Note:</strong> {@code height} should be a multiple of
  * {@code Block.SIZE} for a clean, block-aligned stem.</p>
  *
- * <p>Example usage: {@code new Stem(new Vector2(x, y), totalHeightInPixels);}</p>
+ * <p>Example usage: {@code new Stem(new Vector2(x, y), totalHeightInPixels, color);}</p>
  *
  * <p>After creation, {@link #getStemBlocks()} returns an array of
  * {@link Block} objects for further manipulation or addition to the
@@ -45,23 +44,23 @@ import java.awt.*;
  *     Joshua Kolodny, Itamar Lev Ari
  */
 public class Stem {
-    private static final Color STEM_COLOR = new Color(100, 50, 20);
     private final Vector2 topLeftCorner;
-    private final Renderable renderable;
+    private final Color color;
     Block[] stemBlocks;
 
     /**
      * Constructs a new {@code Stem} at a given top-left corner with a specified height.
      *
-     * <p>This constructor prepares the color renderable for the stem, then
-     * calls {@link #createBlocks()} to fill the stem with individual blocks.</p>
+     * <p>This constructor calls {@link #createBlocks()} to fill the stem
+     * with individual blocks of the given color.</p>
      *
      * @param topLeftCorner The top-left corner of the stem.
      * @param height        The total height of the stem in pixels.
+     * @param color         The color of the stem's blocks.
      */
-    public Stem(Vector2 topLeftCorner, int height) {
+    public Stem(Vector2 topLeftCorner, int height, Color color) {
         this.topLeftCorner = topLeftCorner;
-        this.renderable = new RectangleRenderable(ColorSupplier.approximateColor(STEM_COLOR));
+        this.color = color;
         this.stemBlocks = new Block[height / Block.SIZE];
         createBlocks();
     }
@@ -73,7 +72,7 @@ public class Stem {
     private void createBlocks() {
         for (int i = 0; i < stemBlocks.length; i++) {
             stemBlocks[i] = new Block(new Vector2(topLeftCorner.x(),
-                    topLeftCorner.y() + i * Block.SIZE), renderable);
+                    topLeftCorner.y() + i * Block.SIZE), color);
         }
     }
 
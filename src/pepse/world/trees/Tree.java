@@ -5,13 +5,14 @@ import danogl.gui.rendering.OvalRenderable;
 import danogl.gui.rendering.RectangleRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.ChunkData;
 import pepse.constants.Constants;
 import pepse.util.ColorSupplier;
+import pepse.world.Block;
 
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Represents a tree object composed of a vertical stem, leaves, and possibly fruits.
@@ -22,94 +23,99 @@ import java.util.Random;
  *
  * <ul>
  *     <li>{@link Stem} is used to represent the tree trunk.</li>
- *     <li>{@link Leaf} objects are placed around the trunk, based on a random
- *     probability within a specified grid of positions.</li>
- *     <li>{@link Fruit} objects are also randomly created among the leaves.</li>
+ *     <li>{@link Leaf} objects are placed around the trunk, in the cells of the
+ *     canopy grid that the tree's {@link ChunkData} marks as leaves.</li>
+ *     <li>{@link Fruit} objects are placed in the cells marked as fruits.</li>
  * </ul>
  *
+ * <p>Colors are picked from small palettes approximated by {@link ColorSupplier}.</p>
+ *
  * <p>Use {@link #getStem()}, {@link #getLeaves()}, and {@link #getFruits()} to access
  * the generated elements of the tree.</p>
  *
  * <p>The {@link #shouldCollideWith(GameObject)} method is overridden to disable collision
  * with ground objects, which can prevent odd intersection behaviors.</p>
  *
- * <p>Example usage: new Tree(treePosition, stemDimensions, numberOfLeaves, null);</p>
+ * <p>Example usage: new Tree(chunkData, treeIndex);</p>
  *
- * <p>This class is often used by a {@code Flora} manager to populate the game world
- * with multiple trees.</p>
+ * <p>Trees are generated as data by a {@code Flora} manager and created by a
+ * {@code ChunkMaterializer} to populate the game world.</p>
  *
  * @author
  *     Joshua Kolodny, Itamar Lev Ari
  */
 public class Tree extends GameObject {
+    /**
+     * The number of colors in each of the tree palettes.
+     */
+    public static final int PALETTE_SIZE = 8;
+
+    private static final Color STEM_COLOR = new Color(100, 50, 20);
     private static final Color LEAF_COLOR = new Color(50, 200, 30);
-    private static final int LEAF_PROBABILITY_NOMINATOR = 4;
-    private static final int FRUIT_PROBABILITY_NOMINATOR = 8;
+    private static final Color[] STEM_PALETTE = createPalette(STEM_COLOR);
+    private static final Color[] LEAF_PALETTE = createPalette(LEAF_COLOR);
+    private static final Color[] FRUIT_PALETTE = createPalette(Color.RED);
     private final List<Leaf> leavesArray = new ArrayList<>();
     private final List<Fruit> fruitsArray = new ArrayList<>();
     private final Stem stem;
 
     /**
-     * Constructs a new tree at the given position with specified stem size and number of leaves.
+     * Constructs a tree described by chunk data.
      *
-     * @param topLeftCorner  The top-left corner of the tree.
-     * @param stemDimensions The dimensions of the stem (width should be Block.SIZE for typical usage).
-     * @param numLeaves      The total number of leaf positions in a grid dimension (width and height).
-     * @param renderable     The {@link Renderable} for the tree bounding box itself (may be null).
+     * @param data The data of the chunk that contains the tree's base.
+     * @param tree The index of the tree in the chunk data.
      */
-    public Tree(Vector2 topLeftCorner, Vector2 stemDimensions, int numLeaves, Renderable renderable) {
-        super(topLeftCorner, stemDimensions, renderable);
-        this.stem = createStem(topLeftCorner, (int) stemDimensions.y());
-        createLeavesAndFruit(topLeftCorner, numLeaves);
+    public Tree(ChunkData data, int tree) {
+        super(topLeftCornerOf(data, tree),
+                new Vector2(Block.SIZE, data.getStemHeight(tree) * Block.SIZE), null);
+        Vector2 topLeftCorner = getTopLeftCorner();
+        this.stem = new Stem(topLeftCorner, data.getStemHeight(tree) * Block.SIZE,
+                STEM_PALETTE[data.getStemColorIndex(tree)]);
+        createLeavesAndFruit(topLeftCorner, data, tree);
     }
 
     /**
-     * Randomly places {@link Leaf} or {@link Fruit} objects around the top-left corner in a grid.
-     *
-     * <p>For each grid cell, the method generates a random number to decide whether to place
-     * a leaf, a fruit, or neither.</p>
+     * Places {@link Leaf} and {@link Fruit} objects around the top-left corner in a grid, in the
+     * cells the chunk data marks for them.
      *
      * @param topLeftCorner The top-left corner from which the leaves/fruits are offset.
-     * @param numLeaves     The grid dimension for leaves/fruits along each axis.
+     * @param data          The data of the tree's chunk.
+     * @param tree          The index of the tree in the chunk data.
      */
-    private void createLeavesAndFruit(Vector2 topLeftCorner, int numLeaves) {
-        Random random = new Random();
-        int randomLeafInt, randomFruitInt;
+    private void createLeavesAndFruit(Vector2 topLeftCorner, ChunkData data, int tree) {
+        int numLeaves = data.getCanopySize(tree);
         for (int i = 0; i < numLeaves; i++) {
             for (int j = 0; j < numLeaves; j++) {
-                randomLeafInt = random.nextInt(Constants.PROBABILITY_DENOMINATOR);
+                int cell = i * numLeaves + j;
                 int leafX = (int) (topLeftCorner.x() - (float) numLeaves / Constants.HALF_RATIO *
                         Leaf.SIZE.x() + j * Leaf.SIZE.x());
                 int leafY = (int) (topLeftCorner.y() - (float) numLeaves / Constants.HALF_RATIO *
                         Leaf.SIZE.y() + i * Leaf.SIZE.y());
+                // Neighbouring cells get neighbouring shades, offset per tree
+                int colorIndex = (data.getStemColorIndex(tree) + cell) % PALETTE_SIZE;
 
-                if (randomLeafInt > LEAF_PROBABILITY_NOMINATOR) {
-                    // Create a leaf in this position
-                    Renderable leafRenderable = new RectangleRenderable(
-                            ColorSupplier.approximateColor(LEAF_COLOR));
+                if (data.isLeaf(tree, cell)) {
+                    Renderable leafRenderable = new RectangleRenderable(LEAF_PALETTE[colorIndex]);
                     leavesArray.add(new Leaf(new Vector2(leafX, leafY), Leaf.SIZE, leafRenderable));
-                } else {
-                    // Alternatively, try placing a fruit
-                    randomFruitInt = random.nextInt(Constants.PROBABILITY_DENOMINATOR);
-                    if (randomFruitInt > FRUIT_PROBABILITY_NOMINATOR) {
-                        Renderable fruitRenderable = new OvalRenderable(
-                                ColorSupplier.approximateColor(Color.RED));
-                        fruitsArray.add(new Fruit(new Vector2(leafX, leafY), Fruit.SIZE, fruitRenderable));
-                    }
+                } else if (data.isFruit(tree, cell)) {
+                    Renderable fruitRenderable = new OvalRenderable(FRUIT_PALETTE[colorIndex]);
+                    fruitsArray.add(new Fruit(new Vector2(leafX, leafY), Fruit.SIZE, fruitRenderable));
                 }
             }
         }
     }
 
-    /**
-     * Creates a {@link Stem} for this tree.
-     *
-     * @param topLeftCorner The top-left corner of the stem.
-     * @param stemHeight    The total height of the stem in pixels.
-     * @return A new {@link Stem} object.
-     */
-    private Stem createStem(Vector2 topLeftCorner, int stemHeight) {
-        return new Stem(topLeftCorner, stemHeight);
+    private static Vector2 topLeftCornerOf(ChunkData data, int tree) {
+        return new Vector2(data.getTreeX(tree),
+                data.getTreeBaseY(tree) - data.getStemHeight(tree) * Block.SIZE);
+    }
+
+    private static Color[] createPalette(Color baseColor) {
+        Color[] palette = new Color[PALETTE_SIZE];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = ColorSupplier.approximateColor(baseColor);
+        }
+        return palette;
     }
 
     /**
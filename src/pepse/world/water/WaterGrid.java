@@ -0,0 +1,220 @@
+package pepse.world.water;
+
+import danogl.GameObject;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.util.Vector2;
+import pepse.world.Block;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * The water of a single chunk: a level per block-sized cell, from 0 (dry) to {@link #MAX_LEVEL}
+ * (full), kept in a primitive array.
+ *
+ * <p>The grid tracks the rectangle of cells that may change in the next simulation step, so a
+ * step only visits the cells around moving water. The levels are drawn into a small image, one
+ * pixel wide and {@link #MAX_LEVEL} pixels tall per cell, which a single overlay
+ * {@link GameObject} shows over the chunk; a cell is redrawn only when its level changes.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class WaterGrid {
+    /** The level of a full cell. */
+    public static final int MAX_LEVEL = 8;
+
+    private static final int WATER_PIXEL = 0xB02860C8;
+    private static final int EMPTY_PIXEL = 0;
+
+    private final long chunkKey;
+    private final int firstColumn;
+    private final int firstRow;
+    private final int columns;
+    private final int rows;
+    private final byte[] levels;
+    /** The image's pixels, written directly, since {@link BufferedImage#setRGB} allocates per pixel. */
+    private final int[] pixels;
+    private final GameObject overlay;
+
+    /** The cells to visit in the current step, and those to visit in the next one. */
+    private int minColumn;
+    private int maxColumn = -1;
+    private int minRow;
+    private int maxRow = -1;
+    private int nextMinColumn;
+    private int nextMaxColumn = -1;
+    private int nextMinRow;
+    private int nextMaxRow = -1;
+    private boolean loaded;
+    private boolean scheduled;
+
+    /**
+     * Creates a dry grid covering a chunk.
+     *
+     * @param chunkKey    Key of the chunk.
+     * @param firstColumn World column of the chunk's leftmost cell, in blocks.
+     * @param firstRow    World row of the chunk's top cell, in blocks.
+     * @param columns     Number of cell columns in the chunk.
+     * @param rows        Number of cell rows in the chunk.
+     */
+    public WaterGrid(long chunkKey, int firstColumn, int firstRow, int columns, int rows) {
+        this.chunkKey = chunkKey;
+        this.firstColumn = firstColumn;
+        this.firstRow = firstRow;
+        this.columns = columns;
+        this.rows = rows;
+        this.levels = new byte[columns * rows];
+        BufferedImage image = new BufferedImage(columns, rows * MAX_LEVEL, BufferedImage.TYPE_INT_ARGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.overlay = new GameObject(new Vector2(firstColumn * Block.SIZE, firstRow * Block.SIZE),
+                new Vector2(columns * Block.SIZE, rows * Block.SIZE), new ImageRenderable(image));
+    }
+
+    /**
+     * Returns the key of the grid's chunk.
+     */
+    public long getChunkKey() {
+        return chunkKey;
+    }
+
+    /**
+     * Returns the world column of the grid's leftmost cell, in blocks.
+     */
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    /**
+     * Returns the world row of the grid's top cell, in blocks.
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Returns the overlay object that renders this grid.
+     */
+    public GameObject getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns the number of cell columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of cell rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the level of a cell.
+     */
+    public int getLevel(int column, int row) {
+        return levels[row * columns + column];
+    }
+
+    /**
+     * Sets the level of a cell and redraws it.
+     *
+     * @param column The cell's column.
+     * @param row    The cell's row.
+     * @param level  The new level, from 0 to {@link #MAX_LEVEL}.
+     */
+    public void setLevel(int column, int row, int level) {
+        levels[row * columns + column] = (byte) level;
+        int bottom = (row + 1) * MAX_LEVEL;
+        for (int pixel = 1; pixel <= MAX_LEVEL; pixel++) {
+            pixels[(bottom - pixel) * columns + column] = pixel <= level ? WATER_PIXEL : EMPTY_PIXEL;
+        }
+    }
+
+    /**
+     * Adds a cell to the cells visited in the next step.
+     */
+    public void markActive(int column, int row) {
+        if (nextMaxColumn < nextMinColumn) {
+            nextMinColumn = column;
+            nextMaxColumn = column;
+            nextMinRow = row;
+            nextMaxRow = row;
+            return;
+        }
+        nextMinColumn = Math.min(nextMinColumn, column);
+        nextMaxColumn = Math.max(nextMaxColumn, column);
+        nextMinRow = Math.min(nextMinRow, row);
+        nextMaxRow = Math.max(nextMaxRow, row);
+    }
+
+    /**
+     * Starts a step: the cells marked for the next step become the cells of this one.
+     */
+    public void beginStep() {
+        minColumn = nextMinColumn;
+        maxColumn = nextMaxColumn;
+        minRow = nextMinRow;
+        maxRow = nextMaxRow;
+        nextMaxColumn = nextMinColumn - 1;
+    }
+
+    /**
+     * Checks whether any cell is marked for the next step.
+     */
+    public boolean hasNextStep() {
+        return nextMaxColumn >= nextMinColumn;
+    }
+
+    /** Returns the first column visited in the current step. */
+    public int getMinColumn() {
+        return minColumn;
+    }
+
+    /** Returns the last column visited in the current step, or less than the first if none. */
+    public int getMaxColumn() {
+        return maxColumn;
+    }
+
+    /** Returns the first row visited in the current step. */
+    public int getMinRow() {
+        return minRow;
+    }
+
+    /** Returns the last row visited in the current step. */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * Checks whether the grid's chunk is loaded, so its water is shown and simulated.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Sets whether the grid's chunk is loaded.
+     */
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
+    /**
+     * Checks whether the grid is in the manager's list of grids to step.
+     */
+    public boolean isScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Sets whether the grid is in the manager's list of grids to step.
+     */
+    public void setScheduled(boolean scheduled) {
+        this.scheduled = scheduled;
+    }
+}
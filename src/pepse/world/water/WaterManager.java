@@ -0,0 +1,383 @@
+package pepse.world.water;
+
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.util.Vector2;
+import pepse.ChunkKey;
+import pepse.LongMap;
+import pepse.interfaces.ChunkListener;
+import pepse.interfaces.SolidityProvider;
+import pepse.world.Block;
+
+import java.util.*;
+
+/**
+ * Owns the {@link WaterGrid} of every wet chunk and simulates the water as a cellular automaton:
+ * each step, water in a cell falls into the cell below as far as it has room, and otherwise evens
+ * out with its neighbours on both sides, so rain collects in the dips of the terrain.
+ *
+ * <p>Only the cells around water that moved in the previous step are visited, through the dirty
+ * rectangle of each grid, and only grids with such cells are stepped. Settled water costs nothing
+ * beyond drawing its chunk's overlay, so the cost of a step follows the moving water rather than
+ * the size of the world or the number of wet chunks.</p>
+ *
+ * <p>Grids and loaded chunks are looked up in {@link LongMap}s, so stepping the water never boxes a
+ * chunk key, and allocates only when water reaches a dry chunk.</p>
+ *
+ * <p>Water only flows within and between loaded chunks; a loaded chunk's edge towards an unloaded
+ * one is treated as a wall. Grids of unloaded chunks are kept in a small cache with their pending
+ * cells, so water walked away from resumes flowing when its chunk comes back.</p>
+ *
+ * @author
+ *     Joshua Kolodny, Itamar Lev Ari
+ */
+public class WaterManager implements ChunkListener {
+    /** Water overlays are drawn in front of the terrain, and behind the avatar and the light. */
+    public static final int WATER_LAYER = Layer.STATIC_OBJECTS + 1;
+
+    private static final int CACHE_CAPACITY = 32;
+    private static final float STEP_INTERVAL = 1 / 15f;
+    /** A raindrop landing inside placed blocks climbs at most this many cells to find air. */
+    private static final int MAX_DEPOSIT_CLIMB = 4;
+
+    private final SolidityProvider solidityProvider;
+    private final GameObjectCollection gameObjects;
+    private final int columns;
+    private final int rows;
+    /** Maps the key of every loaded chunk to {@code true}; looked up without boxing. */
+    private final LongMap<Boolean> loadedChunks = new LongMap<>();
+    private final LongMap<WaterGrid> loadedGrids = new LongMap<>();
+    private final Map<Long, WaterGrid> cachedGrids = new LinkedHashMap<>(CACHE_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WaterGrid> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+    private final List<WaterGrid> activeGrids = new ArrayList<>();
+    private final List<WaterGrid> steppingGrids = new ArrayList<>();
+    private float timeSinceStep;
+    private boolean leftFirst;
+
+    /**
+     * Creates a water manager for chunks of the given size.
+     *
+     * @param solidityProvider Determines which cells lie inside the ground.
+     * @param gameObjects      The game's objects, which the overlays of loaded chunks are added to.
+     * @param chunkWidth       Width of a single chunk, in pixels.
+     * @param chunkHeight      Height of a single chunk, in pixels.
+     */
+    public WaterManager(SolidityProvider solidityProvider, GameObjectCollection gameObjects,
+                        int chunkWidth, int chunkHeight) {
+        this.solidityProvider = solidityProvider;
+        this.gameObjects = gameObjects;
+        this.columns = chunkWidth / Block.SIZE;
+        this.rows = chunkHeight / Block.SIZE;
+    }
+
+    /**
+     * Shows a loaded chunk's water, if it has any, and lets the water next to it flow in.
+     */
+    @Override
+    public void onChunkLoaded(long chunkKey) {
+        loadedChunks.put(chunkKey, Boolean.TRUE);
+        WaterGrid grid = cachedGrids.remove(chunkKey);
+        if (grid != null) {
+            loadedGrids.put(chunkKey, grid);
+            grid.setLoaded(true);
+            gameObjects.addGameObject(grid.getOverlay(), WATER_LAYER);
+            if (grid.hasNextStep()) {
+                schedule(grid);
+            }
+        }
+
+        // Water pressed against the edges of the new chunk was blocked until now
+        int chunkX = ChunkKey.chunkX(chunkKey);
+        int chunkY = ChunkKey.chunkY(chunkKey);
+        markEdge(loadedGrids.get(ChunkKey.of(chunkX - 1, chunkY)), columns - 1, 0, columns - 1, rows - 1);
+        markEdge(loadedGrids.get(ChunkKey.of(chunkX + 1, chunkY)), 0, 0, 0, rows - 1);
+        markEdge(loadedGrids.get(ChunkKey.of(chunkX, chunkY - 1)), 0, rows - 1, columns - 1, rows - 1);
+    }
+
+    /**
+     * Hides an unloaded chunk's water and moves its grid into the cache.
+     */
+    @Override
+    public void onChunkUnloaded(long chunkKey) {
+        loadedChunks.remove(chunkKey);
+        WaterGrid grid = loadedGrids.remove(chunkKey);
+        if (grid != null) {
+            grid.setLoaded(false);
+            gameObjects.removeGameObject(grid.getOverlay(), WATER_LAYER);
+            cachedGrids.put(chunkKey, grid);
+        }
+    }
+
+    /**
+     * Adds water to the air cell resting on the ground at the given point, such as where a
+     * raindrop landed. Does nothing if the point's chunk is not loaded or the cell is full.
+     *
+     * @param x       World x-coordinate of the point.
+     * @param groundY Height of the ground at that x-coordinate.
+     * @param amount  Levels of water to add.
+     */
+    public void deposit(float x, float groundY, int amount) {
+        int column = Math.floorDiv((int) Math.floor(x), Block.SIZE);
+        int row = Math.floorDiv((int) Math.floor(groundY), Block.SIZE) - 1;
+        for (int climbed = 0; isSolid(column, row); climbed++) {
+            if (climbed == MAX_DEPOSIT_CLIMB) {
+                return;
+            }
+            row--;
+        }
+        long chunkKey = ChunkKey.of(Math.floorDiv(column, columns), Math.floorDiv(row, rows));
+        WaterGrid grid = loadedGrids.get(chunkKey);
+        if (grid == null) {
+            if (!loadedChunks.containsKey(chunkKey)) {
+                return;
+            }
+            grid = createGrid(chunkKey);
+        }
+        int localColumn = column - grid.getFirstColumn();
+        int localRow = row - grid.getFirstRow();
+        int level = grid.getLevel(localColumn, localRow);
+        int newLevel = Math.min(level + amount, WaterGrid.MAX_LEVEL);
+        if (newLevel != level) {
+            grid.setLevel(localColumn, localRow, newLevel);
+            markAround(grid, localColumn, localRow);
+        }
+    }
+
+    /**
+     * Lets the water around a block flow again after the block was dug or placed.
+     *
+     * @param position A point inside the block, in world coordinates.
+     */
+    public void wake(Vector2 position) {
+        int column = Math.floorDiv((int) Math.floor(position.x()), Block.SIZE);
+        int row = Math.floorDiv((int) Math.floor(position.y()), Block.SIZE);
+        markCell(column, row);
+        markCell(column - 1, row);
+        markCell(column + 1, row);
+        markCell(column, row - 1);
+        markCell(column, row + 1);
+    }
+
+    /**
+     * Steps the water at a fixed rate, at most once per call.
+     *
+     * @param deltaTime Time since the last call, in seconds.
+     */
+    public void update(float deltaTime) {
+        timeSinceStep += deltaTime;
+        if (timeSinceStep < STEP_INTERVAL) {
+            return;
+        }
+        timeSinceStep = Math.min(timeSinceStep - STEP_INTERVAL, STEP_INTERVAL);
+        if (activeGrids.isEmpty()) {
+            return;
+        }
+
+        // Cells marked from here on are visited in the next step; grids of unloaded chunks wait
+        // with their marks until they are loaded again
+        steppingGrids.clear();
+        for (int i = 0; i < activeGrids.size(); i++) {
+            WaterGrid grid = activeGrids.get(i);
+            grid.setScheduled(false);
+            if (grid.isLoaded()) {
+                grid.beginStep();
+                steppingGrids.add(grid);
+            }
+        }
+        activeGrids.clear();
+
+        leftFirst = !leftFirst;
+        for (int i = 0; i < steppingGrids.size(); i++) {
+            stepGrid(steppingGrids.get(i));
+        }
+    }
+
+    /**
+     * Visits the grid's current cells from the bottom up, so water falls at most one cell per step,
+     * scanning rows in the direction water spreads first.
+     */
+    private void stepGrid(WaterGrid grid) {
+        int minColumn = grid.getMinColumn();
+        int maxColumn = grid.getMaxColumn();
+        for (int row = grid.getMaxRow(); row >= grid.getMinRow(); row--) {
+            for (int i = 0; i <= maxColumn - minColumn; i++) {
+                stepCell(grid, leftFirst ? minColumn + i : maxColumn - i, row);
+            }
+        }
+    }
+
+    private void stepCell(WaterGrid grid, int column, int row) {
+        int level = grid.getLevel(column, row);
+        if (level == 0) {
+            return;
+        }
+        if (isSolid(grid.getFirstColumn() + column, grid.getFirstRow() + row)) {
+            // A block was placed over the water, which rises into the cell above; whatever does not
+            // fit there is lost
+            flow(grid, column, row, level, column, row - 1, false);
+            if (grid.getLevel(column, row) != 0) {
+                grid.setLevel(column, row, 0);
+                markAround(grid, column, row);
+            }
+            return;
+        }
+        level -= flow(grid, column, row, level, column, row + 1, false);
+        int firstSide = leftFirst ? -1 : 1;
+        if (level > 0) {
+            level -= flow(grid, column, row, level, column + firstSide, row, true);
+        }
+        if (level > 0) {
+            flow(grid, column, row, level, column - firstSide, row, true);
+        }
+    }
+
+    /**
+     * Moves water from a cell to a neighbouring one, which may lie in a neighbouring chunk.
+     *
+     * @param grid         The source cell's grid.
+     * @param column       The source cell's column in its grid.
+     * @param row          The source cell's row in its grid.
+     * @param level        The source cell's level.
+     * @param targetColumn The target cell's column, relative to the source cell's grid.
+     * @param targetRow    The target cell's row, relative to the source cell's grid.
+     * @param evenOut      Whether to move half the difference between the levels, as water does
+     *                     sideways, rather than as much as fits, as it does downwards. Sideways,
+     *                     a last level still runs off onto an empty cell it can fall from.
+     * @return The levels moved.
+     */
+    private int flow(WaterGrid grid, int column, int row, int level, int targetColumn, int targetRow,
+                     boolean evenOut) {
+        int worldColumn = grid.getFirstColumn() + targetColumn;
+        int worldRow = grid.getFirstRow() + targetRow;
+        if (isSolid(worldColumn, worldRow)) {
+            return 0;
+        }
+        WaterGrid target = grid;
+        if (targetColumn < 0 || targetColumn >= columns || targetRow < 0 || targetRow >= rows) {
+            target = neighbourGrid(grid, Math.floorDiv(targetColumn, columns),
+                    Math.floorDiv(targetRow, rows));
+            if (target == null) {
+                return 0;
+            }
+            targetColumn = worldColumn - target.getFirstColumn();
+            targetRow = worldRow - target.getFirstRow();
+        }
+        int targetLevel = target.getLevel(targetColumn, targetRow);
+        int moved = evenOut ? (level - targetLevel) / 2 : Math.min(level, WaterGrid.MAX_LEVEL - targetLevel);
+        if (evenOut && moved == 0 && targetLevel == 0 && hasRoomBelow(target, targetColumn, targetRow)) {
+            moved = 1;
+        }
+        if (moved <= 0) {
+            return 0;
+        }
+        grid.setLevel(column, row, level - moved);
+        target.setLevel(targetColumn, targetRow, targetLevel + moved);
+        markAround(grid, column, row);
+        markAround(target, targetColumn, targetRow);
+        return moved;
+    }
+
+    /**
+     * Checks whether water could fall from a cell into the one below it.
+     */
+    private boolean hasRoomBelow(WaterGrid grid, int column, int row) {
+        if (isSolid(grid.getFirstColumn() + column, grid.getFirstRow() + row + 1)) {
+            return false;
+        }
+        if (row + 1 < rows) {
+            return grid.getLevel(column, row + 1) < WaterGrid.MAX_LEVEL;
+        }
+        long chunkKey = ChunkKey.of(ChunkKey.chunkX(grid.getChunkKey()),
+                ChunkKey.chunkY(grid.getChunkKey()) + 1);
+        WaterGrid below = loadedGrids.get(chunkKey);
+        if (below == null) {
+            return loadedChunks.containsKey(chunkKey);
+        }
+        return below.getLevel(column, 0) < WaterGrid.MAX_LEVEL;
+    }
+
+    /**
+     * Returns the grid of a chunk next to the given grid's, creating it if that chunk is loaded but
+     * dry, or {@code null} if it is not loaded.
+     */
+    private WaterGrid neighbourGrid(WaterGrid grid, int offsetX, int offsetY) {
+        long chunkKey = ChunkKey.of(ChunkKey.chunkX(grid.getChunkKey()) + offsetX,
+                ChunkKey.chunkY(grid.getChunkKey()) + offsetY);
+        WaterGrid neighbour = loadedGrids.get(chunkKey);
+        if (neighbour == null && loadedChunks.containsKey(chunkKey)) {
+            neighbour = createGrid(chunkKey);
+        }
+        return neighbour;
+    }
+
+    private WaterGrid createGrid(long chunkKey) {
+        WaterGrid grid = new WaterGrid(chunkKey, ChunkKey.chunkX(chunkKey) * columns,
+                ChunkKey.chunkY(chunkKey) * rows, columns, rows);
+        grid.setLoaded(true);
+        loadedGrids.put(chunkKey, grid);
+        gameObjects.addGameObject(grid.getOverlay(), WATER_LAYER);
+        return grid;
+    }
+
+    /**
+     * Marks a changed cell and its neighbours for the next step, including the neighbours that lie
+     * in the grids of neighbouring chunks.
+     */
+    private void markAround(WaterGrid grid, int column, int row) {
+        grid.markActive(Math.max(column - 1, 0), Math.max(row - 1, 0));
+        grid.markActive(Math.min(column + 1, columns - 1), Math.min(row + 1, rows - 1));
+        schedule(grid);
+        int chunkX = ChunkKey.chunkX(grid.getChunkKey());
+        int chunkY = ChunkKey.chunkY(grid.getChunkKey());
+        if (column == 0) {
+            markEdge(loadedGrids.get(ChunkKey.of(chunkX - 1, chunkY)), columns - 1, row, columns - 1, row);
+        } else if (column == columns - 1) {
+            markEdge(loadedGrids.get(ChunkKey.of(chunkX + 1, chunkY)), 0, row, 0, row);
+        }
+        if (row == 0) {
+            markEdge(loadedGrids.get(ChunkKey.of(chunkX, chunkY - 1)), column, rows - 1, column, rows - 1);
+        } else if (row == rows - 1) {
+            markEdge(loadedGrids.get(ChunkKey.of(chunkX, chunkY + 1)), column, 0, column, 0);
+        }
+    }
+
+    /**
+     * Marks a rectangle of a grid's cells for the next step, if the grid exists.
+     */
+    private void markEdge(WaterGrid grid, int minColumn, int minRow, int maxColumn, int maxRow) {
+        if (grid == null) {
+            return;
+        }
+        grid.markActive(minColumn, minRow);
+        grid.markActive(maxColumn, maxRow);
+        schedule(grid);
+    }
+
+    /**
+     * Marks a single cell, given in world cells, for the next step, if its chunk has water.
+     */
+    private void markCell(int column, int row) {
+        WaterGrid grid = loadedGrids.get(ChunkKey.of(Math.floorDiv(column, columns),
+                Math.floorDiv(row, rows)));
+        if (grid != null) {
+            markEdge(grid, column - grid.getFirstColumn(), row - grid.getFirstRow(),
+                    column - grid.getFirstColumn(), row - grid.getFirstRow());
+        }
+    }
+
+    private void schedule(WaterGrid grid) {
+        if (!grid.isScheduled()) {
+            grid.setScheduled(true);
+            activeGrids.add(grid);
+        }
+    }
+
+    private boolean isSolid(int column, int row) {
+        return solidityProvider.isSolid(column * Block.SIZE + Block.SIZE / 2f,
+                row * Block.SIZE + Block.SIZE / 2f);
+    }
+}